@@ -0,0 +1,39 @@
+package org.jhades.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *
+ * Runs the benchmarks with the GC profiler, so that the allocation rate of each benchmark is reported next to its
+ * time - all the JMH command line options are supported, for example:
+ *
+ * java -jar jhades-benchmarks/target/benchmarks.jar ClasspathEntriesBenchmark -p jarCount=100
+ *
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp()) {
+            commandLineOptions.showHelp();
+            return;
+        }
+        try {
+            new Runner(new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run();
+        } catch (RunnerException exc) {
+            System.err.println(exc.getMessage());
+            System.exit(1);
+        }
+    }
+}
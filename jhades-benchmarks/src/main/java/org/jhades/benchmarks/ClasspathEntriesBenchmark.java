@@ -0,0 +1,93 @@
+package org.jhades.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jhades.SyntheticClasspathGenerator;
+import org.jhades.model.ClasspathColumnarIndex;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.model.JarPair;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.StdOutLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Scans generated classpaths of several sizes and overlap levels - each invocation scans new classpath entries, so
+ * nothing is reused from the previous one.
+ *
+ * Run with: java -jar jhades-benchmarks/target/benchmarks.jar ClasspathEntriesBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClasspathEntriesBenchmark {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    @Param({"10", "100"})
+    private int jarCount;
+    @Param({"100", "1000"})
+    private int entriesPerJar;
+    @Param({"0.0", "0.1", "0.5"})
+    private double duplicateRatio;
+    private Path tmpDir;
+    private List<Path> jars;
+
+    @Setup
+    public void createClasspath() throws IOException {
+        logger.setDebug(false);
+        tmpDir = Files.createTempDirectory("jhades-benchmark");
+        SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator(tmpDir, jarCount, entriesPerJar);
+        generator.setDuplicateRatio(duplicateRatio);
+        jars = generator.writeJars();
+    }
+
+    @TearDown
+    public void deleteClasspath() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findClasspathResourcesInEntries() {
+        return ClasspathEntries.findClasspathResourcesInEntries(createEntries(), logger, null);
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findClasspathResourcesInEntriesSingleThread() {
+        return ClasspathEntries.findClasspathResourcesInEntries(createEntries(), logger, null, 1);
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findResourcesWithDuplicatesInEntries() {
+        return ClasspathEntries.findResourcesWithDuplicatesInEntries(createEntries(), logger, null);
+    }
+
+    @Benchmark
+    public List<JarPair> buildIndexAndFindOverlappingJars() {
+        return ClasspathColumnarIndex.build(createEntries(), logger, null).findOverlappingJars(DuplicatesMode.ALL);
+    }
+
+    private List<ClasspathEntry> createEntries() {
+        return SyntheticClasspathGenerator.createClasspathEntries(jars);
+    }
+}
@@ -0,0 +1,88 @@
+package org.jhades.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.model.JarPair;
+import org.jhades.service.ClasspathScanner;
+import org.jhades.utils.StdOutLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Measures each ClasspathScanner operation on the classpath of the benchmark JVM.
+ *
+ * The scan benchmarks start from a new scanner, while the queries run against the snapshot of a scanner created once,
+ * as an application would use it.
+ *
+ * Run with: java -jar jhades-benchmarks/target/benchmarks.jar ClasspathScannerBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClasspathScannerBenchmark {
+
+    private ClasspathScanner scanner;
+
+    @Setup
+    public void scanClasspath() {
+        StdOutLogger.getLogger().setDebug(false);
+        scanner = new ClasspathScanner();
+        scanner.getSnapshot();
+    }
+
+    @Benchmark
+    public List<ClasspathEntry> findAllClasspathEntries() {
+        return new ClasspathScanner().findAllClasspathEntries();
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findAllClasspathResources() {
+        return new ClasspathScanner().findAllClasspathResources();
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findAllClasspathResourcesFromSnapshot() {
+        return scanner.findAllClasspathResources();
+    }
+
+    @Benchmark
+    public ClasspathResource findClass() {
+        return scanner.findClass(String.class);
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findByRegex() {
+        return scanner.findByRegex("^/org/jhades/.*Scanner.*\\.class$");
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findAllResourcesWithDuplicates() {
+        return scanner.findAllResourcesWithDuplicates(DuplicatesMode.ALL);
+    }
+
+    @Benchmark
+    public List<ClasspathResource> findAllResourcesWithDifferentContent() {
+        return scanner.findAllResourcesWithDuplicates(DuplicatesMode.DIFFERENT_CONTENT);
+    }
+
+    @Benchmark
+    public List<JarPair> findOverlappingJars() {
+        return scanner.findOverlappingJars(DuplicatesMode.ALL);
+    }
+}
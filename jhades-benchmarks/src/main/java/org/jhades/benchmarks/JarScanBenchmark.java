@@ -0,0 +1,104 @@
+package org.jhades.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.ZipCentralDirectoryReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ *
+ * Compares the zip file system walk that was used to scan jars against reading only the jar central directory.
+ *
+ * Run with: java -jar jhades-benchmarks/target/benchmarks.jar JarScanBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JarScanBenchmark {
+
+    @Param({"1000", "20000"})
+    private int entriesPerJar;
+    private Path tmpDir;
+    private Path jar;
+
+    @Setup
+    public void createJar() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-benchmark");
+        jar = tmpDir.resolve("benchmark.jar");
+        byte[] content = new byte[512];
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < entriesPerJar; i++) {
+                content[i % content.length]++;
+                zip.putNextEntry(new ZipEntry("org/jhades/benchmark/p" + (i / 100) + "/Class" + i + ".class"));
+                zip.write(content);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @TearDown
+    public void deleteJar() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Benchmark
+    public void zipFileSystemWalk(final Blackhole blackhole) throws IOException {
+        URI uri = URI.create("jar:" + jar.toUri());
+        try (FileSystem jarFS = FileSystems.newFileSystem(uri, new HashMap<String, String>())) {
+            Files.walkFileTree(jarFS.getPath("/"), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    blackhole.consume(file.toString());
+                    blackhole.consume(attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void centralDirectoryRead(final Blackhole blackhole) throws IOException {
+        ZipCentralDirectoryReader.read(jar, new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                blackhole.consume("/" + entry.getName());
+                blackhole.consume(entry.getSize());
+                blackhole.consume(entry.getCrc());
+            }
+        });
+    }
+
+    @Benchmark
+    public Object classpathEntryScan() throws Exception {
+        return new ClasspathEntry(null, jar.toUri().toString()).getResourceVersions();
+    }
+}
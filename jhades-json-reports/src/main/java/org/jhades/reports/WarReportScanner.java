@@ -55,6 +55,11 @@ public class WarReportScanner extends WarScannerTemplate {
         System.out.println("\njHades war scanner utility - the following arguments are needed:\n");
         System.out.println("    warFilePath - the path to your war file");
         System.out.println("    tmpPath - the path to a temporary directory, needed to unzip files");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("    -Dscan.in.place=true -> reads the jars directly from the WAR, the temporary directory is not used");
+        System.out.println("    -Dscan.pipelined=true -> extracts only the classes and jars, scanning each jar as soon as it's extracted");
 
     }
 
@@ -15,9 +15,15 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jhades.json.Json;
+import org.jhades.model.ArchiveEntries;
 import org.jhades.model.ClasspathEntries;
 import org.jhades.service.ClasspathScannerListener;
 import org.jhades.utils.StdOutLogger;
@@ -27,6 +33,9 @@ public abstract class WarScannerTemplate {
     private static final StdOutLogger logger = StdOutLogger.getLogger();
     private static final Pattern JAR_NAME = Pattern.compile("^.*/(.*jar)$");
     private static final String SEP = System.getProperty("file.separator");
+    private static final String SCAN_IN_PLACE_PROPERTY = "scan.in.place";
+    private static final String PIPELINED_EXTRACTION_PROPERTY = "scan.pipelined";
+    private static final long CANCEL_TIMEOUT_SECONDS = 60;
     private final String tmpPath;
     private final String warFilePath;
     private Json status = new Json();
@@ -37,6 +46,166 @@ public abstract class WarScannerTemplate {
     }
 
     public void scan() throws IOException, URISyntaxException {
+        ClasspathScannerListener listener = (new ClasspathScannerListener() {
+            @Override
+            public void onEntryScanStart(ClasspathEntry entry) {
+                String filePath = entry.getUrl().toString();
+                Matcher matcher = JAR_NAME.matcher(filePath);
+                if (matcher.matches()) {
+                    updateStatus("Processing jar " + matcher.group(1));
+                }
+            }
+
+            @Override
+            public void onEntryScanEnd(ClasspathEntry entry) {
+                String filePath = entry.getUrl().toString();
+                Matcher matcher = JAR_NAME.matcher(filePath);
+                if (matcher.matches()) {
+                    updateStatus("Finished processing jar " + matcher.group(1));
+                }
+            }
+        });
+
+        List<ClasspathResource> classpathResources;
+        if (isScanInPlace()) {
+            // the jars are read directly from the WAR, nothing is written to disk
+            updateStatus("Reading WAR");
+            List<ClasspathEntry> classpathEntries = ArchiveEntries.findWarClasspathEntries(Paths.get(warFilePath));
+            classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, listener);
+        } else if (isPipelinedExtraction()) {
+            // the entries were scanned while extracting, only their resources are grouped here
+            List<ClasspathEntry> classpathEntries = extractAndScanWar(listener);
+            classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, null, 1);
+        } else {
+            List<ClasspathEntry> classpathEntries = extractWar();
+            classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, listener);
+        }
+
+        processClasspathResources(classpathResources);
+    }
+
+    /**
+     * @return true if the WAR should be scanned in place instead of being extracted to the temporary directory
+     */
+    protected boolean isScanInPlace() {
+        return "true".equals(System.getProperty(SCAN_IN_PLACE_PROPERTY));
+    }
+
+    /**
+     * @return true if each jar should be scanned as soon as it's extracted, extracting only the classes and jars
+     */
+    protected boolean isPipelinedExtraction() {
+        return "true".equals(System.getProperty(PIPELINED_EXTRACTION_PROPERTY));
+    }
+
+    /**
+     * Extracts only WEB-INF/classes and the WEB-INF/lib jars, handing each jar to the scanning workers as soon as it's
+     * extracted - the jars are scanned while the following ones are still being extracted.
+     */
+    private List<ClasspathEntry> extractAndScanWar(final ClasspathScannerListener listener) throws IOException, URISyntaxException {
+        logger.debug("Extracting and scanning war " + warFilePath + "...");
+
+        updateStatus("Deleting temporary directory");
+        FileUtils.deleteDirectory(tmpPath);
+
+        final List<ClasspathEntry> jars = new ArrayList<>();
+        final List<Future<Void>> scans = new ArrayList<>();
+        final ForkJoinPool pool = new ForkJoinPool(ClasspathEntries.getDefaultScanParallelism());
+        boolean scanned = false;
+        try {
+            updateStatus("Unziping WAR");
+            ZipUtils.unzipSelected(warFilePath, tmpPath, new ZipUtils.SelectiveUnzipListener() {
+                @Override
+                public boolean shouldExtract(String fileName) {
+                    return fileName.startsWith("/" + ArchiveEntries.WAR_CLASSES_FOLDER)
+                            || (fileName.startsWith("/" + ArchiveEntries.WAR_LIB_FOLDER) && fileName.endsWith(".jar"));
+                }
+
+                @Override
+                public void onBeginFileExtract(String fileName) {
+                    Matcher matcher = JAR_NAME.matcher(fileName);
+                    if (matcher.matches()) {
+                        updateStatus("Extracting jar " + matcher.group(1));
+                    }
+                }
+
+                @Override
+                public void onEndFileExtract(String fileName, Path extractedFile) {
+                    if (fileName.endsWith(".jar") && !fileName.startsWith("/" + ArchiveEntries.WAR_CLASSES_FOLDER)) {
+                        ClasspathEntry jar = new ClasspathEntry(null, extractedFile.toUri().toString());
+                        logger.debug("Adding jar: " + jar.getUrl());
+                        jars.add(jar);
+                        scans.add(pool.submit(new EntryScan(jar, listener)));
+                    }
+                }
+            });
+
+            final List<ClasspathEntry> classpathEntries = new ArrayList<>();
+
+            // the classes folder can only be scanned once fully extracted
+            Path classesFolder = Paths.get(tmpPath, "WEB-INF", "classes");
+            if (Files.isDirectory(classesFolder)) {
+                ClasspathEntry classes = new ClasspathEntry(null, classesFolder.toUri().toString());
+                classpathEntries.add(classes);
+                scans.add(pool.submit(new EntryScan(classes, listener)));
+            }
+            classpathEntries.addAll(jars);
+
+            updateStatus("Scanning WAR");
+            for (Future<Void> scan : scans) {
+                waitForScan(scan);
+            }
+            scanned = true;
+            return classpathEntries;
+        } finally {
+            if (scanned) {
+                pool.shutdown();
+            } else {
+                cancelScans(pool, scans);
+            }
+        }
+    }
+
+    /**
+     * Stops the scans after a failed extraction or scan: the remaining ones would read a half-extracted directory. The
+     * queued scans are cancelled and the running ones are waited for, so none is left running once the error is thrown.
+     */
+    private static void cancelScans(ForkJoinPool pool, List<Future<Void>> scans) {
+        for (Future<Void> scan : scans) {
+            scan.cancel(true);
+        }
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(CANCEL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("WAR scans still running after " + CANCEL_TIMEOUT_SECONDS + " seconds.");
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitForScan(Future<Void> scan) throws URISyntaxException, IOException {
+        try {
+            scan.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning the WAR.", exc);
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private List<ClasspathEntry> extractWar() throws IOException {
         logger.debug("Extracting war " + warFilePath + "...");
 
         updateStatus("Deleting temporary directory");
@@ -85,29 +254,7 @@ public abstract class WarScannerTemplate {
             }
         });
 
-        ClasspathScannerListener listener = (new ClasspathScannerListener() {
-            @Override
-            public void onEntryScanStart(ClasspathEntry entry) {
-                String filePath = entry.getUrl().toString();
-                Matcher matcher = JAR_NAME.matcher(filePath);
-                if (matcher.matches()) {
-                    updateStatus("Processing jar " + matcher.group(1));
-                }
-            }
-
-            @Override
-            public void onEntryScanEnd(ClasspathEntry entry) {
-                String filePath = entry.getUrl().toString();
-                Matcher matcher = JAR_NAME.matcher(filePath);
-                if (matcher.matches()) {
-                    updateStatus("Finished processing jar " + matcher.group(1));
-                }
-            }
-        });
-
-        List<ClasspathResource> classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, listener);
-
-        processClasspathResources(classpathResources);
+        return classpathEntries;
     }
 
     protected abstract void processClasspathResources(List<ClasspathResource> classpathResources);
@@ -121,7 +268,36 @@ public abstract class WarScannerTemplate {
     }
 
     protected void updateStatus(String statusUpdate) {
-        status.setProperty("statusUpdate", statusUpdate);
-        System.out.println("#STATUS_UPDATE# " + status.stringify());
+        // the status is updated from the scanning workers too
+        synchronized (status) {
+            status.setProperty("statusUpdate", statusUpdate);
+            System.out.println("#STATUS_UPDATE# " + status.stringify());
+        }
+    }
+
+    /**
+     * Scans an extracted entry, keeping its resource versions on the entry.
+     */
+    private static class EntryScan implements Callable<Void> {
+
+        private final ClasspathEntry entry;
+        private final ClasspathScannerListener listener;
+
+        EntryScan(ClasspathEntry entry, ClasspathScannerListener listener) {
+            this.entry = entry;
+            this.listener = listener;
+        }
+
+        @Override
+        public Void call() throws URISyntaxException, IOException {
+            synchronized (listener) {
+                listener.onEntryScanStart(entry);
+            }
+            entry.getResourceVersions();
+            synchronized (listener) {
+                listener.onEntryScanEnd(entry);
+            }
+            return null;
+        }
     }
 }
@@ -0,0 +1,149 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.model.ClasspathResource;
+import org.jhades.reports.WarScannerTemplate;
+import org.jhades.utils.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class WarScannerTemplateTest {
+
+    private Path tmpDir;
+    private Path war;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-war-test");
+        war = tmpDir.resolve("app.war");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(war))) {
+            zip.putNextEntry(new ZipEntry("WEB-INF/classes/a/A.class"));
+            zip.write(new byte[10]);
+            zip.closeEntry();
+            for (int i = 1; i <= 4; i++) {
+                zip.putNextEntry(new ZipEntry("WEB-INF/lib/lib" + i + ".jar"));
+                zip.write(createJar("a/A.class", "A", "lib" + i + "/R.class", "R"));
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry("index.html"));
+            zip.write(new byte[10]);
+            zip.closeEntry();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testPipelinedExtractionFindsTheSameResources() throws IOException, URISyntaxException {
+        TestScanner inPlace = new TestScanner(false, 0);
+        inPlace.scan();
+        TestScanner pipelined = new TestScanner(true, 0);
+        pipelined.scan();
+
+        Map<String, Integer> versionCounts = pipelined.getVersionCounts();
+        assertEquals(inPlace.getVersionCounts(), versionCounts);
+        assertEquals(Integer.valueOf(5), versionCounts.get("/a/A.class"));
+        assertEquals(Integer.valueOf(1), versionCounts.get("/lib3/R.class"));
+        assertFalse(Files.exists(tmpDir.resolve("extracted").resolve("index.html")));
+    }
+
+    @Test
+    public void testFailedExtractionStopsTheScans() throws Exception {
+        // the third jar fails to extract
+        TestScanner pipelined = new TestScanner(true, 3);
+        try {
+            pipelined.scan();
+            fail("the extraction should have failed");
+        } catch (IllegalStateException exc) {
+            assertTrue(exc.getMessage(), exc.getMessage().startsWith("Extracting jar "));
+        }
+        List<String> statuses = pipelined.getStatuses();
+        Thread.sleep(200);
+
+        // no scan was left running after the error, and only the extracted jars were scanned
+        assertEquals(statuses, pipelined.getStatuses());
+        List<String> extracted = new ArrayList<>();
+        for (String status : statuses) {
+            if (status.startsWith("Extracting jar ")) {
+                extracted.add(status.substring("Extracting jar ".length()));
+            }
+        }
+        assertEquals(3, extracted.size());
+        for (int i = 1; i <= 4; i++) {
+            String jar = "lib" + i + ".jar";
+            if (!extracted.subList(0, 2).contains(jar)) {
+                assertFalse(jar, statuses.contains("Processing jar " + jar));
+            }
+        }
+        assertNull(pipelined.classpathResources);
+    }
+
+    private class TestScanner extends WarScannerTemplate {
+
+        private final boolean pipelined;
+        private final int failingExtraction;
+        private int extractions;
+        private final List<String> statuses = new ArrayList<>();
+        private List<ClasspathResource> classpathResources;
+
+        TestScanner(boolean pipelined, int failingExtraction) {
+            super(war.toString(), tmpDir.resolve("extracted").toString());
+            this.pipelined = pipelined;
+            this.failingExtraction = failingExtraction;
+        }
+
+        @Override
+        protected boolean isScanInPlace() {
+            return !pipelined;
+        }
+
+        @Override
+        protected boolean isPipelinedExtraction() {
+            return pipelined;
+        }
+
+        @Override
+        protected void processClasspathResources(List<ClasspathResource> classpathResources) {
+            this.classpathResources = classpathResources;
+        }
+
+        @Override
+        protected void updateStatus(String statusUpdate) {
+            synchronized (statuses) {
+                statuses.add(statusUpdate);
+            }
+            if (statusUpdate.startsWith("Extracting jar ") && ++extractions == failingExtraction) {
+                throw new IllegalStateException(statusUpdate);
+            }
+        }
+
+        List<String> getStatuses() {
+            synchronized (statuses) {
+                return new ArrayList<>(statuses);
+            }
+        }
+
+        Map<String, Integer> getVersionCounts() {
+            Map<String, Integer> versionCounts = new TreeMap<>();
+            for (ClasspathResource resource : classpathResources) {
+                versionCounts.put(resource.getName(), resource.getResourceFileVersions().size());
+            }
+            return versionCounts;
+        }
+    }
+}
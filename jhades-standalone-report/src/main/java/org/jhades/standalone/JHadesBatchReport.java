@@ -0,0 +1,295 @@
+package org.jhades.standalone;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.jhades.model.ArchiveEntries;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.JarContentCache;
+import org.jhades.model.JarPair;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Scans several artifacts (WARs, EARs or jars) in a single JVM, and prints a combined report followed by the location
+ * of the report of each artifact.
+ *
+ * The artifacts are scanned in parallel and in place, without extracting them. Identical jars bundled in several
+ * artifacts are indexed only once, as they share a content-addressed jar cache.
+ *
+ * An artifact that can't be scanned doesn't stop the batch: it's reported as failed, with the reason, and the other
+ * artifacts are still scanned.
+ *
+ */
+public class JHadesBatchReport {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final String REPORT_DIR_PROPERTY = "report.dir";
+    private final List<Path> artifacts;
+    private final Path reportDir;
+    private final JarContentCache contentCache = new JarContentCache();
+
+    /**
+     *
+     * @param artifacts - the artifacts to scan
+     * @param reportDir - the directory where the report of each artifact is written
+     */
+    public JHadesBatchReport(List<Path> artifacts, Path reportDir) {
+        this.artifacts = artifacts;
+        this.reportDir = reportDir;
+    }
+
+    public static void printUsage() {
+        System.out.println("\njHades batch scanner utility - the following arguments are needed:\n");
+        System.out.println("    artifactPath... - the paths to your war, ear or jar files, or to directories containing them");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println();
+        System.out.println("    -Dreport.dir=<report dir> -> the directory where the report of each artifact is written, jhades-reports by default");
+        System.out.println("    -Djhades.scan.parallelism=<threads> -> the number of artifacts scanned at the same time");
+        System.out.println();
+        System.out.println("The options of the standalone report, such as -Ddetail=true, apply to the report of each artifact.");
+        System.out.println();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            printUsage();
+            System.exit(-1);
+        }
+
+        logger.setDebug(false);
+
+        List<Path> artifacts = new ArrayList<>();
+        for (String arg : args) {
+            artifacts.addAll(findArtifacts(Paths.get(arg)));
+        }
+        Path reportDir = Paths.get(System.getProperty(REPORT_DIR_PROPERTY, "jhades-reports"));
+
+        logger.info("artifacts = " + artifacts.size());
+        logger.info("reportDir = " + reportDir);
+
+        if (new JHadesBatchReport(artifacts, reportDir).scan(System.out) > 0) {
+            System.exit(-1);
+        }
+    }
+
+    /**
+     *
+     * Scans all the artifacts, writes the report of each one and prints the combined report.
+     *
+     * @param out - the stream where the combined report is printed
+     * @return - the number of artifacts that could not be scanned
+     */
+    public int scan(PrintStream out) throws IOException {
+        Files.createDirectories(reportDir);
+
+        List<ArtifactReport> reports = new ArrayList<>();
+        int failures = 0;
+        ForkJoinPool pool = new ForkJoinPool(ClasspathEntries.getDefaultScanParallelism());
+        try {
+            List<Future<ArtifactReport>> scans = new ArrayList<>();
+            List<String> reportNames = getReportNames(artifacts);
+            for (int i = 0; i < artifacts.size(); i++) {
+                scans.add(pool.submit(new ArtifactScan(artifacts.get(i), reportDir.resolve(reportNames.get(i)))));
+            }
+            for (int i = 0; i < scans.size(); i++) {
+                ArtifactReport report = waitForScan(scans.get(i), artifacts.get(i));
+                if (report.failure != null) {
+                    failures++;
+                }
+                reports.add(report);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        printCombinedReport(reports, out);
+        return failures;
+    }
+
+    /**
+     * The report of an artifact is named after it, artifacts with the same file name in different directories, such as
+     * two app.war, are told apart by their position on the artifact list so that their reports don't overwrite each other.
+     */
+    private static List<String> getReportNames(List<Path> artifacts) {
+        Map<String, Integer> fileNameCounts = new HashMap<>();
+        for (Path artifact : artifacts) {
+            String fileName = artifact.getFileName().toString();
+            Integer count = fileNameCounts.get(fileName);
+            fileNameCounts.put(fileName, count == null ? 1 : count + 1);
+        }
+        List<String> reportNames = new ArrayList<>();
+        for (int i = 0; i < artifacts.size(); i++) {
+            String fileName = artifacts.get(i).getFileName().toString();
+            reportNames.add((fileNameCounts.get(fileName) > 1 ? (i + 1) + "-" : "") + fileName + ".txt");
+        }
+        return reportNames;
+    }
+
+    private void printCombinedReport(List<ArtifactReport> reports, PrintStream out) {
+        out.println("\n>>>> Batch report: \n");
+
+        for (ArtifactReport report : reports) {
+            if (report.failure != null) {
+                out.println(report.artifact.getFileName() + " - FAILED: " + report.failure);
+                continue;
+            }
+            long totalDupClasses = 0;
+            for (JarPair overlap : report.overlaps) {
+                totalDupClasses += overlap.getDupClassesTotal();
+            }
+            out.println(report.artifact.getFileName() + " - classpath entries: " + report.entries
+                    + ", overlapping jar pairs: " + report.overlaps.size()
+                    + ", classes with more than one version: " + totalDupClasses
+                    + " - report: " + report.reportFile);
+        }
+
+        // the same jar names overlap in several artifacts, when they bundle the same libraries
+        Map<String, long[]> overlapsByJarNames = new TreeMap<>();
+        for (ArtifactReport report : reports) {
+            for (JarPair overlap : report.overlaps) {
+                String jar1 = JHadesStandaloneReport.getJarName(overlap.getJar1().getUrl());
+                String jar2 = JHadesStandaloneReport.getJarName(overlap.getJar2().getUrl());
+                String jarNames = jar1.compareTo(jar2) <= 0 ? jar1 + " overlaps with " + jar2 : jar2 + " overlaps with " + jar1;
+                long[] totals = overlapsByJarNames.get(jarNames);
+                if (totals == null) {
+                    totals = new long[2];
+                    overlapsByJarNames.put(jarNames, totals);
+                }
+                totals[0]++;
+                totals[1] = Math.max(totals[1], overlap.getDupClassesTotal());
+            }
+        }
+        List<Map.Entry<String, long[]>> sortedOverlaps = new ArrayList<>(overlapsByJarNames.entrySet());
+        Collections.sort(sortedOverlaps, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> overlap1, Map.Entry<String, long[]> overlap2) {
+                return Long.compare(overlap2.getValue()[0], overlap1.getValue()[0]);
+            }
+        });
+
+        out.println("\n>>>> Jar overlaps across artifacts: \n");
+        for (Map.Entry<String, long[]> overlap : sortedOverlaps) {
+            out.println(overlap.getKey() + " - in " + overlap.getValue()[0] + " artifacts, up to "
+                    + overlap.getValue()[1] + " overlapping classes");
+        }
+
+        out.println("\nDistinct jars indexed: " + contentCache.size() + ", identical jars reused: " + contentCache.getHits() + "\n");
+    }
+
+    /**
+     * @return the artifacts found on the path - the path itself if it's a file, or the artifacts of the directory
+     */
+    private static List<Path> findArtifacts(Path path) throws IOException {
+        List<Path> found = new ArrayList<>();
+        if (!Files.isDirectory(path)) {
+            found.add(path);
+            return found;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, "*.{war,ear,jar}")) {
+            for (Path file : files) {
+                found.add(file);
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    /**
+     * @return the report of the artifact, or a failed report if the artifact could not be scanned
+     */
+    private static ArtifactReport waitForScan(Future<ArtifactReport> scan, Path artifact) {
+        try {
+            return scan.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning the artifacts.", exc);
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // the pool wraps the exceptions of the scan, the root cause is the one worth reporting
+            while (cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            logger.error("Could not scan " + artifact + ": " + cause);
+            return new ArtifactReport(artifact, cause.toString());
+        }
+    }
+
+    /**
+     * The summary of the report of an artifact.
+     */
+    private static class ArtifactReport {
+
+        private final Path artifact;
+        private final Path reportFile;
+        private final int entries;
+        private final List<JarPair> overlaps;
+        // the reason why the artifact could not be scanned, or null
+        private final String failure;
+
+        ArtifactReport(Path artifact, Path reportFile, int entries, List<JarPair> overlaps) {
+            this.artifact = artifact;
+            this.reportFile = reportFile;
+            this.entries = entries;
+            this.overlaps = overlaps;
+            this.failure = null;
+        }
+
+        ArtifactReport(Path artifact, String failure) {
+            this.artifact = artifact;
+            this.reportFile = null;
+            this.entries = 0;
+            this.overlaps = Collections.emptyList();
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Scans an artifact and writes its report - the entries of the artifact are scanned on the calling thread, the
+     * artifacts being already scanned in parallel.
+     */
+    private class ArtifactScan implements Callable<ArtifactReport> {
+
+        private final Path artifact;
+        private final Path reportFile;
+
+        ArtifactScan(Path artifact, Path reportFile) {
+            this.artifact = artifact;
+            this.reportFile = reportFile;
+        }
+
+        @Override
+        public ArtifactReport call() throws IOException {
+            List<ClasspathEntry> classpathEntries = ArchiveEntries.findArtifactClasspathEntries(artifact, contentCache);
+            List<ClasspathResource> classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, null, 1);
+
+            List<JarPair> overlaps;
+            try (PrintStream out = new PrintStream(Files.newOutputStream(reportFile), false, "UTF-8")) {
+                out.println("jHades report for " + artifact);
+                overlaps = new JHadesStandaloneReport(artifact.toString(), null, out).processClasspathResources(classpathResources);
+            }
+            System.out.println("Finished processing " + artifact.getFileName());
+            return new ArtifactReport(artifact, reportFile, classpathEntries.size(), overlaps);
+        }
+    }
+}
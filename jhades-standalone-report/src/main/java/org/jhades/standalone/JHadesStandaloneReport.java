@@ -1,6 +1,7 @@
 package org.jhades.standalone;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.net.URISyntaxException;
 import java.nio.file.FileVisitResult;
 import static java.nio.file.FileVisitResult.CONTINUE;
@@ -10,15 +11,27 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.jhades.model.ArchiveEntries;
 import org.jhades.model.ClasspathEntries;
 import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathEntryScanMetrics;
 import org.jhades.model.ClasspathResource;
 import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClasspathScanSummary;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.model.EarModule;
+import org.jhades.model.JarContentCache;
 import org.jhades.model.JarPair;
 import org.jhades.reports.DuplicatesReport;
+import org.jhades.service.ClasspathScanMetricsListener;
 import org.jhades.service.ClasspathScanner;
 import org.jhades.service.ClasspathScannerListener;
 import org.jhades.utils.FileUtils;
@@ -31,24 +44,44 @@ public class JHadesStandaloneReport {
     private ClasspathScanner scanner = new ClasspathScanner();
     private static final Pattern JAR_NAME = Pattern.compile("^.*/(.*jar)$");
     private static final String SEP = System.getProperty("file.separator");
+    private static final String SCAN_IN_PLACE_PROPERTY = "scan.in.place";
+    private static final String SCAN_METRICS_PROPERTY = "scan.metrics";
+    private static final int SLOWEST_ENTRIES = 10;
     private final String warFilePath;
     private final String tmpPath;
+    private final PrintStream out;
 
     public JHadesStandaloneReport(String warFilePath, String tmpPath) {
+        this(warFilePath, tmpPath, System.out);
+    }
+
+    /**
+     *
+     * @param warFilePath - the path to the WAR file
+     * @param tmpPath - the path to a temporary directory, needed to unzip files
+     * @param out - the stream where the report is printed
+     */
+    public JHadesStandaloneReport(String warFilePath, String tmpPath, PrintStream out) {
         this.warFilePath = warFilePath;
         this.tmpPath = tmpPath;
+        this.out = out;
     }
 
     public static void printUsage() {
         System.out.println("\njHades standalone war scanner utility - the following arguments are needed:\n");
-        System.out.println("    warFilePath - the path to your war file");
-        System.out.println("    tmpPath (optional) - the path to a temporary directory, needed to unzip files");
+        System.out.println("    warFilePath - the path to your war file, or to an ear file or an executable fat jar");
+        System.out.println("    tmpPath (optional) - the path to a temporary directory, needed to unzip files - not used with -Dscan.in.place=true");
         System.out.println();
         System.out.println("Options:");
         System.out.println();
         System.out.println("    -Ddetail=true -> displays classes with duplicates and their locations");
         System.out.println("    -Dexclude.same.size.dups=true -> don't count as classpath duplicates the classes that have multiple class files, but they all have the same size");
+        System.out.println("    -Dexclude.identical.dups=true -> don't count as classpath duplicates the classes that have multiple class files, but they all have the same content");
+        System.out.println("    -Dscan.in.place=true -> reads the jars directly from the WAR, without extracting it to the temporary directory");
+        System.out.println("    -Dscan.metrics=true -> displays the scan time of the whole WAR and of its slowest jars");
         System.out.println("    -Dsearch.by.file.name=\"<search regex>\" -> searches the WAR for a resource file using a Java regular expression");
+        System.out.println("    -Djhades.index.cache.dir=<cache dir> -> keeps the index of each jar in this directory, so that only new or changed jars are scanned on the next run");
+        System.out.println("    -Djhades.index.cache.content.hash=true -> identifies the cached jar indexes by the jar content hash instead of path, size and last modified time");
         System.out.println();
     }
 
@@ -67,68 +100,39 @@ public class JHadesStandaloneReport {
             tmpPath = args[1];
         } else {
             tmpPath = System.getProperty("java.io.tmpdir") + "/jhades";
-            Files.createDirectories(Paths.get(tmpPath));
         }
 
         logger.info("warFilePath = " + warFilePath);
         logger.info("tmpPath = " + tmpPath);
 
         JHadesStandaloneReport warScanner = new JHadesStandaloneReport(warFilePath, tmpPath);
+        if (args.length == 1 && !warScanner.isScanInPlace()) {
+            Files.createDirectories(Paths.get(tmpPath));
+        }
 
         warScanner.scan();
 
     }
 
     public void scan() throws IOException, URISyntaxException {
-        logger.debug("Extracting war " + warFilePath + "...");
-
-        updateStatus("Deleting temporary directory");
-        FileUtils.deleteDirectory(tmpPath);
-
-        updateStatus("Unziping WAR");
-        ZipUtils.unzip(warFilePath, tmpPath, new ZipUtils.UnzipProgressListener() {
-            @Override
-            public void onBeginFileExtract(String fileName) {
-                Matcher matcher = JAR_NAME.matcher(fileName);
-                if (matcher.matches()) {
-                    updateStatus("Extracting jar " + matcher.group(1));
-                }
-            }
-        });
-
-        final List<ClasspathEntry> classpathEntries = new ArrayList<>();
-
-        // add classes folder
-        String classesFolderPath = tmpPath + SEP + "WEB-INF" + SEP + "classes";
-        Path classesFolder = Paths.get(classesFolderPath);
-        if (Files.exists(classesFolder)) {
-            classpathEntries.add(new ClasspathEntry(null, classesFolderPath));
+        if (warFilePath.toLowerCase().endsWith(".ear")) {
+            scanEar();
+            return;
         }
 
-        Path start = Paths.get(tmpPath);
-
-        updateStatus("Scanning WAR");
-
-        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                String filePath = file.toString();
-                if (filePath.contains("WEB-INF" + SEP + "lib") && filePath.endsWith(".jar")) {
-                    Matcher matcher = JAR_NAME.matcher(filePath);
-                    if (matcher.matches()) {
-                        updateStatus("Processing jar " + matcher.group(1));
-                    }
-                    logger.debug("Adding jar: " + filePath);
+        List<ClasspathEntry> classpathEntries;
+        if (isScanInPlace()) {
+            // the jars are read directly from the archive, nothing is written to disk
+            updateStatus("Reading archive");
+            classpathEntries = ArchiveEntries.findArtifactClasspathEntries(Paths.get(warFilePath), null);
+        } else {
+            classpathEntries = extractWar();
+        }
 
-                    filePath = "file:///" + filePath.replaceAll("\\\\", "/");
-                    logger.debug("jar URL: " + filePath);
-                    classpathEntries.add(new ClasspathEntry(null, filePath));
-                }
-                return CONTINUE;
-            }
-        });
+        final List<ClasspathEntryScanMetrics> scanMetrics = new ArrayList<>();
+        final ClasspathScanSummary[] scanSummary = new ClasspathScanSummary[1];
 
-        ClasspathScannerListener listener = (new ClasspathScannerListener() {
+        ClasspathScannerListener listener = (new ClasspathScanMetricsListener() {
             @Override
             public void onEntryScanStart(ClasspathEntry entry) {
                 String filePath = entry.getUrl().toString();
@@ -146,64 +150,154 @@ public class JHadesStandaloneReport {
                     updateStatus("Finished processing jar " + matcher.group(1));
                 }
             }
+
+            @Override
+            public void onEntryScanMetrics(ClasspathEntryScanMetrics metrics) {
+                scanMetrics.add(metrics);
+            }
+
+            @Override
+            public void onScanSummary(ClasspathScanSummary summary) {
+                scanSummary[0] = summary;
+            }
         });
 
         List<ClasspathResource> classpathResources = ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, listener);
 
+        if ("true".equals(System.getProperty(SCAN_METRICS_PROPERTY))) {
+            printScanMetrics(scanMetrics, scanSummary[0]);
+        }
+
         processClasspathResources(classpathResources);
     }
 
-    private void processClasspathResources(List<ClasspathResource> classpathResources) {
+    /**
+     * Prints the summary of the scan, followed by the slowest entries.
+     */
+    private void printScanMetrics(List<ClasspathEntryScanMetrics> scanMetrics, ClasspathScanSummary summary) {
+        out.println("\n>>>> Scan metrics: \n");
+        if (summary != null) {
+            out.println("Entries: " + summary.getEntryCount() + ", failed: " + summary.getFailedEntryCount()
+                    + ", cache hits: " + summary.getCacheHitCount() + ", resources: " + summary.getResourceCount()
+                    + ", bytes read: " + summary.getBytesRead()
+                    + ", time: " + TimeUnit.NANOSECONDS.toMillis(summary.getWallTimeNanos()) + " ms"
+                    + ", resources per second: " + Math.round(summary.getResourcesPerSecond()) + "\n");
+        }
+
+        List<ClasspathEntryScanMetrics> slowest = new ArrayList<>(scanMetrics);
+        Collections.sort(slowest, new Comparator<ClasspathEntryScanMetrics>() {
+            @Override
+            public int compare(ClasspathEntryScanMetrics metrics1, ClasspathEntryScanMetrics metrics2) {
+                return Long.compare(metrics2.getWallTimeNanos(), metrics1.getWallTimeNanos());
+            }
+        });
+        for (ClasspathEntryScanMetrics metrics : slowest.subList(0, Math.min(SLOWEST_ENTRIES, slowest.size()))) {
+            out.println(metrics.getClasspathEntry().getUrl() + " - " + metrics.getWallTimeMillis() + " ms, "
+                    + metrics.getResourceCount() + " resources, " + metrics.getBytesRead() + " bytes read"
+                    + (metrics.getFailureReason() != null ? " - failed: " + metrics.getFailureReason() : ""));
+        }
+    }
+
+    /**
+     *
+     * Prints the report of each module of an EAR, followed by a cross-module report of all the entries of the EAR. The
+     * modules are scanned in parallel, and the shared jars of the EAR lib folder are scanned only once.
+     */
+    private void scanEar() throws IOException {
+        updateStatus("Reading EAR modules");
+        List<EarModule> modules = ArchiveEntries.findEarModules(Paths.get(warFilePath), new JarContentCache(),
+                ClasspathEntries.getDefaultScanParallelism());
+
+        Set<ClasspathEntry> earEntries = new LinkedHashSet<>();
+        for (EarModule module : modules) {
+            earEntries.addAll(module.getSharedEntries());
+        }
+        for (EarModule module : modules) {
+            out.println("\n>>>> Module " + module.getName() + " - classpath entries: " + module.getClasspathEntries().size());
+            // the entries are already scanned, the resources are only grouped by name
+            processClasspathResources(ClasspathEntries.findClasspathResourcesInEntries(module.getClasspathEntries(), logger, null, 1));
+            earEntries.addAll(module.getModuleEntries());
+        }
+
+        out.println("\n>>>> Cross-module report - classpath entries of all modules: " + earEntries.size());
+        processClasspathResources(ClasspathEntries.findClasspathResourcesInEntries(new ArrayList<>(earEntries), logger, null, 1));
+    }
+
+    /**
+     *
+     * Prints the report of the resources found on the WAR.
+     *
+     * @return the overlapping jars of the report
+     */
+    List<JarPair> processClasspathResources(List<ClasspathResource> classpathResources) {
 
         boolean isDetailedMode = "true".equals(System.getProperty("detail"));
         boolean isExcludeSameSizeDups = "true".equals(System.getProperty("exclude.same.size.dups"));
+        boolean isExcludeIdenticalDups = "true".equals(System.getProperty("exclude.identical.dups"));
+        DuplicatesMode duplicatesMode = isExcludeIdenticalDups ? DuplicatesMode.DIFFERENT_CONTENT : DuplicatesMode.of(isExcludeSameSizeDups);
 
-        List<JarPair> overlapReportLines = scanner.findOverlappingJars(classpathResources, isExcludeSameSizeDups);
+        List<JarPair> overlapReportLines = scanner.findOverlappingJars(classpathResources, duplicatesMode);
 
         long totalDupClasses = 0;
 
-        System.out.println("\n>>>> Jar overlap report: \n");
+        out.println("\n>>>> Jar overlap report: \n");
 
         for (JarPair jarOverlapReportLine : overlapReportLines) {
             String reportLine = getJarName(jarOverlapReportLine.getJar1().getUrl()) + " overlaps with "
                     + getJarName(jarOverlapReportLine.getJar2().getUrl())
                     + " - total overlapping classes: " + jarOverlapReportLine.getDupClassesTotal();
-            System.out.println(reportLine);
+            out.println(reportLine);
             totalDupClasses += jarOverlapReportLine.getDupClassesTotal();
         }
 
-        System.out.println("\nTotal number of classes with more than one version: " + totalDupClasses + "\n");
+        out.println("\nTotal number of classes with more than one version: " + totalDupClasses + "\n");
 
-        if (!isExcludeSameSizeDups) {
-            System.out.println("\nUse -Dexclude.same.size.dups=true for considering as a duplicate only classes with multiple class files of different sizes.\n");
+        if (duplicatesMode == DuplicatesMode.ALL) {
+            out.println("\nUse -Dexclude.same.size.dups=true for considering as a duplicate only classes with multiple class files of different sizes.");
+            out.println("Use -Dexclude.identical.dups=true for considering as a duplicate only classes with multiple class files of different content.\n");
         }
 
 
         if (isDetailedMode) {
-            List<ClasspathResource> resourcesWithDifferentSizeDups = scanner.findClassFileDuplicates(classpathResources, isExcludeSameSizeDups);
+            List<ClasspathResource> resourcesWithDifferentSizeDups = scanner.findClassFileDuplicates(classpathResources, duplicatesMode);
             DuplicatesReport report = new DuplicatesReport(resourcesWithDifferentSizeDups, new StandaloneReportUrlFormatter());
-            report.print();
+            report.print(out);
         }
 
         String searchByFileName = System.getProperty("search.by.file.name");
 
         if (searchByFileName != null) {
-            List<ClasspathResource> searchResults = scanner.findByRegex(searchByFileName);
+            List<ClasspathResource> searchResults = findByRegex(classpathResources, searchByFileName);
             if (searchResults != null && !searchResults.isEmpty()) {
-                System.out.println("\nSearch results using regular expression: " + searchByFileName + "\n");
+                out.println("\nSearch results using regular expression: " + searchByFileName + "\n");
                 for (ClasspathResource match : searchResults) {
-                    System.out.println(match.getName() + "\n");
+                    out.println(match.getName() + "\n");
                     for (ClasspathResourceVersion version : match.getResourceFileVersions()) {
-                        System.out.println("    " + version.getClasspathEntry().getUrl());
+                        out.println("    " + version.getClasspathEntry().getUrl());
                     }
-                    System.out.println("");
+                    out.println("");
                 }
             }
         }
 
+        return overlapReportLines;
     }
 
-    private String getJarName(String url) {
+    /**
+     * Searches the resources of the WAR, not the ones of the classpath of this JVM.
+     */
+    private static List<ClasspathResource> findByRegex(List<ClasspathResource> classpathResources, String search) {
+        List<ClasspathResource> matches = new ArrayList<>();
+        Pattern pattern = Pattern.compile(search);
+        for (ClasspathResource resource : classpathResources) {
+            if (resource.getName() != null && pattern.matcher(resource.getName()).find()) {
+                matches.add(resource);
+            }
+        }
+        return matches;
+    }
+
+    static String getJarName(String url) {
         String jarName = "";
         if (url != null) {
             Matcher matcher = JAR_NAME.matcher(url);
@@ -215,6 +309,66 @@ public class JHadesStandaloneReport {
         return jarName;
     }
 
+    /**
+     * @return true if the WAR should be scanned in place instead of being extracted to the temporary directory
+     */
+    protected boolean isScanInPlace() {
+        // only WARs can be extracted, fat jars and EARs are always scanned in place
+        return "true".equals(System.getProperty(SCAN_IN_PLACE_PROPERTY)) || !warFilePath.toLowerCase().endsWith(".war");
+    }
+
+    private List<ClasspathEntry> extractWar() throws IOException {
+        logger.debug("Extracting war " + warFilePath + "...");
+
+        updateStatus("Deleting temporary directory");
+        FileUtils.deleteDirectory(tmpPath);
+
+        updateStatus("Unziping WAR");
+        ZipUtils.unzip(warFilePath, tmpPath, new ZipUtils.UnzipProgressListener() {
+            @Override
+            public void onBeginFileExtract(String fileName) {
+                Matcher matcher = JAR_NAME.matcher(fileName);
+                if (matcher.matches()) {
+                    updateStatus("Extracting jar " + matcher.group(1));
+                }
+            }
+        });
+
+        final List<ClasspathEntry> classpathEntries = new ArrayList<>();
+
+        // add classes folder
+        String classesFolderPath = tmpPath + SEP + "WEB-INF" + SEP + "classes";
+        Path classesFolder = Paths.get(classesFolderPath);
+        if (Files.exists(classesFolder)) {
+            classpathEntries.add(new ClasspathEntry(null, classesFolderPath));
+        }
+
+        Path start = Paths.get(tmpPath);
+
+        updateStatus("Scanning WAR");
+
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String filePath = file.toString();
+                if (filePath.contains("WEB-INF" + SEP + "lib") && filePath.endsWith(".jar")) {
+                    Matcher matcher = JAR_NAME.matcher(filePath);
+                    if (matcher.matches()) {
+                        updateStatus("Processing jar " + matcher.group(1));
+                    }
+                    logger.debug("Adding jar: " + filePath);
+
+                    filePath = "file:///" + filePath.replaceAll("\\\\", "/");
+                    logger.debug("jar URL: " + filePath);
+                    classpathEntries.add(new ClasspathEntry(null, filePath));
+                }
+                return CONTINUE;
+            }
+        });
+
+        return classpathEntries;
+    }
+
     protected void updateStatus(String statusUpdate) {
         System.out.println(statusUpdate);
     }
@@ -0,0 +1,98 @@
+package org.jhades;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.standalone.JHadesBatchReport;
+import org.jhades.utils.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class JHadesBatchReportTest {
+
+    private Path tmpDir;
+    private Path reportDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-batch-test");
+        reportDir = tmpDir.resolve("reports");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testIdenticalJarsAreIndexedOnceAcrossArtifacts() throws IOException {
+        byte[] lib1 = createJar("a/A.class", "A", "a/B.class", "B");
+        byte[] lib2 = createJar("a/B.class", "other B", "b/C.class", "C");
+        Path war1 = createWar("app1.war", lib1, lib2);
+        Path war2 = createWar("app2.war", lib1, lib2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int failures = new JHadesBatchReport(Arrays.asList(war1, war2), reportDir).scan(new PrintStream(out, true, "UTF-8"));
+
+        String report = out.toString("UTF-8");
+        assertEquals(0, failures);
+        assertTrue(report, report.contains("app1.war - classpath entries: 2, overlapping jar pairs: 1"));
+        assertTrue(report, report.contains("app2.war - classpath entries: 2, overlapping jar pairs: 1"));
+        assertTrue(report, report.contains("lib1.jar overlaps with lib2.jar - in 2 artifacts"));
+        assertTrue(report, report.contains("Distinct jars indexed: 2, identical jars reused: 2"));
+        assertTrue(Files.exists(reportDir.resolve("app1.war.txt")));
+        assertTrue(Files.exists(reportDir.resolve("app2.war.txt")));
+    }
+
+    @Test
+    public void testUnreadableArtifactDoesNotStopTheBatch() throws IOException {
+        Path broken = Files.write(tmpDir.resolve("broken.war"), "not a zip file".getBytes("UTF-8"));
+        Path war = createWar("app.war", createJar("a/A.class", "A"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int failures = new JHadesBatchReport(Arrays.asList(broken, war), reportDir).scan(new PrintStream(out, true, "UTF-8"));
+
+        String report = out.toString("UTF-8");
+        assertEquals(1, failures);
+        assertTrue(report, report.contains("broken.war - FAILED: "));
+        assertTrue(report, report.contains("app.war - classpath entries: 1"));
+        assertTrue(Files.exists(reportDir.resolve("app.war.txt")));
+    }
+
+    @Test
+    public void testArtifactsWithTheSameNameGetTheirOwnReport() throws IOException {
+        Path war1 = createWar("app.war", createJar("a/A.class", "A"));
+        Path war2 = Files.move(createWar("other.war", createJar("a/A.class", "A"), createJar("b/B.class", "B")),
+                Files.createDirectories(tmpDir.resolve("other")).resolve("app.war"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int failures = new JHadesBatchReport(Arrays.asList(war1, war2), reportDir).scan(new PrintStream(out, true, "UTF-8"));
+
+        String report = out.toString("UTF-8");
+        assertEquals(0, failures);
+        assertTrue(report, report.contains("app.war - classpath entries: 1, overlapping jar pairs: 0"));
+        assertTrue(report, report.contains("app.war - classpath entries: 2, overlapping jar pairs: 0"));
+        assertTrue(new String(Files.readAllBytes(reportDir.resolve("1-app.war.txt")), "UTF-8").contains(war1.toString()));
+        assertTrue(new String(Files.readAllBytes(reportDir.resolve("2-app.war.txt")), "UTF-8").contains(war2.toString()));
+    }
+
+    private Path createWar(String name, byte[]... jars) throws IOException {
+        Path war = tmpDir.resolve(name);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(war))) {
+            for (int i = 0; i < jars.length; i++) {
+                zip.putNextEntry(new ZipEntry("WEB-INF/lib/lib" + (i + 1) + ".jar"));
+                zip.write(jars[i]);
+                zip.closeEntry();
+            }
+        }
+        return war;
+    }
+}
@@ -1,13 +1,18 @@
 package org.jhades;
 
+import java.lang.instrument.Instrumentation;
 import java.net.URL;
 import java.util.List;
+import org.jhades.agent.JHadesAgent;
 import org.jhades.model.ClasspathEntry;
 import org.jhades.model.ClasspathResource;
 import org.jhades.model.ClasspathResourceVersion;
 import org.jhades.model.ClazzLoader;
+import org.jhades.model.DuplicatesMode;
 import org.jhades.model.JarPair;
+import org.jhades.model.LoadedClassConflict;
 import org.jhades.reports.DuplicatesReport;
+import org.jhades.reports.LoadedClassConflictsReport;
 import org.jhades.service.ClasspathScanner;
 
 /**
@@ -17,7 +22,18 @@ import org.jhades.service.ClasspathScanner;
  */
 public class JHades {
 
-    private ClasspathScanner scanner = new ClasspathScanner();
+    private final ClasspathScanner scanner;
+
+    public JHades() {
+        this(new ClasspathScanner());
+    }
+
+    /**
+     * @param scanner - the scanner to run the commands with, for sharing its classpath snapshot
+     */
+    public JHades(ClasspathScanner scanner) {
+        this.scanner = scanner;
+    }
 
     public JHades printClassLoaderNames() {
 
@@ -136,8 +152,10 @@ public class JHades {
 
         ClasspathResource foundClass = scanner.findClass(clazz);
 
-        for (ClasspathResourceVersion version : foundClass.getResourceFileVersions()) {
-            System.out.println(version.getClasspathEntry().getUrl() + foundClass.getName() + " size = " + version.getFileSize());
+        if (foundClass != null) {
+            for (ClasspathResourceVersion version : foundClass.getResourceFileVersions()) {
+                System.out.println(version.getClasspathEntry().getUrl() + foundClass.getName() + " size = " + version.getFileSize());
+            }
         }
 
         endCommand(foundClass != null);
@@ -175,7 +193,15 @@ public class JHades {
     }
 
     public JHades multipleClassVersionsReport(boolean excludeSameSizeDups) {
-        List<ClasspathResource> resourcesWithDuplicates = scanner.findAllResourcesWithDuplicates(excludeSameSizeDups);
+        return multipleClassVersionsReport(DuplicatesMode.of(excludeSameSizeDups));
+    }
+
+    /**
+     *
+     * @param mode - which versions are considered different, DIFFERENT_CONTENT to leave out identical copies of a file
+     */
+    public JHades multipleClassVersionsReport(DuplicatesMode mode) {
+        List<ClasspathResource> resourcesWithDuplicates = scanner.findAllResourcesWithDuplicates(mode);
 
         DuplicatesReport report = new DuplicatesReport(resourcesWithDuplicates);
         report.print();
@@ -183,6 +209,35 @@ public class JHades {
         return this;
     }
 
+    /**
+     *
+     * Reports the duplicate classes that were actually loaded, and which version was loaded - needs the jHades agent,
+     * see JHadesAgent.
+     *
+     */
+    public JHades loadedClassConflictsReport() {
+        Instrumentation instrumentation = JHadesAgent.getInstrumentation();
+        if (instrumentation == null) {
+            System.out.println("\n>> jHades loadedClassConflictsReport >> The jHades agent is not installed, add -javaagent:jhades.jar to the JVM options.\n");
+            return this;
+        }
+        return loadedClassConflictsReport(instrumentation.getAllLoadedClasses(), DuplicatesMode.DIFFERENT_SIZE);
+    }
+
+    /**
+     *
+     * @param loadedClasses - the classes loaded by the JVM, such as Instrumentation.getAllLoadedClasses()
+     * @param mode - which versions are considered different, DIFFERENT_CONTENT to leave out identical copies of a file
+     */
+    public JHades loadedClassConflictsReport(Class<?>[] loadedClasses, DuplicatesMode mode) {
+        List<LoadedClassConflict> conflicts = scanner.findLoadedClassConflicts(loadedClasses, mode);
+
+        LoadedClassConflictsReport report = new LoadedClassConflictsReport(conflicts);
+        report.print();
+
+        return this;
+    }
+
     public JHades overlappingJarsReport() {
         System.out.println("\n>> jHades - scanning classpath for overlapping jars: \n");
 
@@ -204,6 +259,17 @@ public class JHades {
         return this;
     }
 
+    /**
+     *
+     * The commands share a single scan of the classpath - this discards it, so that the next command scans the
+     * classpath again.
+     *
+     */
+    public JHades invalidateClasspath() {
+        scanner.invalidateSnapshot();
+        return this;
+    }
+
     private void endCommand(boolean resultsFound) {
         if (!resultsFound) {
             System.out.println("No results found.\n");
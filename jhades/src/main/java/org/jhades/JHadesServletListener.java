@@ -1,7 +1,10 @@
 package org.jhades;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import org.jhades.jmx.JHadesClasspath;
+import org.jhades.service.ClasspathScanner;
 
 /**
  *
@@ -12,22 +15,49 @@ import javax.servlet.ServletContextListener;
  * The default behaviour is to print to the server log information that is normally needed to debug classpath problems:
  * classloader chain, jar locations, overlapping jars, etc.
  *
+ * With the system property or context parameter jhades.jmx=true, the classpath scan is also kept in memory and can be
+ * queried while the application runs, through the MBean org.jhades:type=Classpath,name=<context path>.
+ *
  */
 public class JHadesServletListener implements ServletContextListener {
 
-    private JHades console = new JHades();
+    public static final String JMX_PROPERTY = "jhades.jmx";
+    private ClasspathScanner scanner = new ClasspathScanner();
+    private JHades console = new JHades(scanner);
+    private JHadesClasspath mbean;
 
     @Override
     public void contextDestroyed(ServletContextEvent arg0) {
+        if (mbean != null) {
+            mbean.unregister();
+            mbean = null;
+            console.invalidateClasspath();
+        }
     }
 
     @Override
     public void contextInitialized(ServletContextEvent arg0) {
+        ServletContext servletContext = arg0.getServletContext();
+        boolean jmxEnabled = Boolean.getBoolean(JMX_PROPERTY)
+                || Boolean.parseBoolean(servletContext.getInitParameter(JMX_PROPERTY));
         try {
+            if (jmxEnabled) {
+                // created before the reports run, so that the metrics of their scan are kept
+                mbean = new JHadesClasspath(scanner);
+            }
             runJHades(console);
+            if (mbean != null) {
+                String contextPath = servletContext.getContextPath();
+                mbean.register(contextPath.isEmpty() ? "/" : contextPath);
+            }
         } catch (Exception exc) {
             System.out.println("JHades - error occurred: " + exc.getMessage());
             exc.printStackTrace();
+        } finally {
+            // the reports were printed, don't keep the classpath scan in memory unless the MBean queries it
+            if (mbean == null) {
+                console.invalidateClasspath();
+            }
         }
     }
 
@@ -0,0 +1,211 @@
+package org.jhades.agent;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.LoadedClassConflicts;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Records where each loaded class was loaded from, to tell which of the versions of a class on the classpath is the one
+ * the JVM actually uses.
+ *
+ * The recorder is a pass-through class file transformer: it never changes the classes, it only puts the class name and
+ * protection domain in a ring buffer. The code source locations are looked up and aggregated by a background thread,
+ * so the class loading threads neither lock nor allocate.
+ *
+ */
+public class ClassLoadRecorder implements ClassFileTransformer {
+
+    public static final int DEFAULT_BUFFER_SIZE = 65536;
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final long DRAIN_INTERVAL_MILLIS = 10;
+    private final ClassLoadRingBuffer buffer;
+    // resource name, such as /org/jhades/JHades.class -> code source locations
+    private final Map<String, List<String>> loadedClasses = new HashMap<>();
+    private final ClassLoadRingBuffer.Consumer aggregator = new ClassLoadRingBuffer.Consumer() {
+        @Override
+        public void accept(String className, ProtectionDomain protectionDomain) {
+            addLoadedClass("/" + className + ".class", protectionDomain);
+        }
+    };
+    private volatile Thread drainThread;
+    private long recordedCount;
+
+    public ClassLoadRecorder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize - the number of class loads that can wait for the background thread before being dropped
+     */
+    public ClassLoadRecorder(int bufferSize) {
+        buffer = new ClassLoadRingBuffer(bufferSize);
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        // redefinitions don't change where the class was loaded from, and generated classes have no name
+        if (className != null && classBeingRedefined == null) {
+            buffer.offer(className, protectionDomain);
+        }
+        return null;
+    }
+
+    /**
+     *
+     * Starts the background thread that aggregates the records.
+     *
+     * @param instrumentation - if not null, the classes already loaded are recorded first by the background thread,
+     * such as when the agent is attached to a running JVM
+     */
+    public synchronized void start(final Instrumentation instrumentation) {
+        if (drainThread != null) {
+            return;
+        }
+        drainThread = new Thread("jHades class load recorder") {
+            @Override
+            public void run() {
+                if (instrumentation != null) {
+                    addLoadedClasses(instrumentation.getAllLoadedClasses());
+                }
+                while (drainThread == this) {
+                    if (flush() == 0) {
+                        try {
+                            Thread.sleep(DRAIN_INTERVAL_MILLIS);
+                        } catch (InterruptedException exc) {
+                            return;
+                        }
+                    }
+                }
+            }
+        };
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Stops the background thread, after aggregating the remaining records.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = drainThread;
+            drainThread = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        flush();
+    }
+
+    /**
+     *
+     * Aggregates the records waiting in the buffer, without waiting for the background thread.
+     *
+     * @return the number of records aggregated
+     */
+    public synchronized int flush() {
+        return buffer.drain(aggregator);
+    }
+
+    /**
+     *
+     * Records classes that were loaded before the recorder was registered.
+     *
+     */
+    public synchronized void addLoadedClasses(Class<?>[] classes) {
+        for (Class<?> clazz : classes) {
+            String name = clazz.getName();
+            // arrays and primitives are not loaded from class files, nor are lambdas
+            if (clazz.isArray() || clazz.isPrimitive() || name.indexOf('/') >= 0) {
+                continue;
+            }
+            try {
+                addLoadedClass("/" + name.replace('.', '/') + ".class", clazz.getProtectionDomain());
+            } catch (SecurityException exc) {
+                logger.debug("Could not get the protection domain of " + name + " - reason: " + exc.getMessage());
+            }
+        }
+    }
+
+    /**
+     *
+     * @param resourceName - the resource name of a class, such as /org/jhades/JHades.class
+     * @return the code source locations the class was loaded from, one per class loader - empty if the class was not
+     * loaded, or only by the bootstrap class loader
+     */
+    public List<String> findLoadedLocations(String resourceName) {
+        flush();
+        synchronized (this) {
+            List<String> locations = loadedClasses.get(resourceName);
+            return locations != null ? new ArrayList<>(locations) : Collections.<String>emptyList();
+        }
+    }
+
+    /**
+     *
+     * @param resource - a class scanned from the classpath, with all its versions
+     * @return the versions of the class that were loaded, in classpath order - empty if the class was not loaded
+     */
+    public List<ClasspathResourceVersion> findLoadedVersions(ClasspathResource resource) {
+        return LoadedClassConflicts.findVersionsAtLocations(resource, findLoadedLocations(resource.getName()));
+    }
+
+    /**
+     * @return a copy of the loaded classes recorded so far, by resource name, with their code source locations
+     */
+    public Map<String, List<String>> getLoadedClasses() {
+        flush();
+        synchronized (this) {
+            Map<String, List<String>> copy = new HashMap<>();
+            for (Map.Entry<String, List<String>> entry : loadedClasses.entrySet()) {
+                copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * @return the number of class loads recorded so far, the classes loaded by several class loaders included
+     */
+    public synchronized long getRecordedCount() {
+        return recordedCount;
+    }
+
+    /**
+     * @return the number of class loads that were lost because the background thread did not keep up
+     */
+    public long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+
+    private void addLoadedClass(String resourceName, ProtectionDomain protectionDomain) {
+        recordedCount++;
+        CodeSource codeSource = protectionDomain != null ? protectionDomain.getCodeSource() : null;
+        URL location = codeSource != null ? codeSource.getLocation() : null;
+        if (location == null) {
+            return;
+        }
+        List<String> locations = loadedClasses.get(resourceName);
+        if (locations == null) {
+            locations = new ArrayList<>(1);
+            loadedClasses.put(resourceName, locations);
+        }
+        String locationUrl = location.toString();
+        if (!locations.contains(locationUrl)) {
+            locations.add(locationUrl);
+        }
+    }
+}
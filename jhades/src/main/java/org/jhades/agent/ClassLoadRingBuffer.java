@@ -0,0 +1,105 @@
+package org.jhades.agent;
+
+import java.security.ProtectionDomain;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * Bounded lock-free ring buffer of class load records, written by the class loading threads and read by a single
+ * background thread.
+ *
+ * Each slot has a sequence number telling whether it is free to write or ready to read, so that writers never wait and
+ * never allocate: when the buffer is full the record is dropped and counted instead.
+ *
+ */
+final class ClassLoadRingBuffer {
+
+    /**
+     * Receives the records drained from the buffer.
+     */
+    interface Consumer {
+
+        void accept(String className, ProtectionDomain protectionDomain);
+    }
+
+    private final int mask;
+    private final String[] classNames;
+    private final ProtectionDomain[] protectionDomains;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long tail;
+
+    /**
+     * @param capacity - the number of records the buffer holds, rounded up to a power of two
+     */
+    ClassLoadRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        classNames = new String[size];
+        protectionDomains = new ProtectionDomain[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     *
+     * Adds a record to the buffer, can be called by any thread.
+     *
+     * @return true if the record was added, false if the buffer was full and it was dropped
+     */
+    boolean offer(String className, ProtectionDomain protectionDomain) {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (head.compareAndSet(position, position + 1)) {
+                    classNames[index] = className;
+                    protectionDomains[index] = protectionDomain;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                // the slot was not read yet since the last lap
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+    }
+
+    /**
+     *
+     * Passes the records added so far to the consumer, and frees their slots - only one thread may drain at a time.
+     *
+     * @return the number of records drained
+     */
+    int drain(Consumer consumer) {
+        int count = 0;
+        while (true) {
+            int index = (int) (tail & mask);
+            if (sequences.get(index) != tail + 1) {
+                return count;
+            }
+            String className = classNames[index];
+            ProtectionDomain protectionDomain = protectionDomains[index];
+            classNames[index] = null;
+            protectionDomains[index] = null;
+            sequences.lazySet(index, tail + mask + 1);
+            tail++;
+            count++;
+            consumer.accept(className, protectionDomain);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+}
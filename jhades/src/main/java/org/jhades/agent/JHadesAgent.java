@@ -0,0 +1,70 @@
+package org.jhades.agent;
+
+import java.lang.instrument.Instrumentation;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Java agent recording where each class is loaded from, see ClassLoadRecorder.
+ *
+ * Usage, at startup:
+ *
+ * java -javaagent:jhades.jar ...
+ *
+ * The agent can also be attached to a running JVM, in which case the classes already loaded are recorded too. The size
+ * of the record buffer can be set with -Djhades.agent.buffer.size, 65536 by default.
+ *
+ */
+public final class JHadesAgent {
+
+    public static final String BUFFER_SIZE_PROPERTY = "jhades.agent.buffer.size";
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static volatile Instrumentation instrumentation;
+    private static volatile ClassLoadRecorder recorder;
+
+    private JHadesAgent() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    public static void premain(String agentArgs, Instrumentation inst) {
+        install(inst);
+    }
+
+    public static void agentmain(String agentArgs, Instrumentation inst) {
+        install(inst);
+    }
+
+    /**
+     * @return true if the agent was loaded in this JVM
+     */
+    public static boolean isInstalled() {
+        return recorder != null;
+    }
+
+    /**
+     * @return the instrumentation the agent was loaded with, null if the agent is not installed
+     */
+    public static Instrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * @return the class load recorder, null if the agent is not installed
+     */
+    public static ClassLoadRecorder getRecorder() {
+        return recorder;
+    }
+
+    private static synchronized void install(Instrumentation inst) {
+        if (recorder != null) {
+            return;
+        }
+        ClassLoadRecorder newRecorder = new ClassLoadRecorder(Integer.getInteger(BUFFER_SIZE_PROPERTY, ClassLoadRecorder.DEFAULT_BUFFER_SIZE));
+        // registered before listing the loaded classes, so that no class load is missed in between
+        inst.addTransformer(newRecorder);
+        newRecorder.start(inst);
+        instrumentation = inst;
+        recorder = newRecorder;
+        logger.debug("jHades agent installed");
+    }
+}
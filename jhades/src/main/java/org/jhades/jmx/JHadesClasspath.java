@@ -0,0 +1,198 @@
+package org.jhades.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.jhades.model.ClasspathColumnarIndex;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathEntryScanMetrics;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClasspathScanSummary;
+import org.jhades.model.ClasspathSnapshot;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.model.JarPair;
+import org.jhades.service.ClasspathScanMetricsListener;
+import org.jhades.service.ClasspathScanner;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Exposes the classpath of a running application through JMX, as the MBean org.jhades:type=Classpath,name=<name>.
+ *
+ * The classpath is scanned once and its index is kept in memory by the scanner - the queries then run against the
+ * index, until refresh() scans the classpath again.
+ *
+ */
+public class JHadesClasspath implements JHadesClasspathMBean {
+
+    public static final String DOMAIN = "org.jhades";
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private final ClasspathScanner scanner;
+    private volatile ClasspathScanSummary lastScanSummary;
+    private ObjectName objectName;
+
+    /**
+     *
+     * @param scanner - the scanner whose snapshot is queried - its scan listener is replaced, to keep the metrics of
+     * each scan
+     */
+    public JHadesClasspath(ClasspathScanner scanner) {
+        this.scanner = scanner;
+        scanner.setScanListener(new ClasspathScanMetricsListener() {
+            @Override
+            public void onEntryScanStart(ClasspathEntry classpathEntry) {
+            }
+
+            @Override
+            public void onEntryScanEnd(ClasspathEntry classpathEntry) {
+            }
+
+            @Override
+            public void onEntryScanMetrics(ClasspathEntryScanMetrics metrics) {
+            }
+
+            @Override
+            public void onScanSummary(ClasspathScanSummary summary) {
+                lastScanSummary = summary;
+            }
+        });
+    }
+
+    /**
+     *
+     * Scans the classpath if needed, and registers this MBean on the platform MBean server.
+     *
+     * @param name - the name of the application, such as its context path
+     * @return the name the MBean is registered with
+     * @throws JMException if the MBean could not be registered
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        scanner.getSnapshot();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        objectName = new ObjectName(DOMAIN + ":type=Classpath,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        logger.info("jHades classpath MBean registered as " + objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters this MBean, if it was registered - the index is released with the MBean.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException exc) {
+            logger.warn("Could not unregister " + objectName + " - reason: " + exc.getMessage());
+        }
+        objectName = null;
+    }
+
+    public ClasspathScanner getScanner() {
+        return scanner;
+    }
+
+    @Override
+    public long getLastScanTimeMillis() {
+        ClasspathScanSummary summary = lastScanSummary;
+        return summary != null ? TimeUnit.NANOSECONDS.toMillis(summary.getWallTimeNanos()) : 0;
+    }
+
+    @Override
+    public long getLastScanBytesRead() {
+        ClasspathScanSummary summary = lastScanSummary;
+        return summary != null ? summary.getBytesRead() : 0;
+    }
+
+    @Override
+    public int getLastScanFailedEntries() {
+        ClasspathScanSummary summary = lastScanSummary;
+        return summary != null ? summary.getFailedEntryCount() : 0;
+    }
+
+    @Override
+    public long getSnapshotCreationTime() {
+        return scanner.getSnapshot().getCreationTime();
+    }
+
+    @Override
+    public int getClasspathEntryCount() {
+        return scanner.getSnapshot().getClasspathEntries().size();
+    }
+
+    @Override
+    public int getResourceCount() {
+        return getIndex().getResourceCount();
+    }
+
+    @Override
+    public int getResourceVersionCount() {
+        return getIndex().getVersionCount();
+    }
+
+    @Override
+    public long getIndexMemoryBytes() {
+        return getIndex().getMemorySize();
+    }
+
+    @Override
+    public String[] findClass(String className) {
+        ClasspathResource found = scanner.findClassByName(className);
+        if (found == null) {
+            return new String[0];
+        }
+        List<String> lines = new ArrayList<>();
+        for (ClasspathResourceVersion version : found.getResourceFileVersions()) {
+            lines.add(version.getClasspathEntry().getUrl() + found.getName());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public String[] findByRegex(String search) {
+        List<String> lines = new ArrayList<>();
+        for (ClasspathResource resource : scanner.findByRegex(search)) {
+            lines.add(resource.getName() + " - versions: " + resource.getResourceFileVersions().size());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public String[] duplicatesReport(String mode) {
+        List<String> lines = new ArrayList<>();
+        for (ClasspathResource resource : scanner.findAllResourcesWithDuplicates(DuplicatesMode.valueOf(mode))) {
+            lines.add(resource.getName());
+            for (ClasspathResourceVersion version : resource.getResourceFileVersions()) {
+                lines.add("    " + version.getClasspathEntry().getUrl() + " - size: " + version.getFileSize());
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public String[] overlappingJarsReport(String mode) {
+        List<String> lines = new ArrayList<>();
+        for (JarPair jarPair : scanner.findOverlappingJars(DuplicatesMode.valueOf(mode))) {
+            lines.add(jarPair.getJar1().getUrl() + " overlaps with " + jarPair.getJar2().getUrl()
+                    + " - total overlapping classes: " + jarPair.getDupClassesTotal());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public void refresh() {
+        scanner.refreshSnapshot();
+    }
+
+    private ClasspathColumnarIndex getIndex() {
+        ClasspathSnapshot snapshot = scanner.getSnapshot();
+        return snapshot.getColumnarIndex();
+    }
+}
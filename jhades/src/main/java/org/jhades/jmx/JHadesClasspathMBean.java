@@ -0,0 +1,76 @@
+package org.jhades.jmx;
+
+/**
+ *
+ * Management interface of the classpath of a running application: the queries run against an index of the classpath
+ * kept in memory, so they take microseconds and don't scan the classpath again.
+ *
+ * The results are returned as lines of text, so that any JMX console can display them.
+ *
+ */
+public interface JHadesClasspathMBean {
+
+    /**
+     * @return the elapsed time of the last classpath scan, in milliseconds
+     */
+    long getLastScanTimeMillis();
+
+    /**
+     * @return the bytes read by the last classpath scan
+     */
+    long getLastScanBytesRead();
+
+    /**
+     * @return the number of classpath entries that could not be scanned by the last scan
+     */
+    int getLastScanFailedEntries();
+
+    /**
+     * @return the time of the last classpath scan, in milliseconds since the epoch
+     */
+    long getSnapshotCreationTime();
+
+    int getClasspathEntryCount();
+
+    int getResourceCount();
+
+    int getResourceVersionCount();
+
+    /**
+     * @return the estimated memory retained by the index of the snapshot, including the resource names, in bytes
+     */
+    long getIndexMemoryBytes();
+
+    /**
+     *
+     * @param className - the fully qualified name of the class, such as org.apache.log4j.Logger
+     * @return the URLs of all the versions of the class, in classpath order
+     */
+    String[] findClass(String className);
+
+    /**
+     *
+     * @param search - a Java regular expression matched against the resource names, such as log4j.*\.xml
+     * @return the names of the matching resources, each with its number of versions
+     */
+    String[] findByRegex(String search);
+
+    /**
+     *
+     * @param mode - ALL, DIFFERENT_SIZE or DIFFERENT_CONTENT, see DuplicatesMode
+     * @return the resources with more than one version, each followed by the URLs of its versions
+     */
+    String[] duplicatesReport(String mode);
+
+    /**
+     *
+     * @param mode - ALL, DIFFERENT_SIZE or DIFFERENT_CONTENT, see DuplicatesMode
+     * @return the pairs of jars that have classes in common, with the number of overlapping classes
+     */
+    String[] overlappingJarsReport(String mode);
+
+    /**
+     * Scans the classpath again, replacing the index.
+     */
+    void refresh();
+}
@@ -0,0 +1,127 @@
+package org.jhades.model;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.jhades.utils.ScanStatistics;
+import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipCentralDirectoryReader;
+
+/**
+ *
+ * A classpath entry inside an archive, such as a jar or the classes folder of a WAR, that is scanned in place: the
+ * central directory of the nested jar is read directly from the archive, and nothing is extracted to disk.
+ *
+ * The entry is either a nested jar, or a folder of the archive (or of a nested jar). Its URL follows the jar URL
+ * syntax, for example jar:file:/apps/app.war!/WEB-INF/lib/commons-lang.jar or jar:file:/apps/app.war!/WEB-INF/classes/
+ * - the archive itself can also be the entry, if it's a jar.
+ *
+ * If the entry is a jar and a content cache is given, identical jars found in several archives are indexed only once.
+ *
+ * @see ArchiveEntries
+ *
+ */
+public class ArchiveClasspathEntry extends ClasspathEntry {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private final Path archive;
+    private final List<ZipCentralDirectoryReader.Entry> nestedJars;
+    private final String folder;
+    private final JarContentCache contentCache;
+
+    /**
+     *
+     * @param archive - the archive on the file system
+     * @param nestedJars - the chain of nested jars leading to the entry, each one an entry of the previous one - empty
+     * for the archive itself or one of its folders
+     * @param folder - the folder of the innermost jar that is the classpath entry, such as WEB-INF/classes/ - or null
+     * if the innermost jar is the classpath entry
+     * @param contentCache - the cache shared by identical jars, or null to always read the jar
+     */
+    ArchiveClasspathEntry(ClazzLoader classLoader, Path archive, List<ZipCentralDirectoryReader.Entry> nestedJars, String folder,
+            JarContentCache contentCache) {
+        super(classLoader, buildUrl(archive, nestedJars, folder));
+        this.archive = archive;
+        this.nestedJars = Collections.unmodifiableList(new ArrayList<>(nestedJars));
+        this.folder = folder;
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * @return the archive on the file system that contains this entry
+     */
+    public Path getArchive() {
+        return archive;
+    }
+
+    @Override
+    protected void scan(List<ClasspathResourceVersion> versions) throws IOException {
+        scan(null, versions);
+    }
+
+    /**
+     *
+     * Scans this entry from the archive that contains it, already open - used to read all the entries of a nested
+     * archive, such as a WAR inside an EAR, while it's opened only once.
+     *
+     * @param enclosingReader - the reader of the innermost archive that contains this entry
+     */
+    void scanFrom(ZipCentralDirectoryReader enclosingReader) {
+        List<ClasspathResourceVersion> versions = new ArrayList<>();
+        scan(enclosingReader, versions);
+        setResourceVersions(versions);
+    }
+
+    private void scan(ZipCentralDirectoryReader enclosingReader, List<ClasspathResourceVersion> versions) {
+        logger.debug("\nScanning archive entry: " + getUrl());
+
+        try {
+            if (enclosingReader != null) {
+                // a folder is inside the innermost archive, while a jar is an entry of it
+                readEntries(folder != null ? enclosingReader : enclosingReader.openNested(nestedJars.get(nestedJars.size() - 1)), versions);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+                ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(channel, 0, channel.size());
+                for (ZipCentralDirectoryReader.Entry nestedJar : nestedJars) {
+                    reader = reader.openNested(nestedJar);
+                }
+                readEntries(reader, versions);
+            }
+        } catch (IOException exc) {
+            logger.debug("Could not scan archive entry: " + getUrl() + " - reason:" + exc.getMessage());
+            ScanStatistics.setFailure(exc.toString());
+        }
+    }
+
+    /**
+     * Reads the resource versions from the reader of this entry's innermost archive - a jar is looked up in the content
+     * cache by the digest of its central directory, so that the central directory read for the digest is also the one
+     * scanned on a cache miss.
+     */
+    private void readEntries(ZipCentralDirectoryReader reader, List<ClasspathResourceVersion> versions) throws IOException {
+        if (contentCache != null && folder == null) {
+            contentCache.addResourceVersions(this, reader, versions);
+        } else {
+            readArchiveEntries(reader, folder, versions);
+        }
+    }
+
+    private static String buildUrl(Path archive, List<ZipCentralDirectoryReader.Entry> nestedJars, String folder) {
+        if (nestedJars.isEmpty() && folder == null) {
+            return archive.toUri().toString();
+        }
+        StringBuilder url = new StringBuilder("jar:").append(archive.toUri());
+        for (ZipCentralDirectoryReader.Entry nestedJar : nestedJars) {
+            url.append("!/").append(nestedJar.getName());
+        }
+        if (folder != null) {
+            url.append("!/").append(folder);
+        }
+        return url.toString();
+    }
+}
@@ -0,0 +1,350 @@
+package org.jhades.model;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.jhades.utils.ZipCentralDirectoryReader;
+
+/**
+ *
+ * Utility class for finding the classpath entries of an archive, such as a WAR, an EAR or a fat jar, without
+ * extracting it.
+ *
+ * Only the central directory of the archive is read to find the entries, and the entries are then scanned in place.
+ *
+ * @see ArchiveClasspathEntry
+ *
+ */
+public final class ArchiveEntries {
+
+    public static final String WAR_CLASSES_FOLDER = "WEB-INF/classes/";
+    public static final String WAR_LIB_FOLDER = "WEB-INF/lib/";
+    public static final String EAR_LIB_FOLDER = "lib/";
+    public static final String BOOT_CLASSES_FOLDER = "BOOT-INF/classes/";
+    public static final String BOOT_LIB_FOLDER = "BOOT-INF/lib/";
+    public static final String JAR_LIB_FOLDER = "lib/";
+
+    private ArchiveEntries() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    /**
+     *
+     * Finds the classpath entries of a WAR: the WEB-INF/classes folder if present, followed by the jars of WEB-INF/lib
+     * in the order they are stored in the WAR.
+     *
+     * @param war - the WAR file
+     * @return the classpath entries of the WAR, to be scanned in place
+     * @throws IOException if the WAR could not be read
+     */
+    public static List<ClasspathEntry> findWarClasspathEntries(Path war) throws IOException {
+        return findWarClasspathEntries(war, null);
+    }
+
+    /**
+     *
+     * @param war - the WAR file
+     * @param contentCache - the cache shared with the other scanned archives, or null
+     * @return the classpath entries of the WAR, to be scanned in place
+     * @throws IOException if the WAR could not be read
+     */
+    public static List<ClasspathEntry> findWarClasspathEntries(Path war, JarContentCache contentCache) throws IOException {
+        try (FileChannel channel = FileChannel.open(war, StandardOpenOption.READ)) {
+            ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(channel, 0, channel.size());
+            List<ArchiveClasspathEntry> warEntries = findWarEntries(war, Collections.<ZipCentralDirectoryReader.Entry>emptyList(),
+                    reader, contentCache);
+            return new ArrayList<ClasspathEntry>(warEntries);
+        }
+    }
+
+    /**
+     *
+     * Finds the classpath entries of an EAR, as the union of the classpaths of its modules: the shared jars of the lib
+     * folder, followed by the entries of each EJB jar and WAR module.
+     *
+     * The entries are scanned on the calling thread while they are found, so that each nested WAR is opened only once.
+     *
+     * @param ear - the EAR file
+     * @param contentCache - the cache shared with the other scanned archives, or null
+     * @return the classpath entries of the EAR, already scanned
+     * @throws IOException if the EAR could not be read
+     */
+    public static List<ClasspathEntry> findEarClasspathEntries(Path ear, JarContentCache contentCache) throws IOException {
+        List<EarModule> modules = findEarModules(ear, contentCache, 1);
+
+        Set<ClasspathEntry> classpathEntries = new LinkedHashSet<>();
+        for (EarModule module : modules) {
+            classpathEntries.addAll(module.getSharedEntries());
+        }
+        for (EarModule module : modules) {
+            classpathEntries.addAll(module.getModuleEntries());
+        }
+        return new ArrayList<>(classpathEntries);
+    }
+
+    /**
+     *
+     * Finds and scans the modules of an EAR: the EJB jars and the WARs at the root of the EAR, each one with the shared
+     * jars of the lib folder on its classpath.
+     *
+     * The shared jars and the modules are scanned in parallel, and nothing is extracted: each nested WAR is opened
+     * once, and all its entries are read from it - a compressed WAR is inflated in memory while it's scanned. The
+     * shared jars are the same entries in every module, so they are only scanned once.
+     *
+     * @param ear - the EAR file
+     * @param contentCache - the cache shared with the other scanned archives, or null
+     * @param parallelism - the number of modules and shared jars scanned at the same time
+     * @return the modules of the EAR in the order they are stored in it, with their classpath entries already scanned
+     * @throws IOException if the EAR or one of its WARs could not be read
+     */
+    public static List<EarModule> findEarModules(final Path ear, final JarContentCache contentCache, int parallelism) throws IOException {
+        final List<ZipCentralDirectoryReader.Entry> libJars = new ArrayList<>();
+        final List<ZipCentralDirectoryReader.Entry> moduleArchives = new ArrayList<>();
+
+        ZipCentralDirectoryReader.read(ear, new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                String name = entry.getName();
+                if (isJarInFolder(name, EAR_LIB_FOLDER)) {
+                    libJars.add(entry.copy());
+                } else if (isJarInFolder(name, "") || isWarModule(name)) {
+                    moduleArchives.add(entry.copy());
+                }
+            }
+        });
+
+        List<ClasspathEntry> sharedEntries = new ArrayList<>();
+        addNestedJars(sharedEntries, ear, libJars, contentCache);
+
+        List<EarModule> modules = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            List<Future<List<ClasspathEntry>>> sharedScans = new ArrayList<>();
+            for (ClasspathEntry sharedEntry : sharedEntries) {
+                sharedScans.add(pool.submit(new ModuleScan(ear, Collections.singletonList(sharedEntry), null, contentCache)));
+            }
+            List<Future<List<ClasspathEntry>>> moduleScans = new ArrayList<>();
+            for (ZipCentralDirectoryReader.Entry moduleArchive : moduleArchives) {
+                if (isWarModule(moduleArchive.getName())) {
+                    moduleScans.add(pool.submit(new ModuleScan(ear, null, moduleArchive, contentCache)));
+                } else {
+                    List<ClasspathEntry> ejbJar = new ArrayList<>();
+                    addNestedJars(ejbJar, ear, Collections.singletonList(moduleArchive), contentCache);
+                    moduleScans.add(pool.submit(new ModuleScan(ear, ejbJar, null, contentCache)));
+                }
+            }
+
+            for (Future<List<ClasspathEntry>> sharedScan : sharedScans) {
+                waitForScan(sharedScan);
+            }
+            for (int i = 0; i < moduleArchives.size(); i++) {
+                modules.add(new EarModule(moduleArchives.get(i).getName(), waitForScan(moduleScans.get(i)), sharedEntries));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return modules;
+    }
+
+    /**
+     *
+     * Finds the classpath entries of a jar, which can be an executable fat jar bundling other jars:
+     *
+     * - with the Spring Boot layout, the BOOT-INF/classes folder followed by the jars of BOOT-INF/lib - the launcher
+     * classes at the root of the jar are not part of the application classpath
+     *
+     * - otherwise the jar itself, followed by the jars of its lib folder if any
+     *
+     * @param jar - the jar file
+     * @param contentCache - the cache shared with the other scanned archives, or null
+     * @return the classpath entries of the jar, to be scanned in place
+     * @throws IOException if the jar could not be read
+     */
+    public static List<ClasspathEntry> findJarClasspathEntries(Path jar, JarContentCache contentCache) throws IOException {
+        final List<ZipCentralDirectoryReader.Entry> bootJars = new ArrayList<>();
+        final List<ZipCentralDirectoryReader.Entry> libJars = new ArrayList<>();
+        final boolean[] hasBootClasses = new boolean[1];
+
+        ZipCentralDirectoryReader.read(jar, new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    return;
+                }
+                if (name.startsWith(BOOT_CLASSES_FOLDER)) {
+                    hasBootClasses[0] = true;
+                } else if (isJarInFolder(name, BOOT_LIB_FOLDER)) {
+                    bootJars.add(entry.copy());
+                } else if (isJarInFolder(name, JAR_LIB_FOLDER)) {
+                    libJars.add(entry.copy());
+                }
+            }
+        });
+
+        List<ClasspathEntry> classpathEntries = new ArrayList<>();
+        if (hasBootClasses[0] || !bootJars.isEmpty()) {
+            if (hasBootClasses[0]) {
+                classpathEntries.add(new ArchiveClasspathEntry(null, jar, Collections.<ZipCentralDirectoryReader.Entry>emptyList(),
+                        BOOT_CLASSES_FOLDER, null));
+            }
+            addNestedJars(classpathEntries, jar, bootJars, contentCache);
+        } else {
+            classpathEntries.add(new ArchiveClasspathEntry(null, jar, Collections.<ZipCentralDirectoryReader.Entry>emptyList(),
+                    null, contentCache));
+            addNestedJars(classpathEntries, jar, libJars, contentCache);
+        }
+        return classpathEntries;
+    }
+
+    /**
+     *
+     * Finds the classpath entries of an artifact, depending on its extension: a WAR, an EAR, or otherwise a jar.
+     *
+     * @param artifact - the WAR, EAR or jar file
+     * @param contentCache - the cache shared with the other scanned archives, or null
+     * @return the classpath entries of the artifact, to be scanned in place
+     * @throws IOException if the artifact could not be read
+     */
+    public static List<ClasspathEntry> findArtifactClasspathEntries(Path artifact, JarContentCache contentCache) throws IOException {
+        String fileName = artifact.getFileName().toString().toLowerCase();
+        if (fileName.endsWith(".war")) {
+            return findWarClasspathEntries(artifact, contentCache);
+        } else if (fileName.endsWith(".ear")) {
+            return findEarClasspathEntries(artifact, contentCache);
+        }
+        return findJarClasspathEntries(artifact, contentCache);
+    }
+
+    /**
+     *
+     * Finds the WEB-INF/classes folder and the WEB-INF/lib jars of a WAR, which can itself be nested in an archive.
+     *
+     * @param nestedWar - the chain of nested archives leading to the WAR, empty if the archive is the WAR
+     * @param warReader - the reader of the WAR
+     */
+    private static List<ArchiveClasspathEntry> findWarEntries(Path archive, List<ZipCentralDirectoryReader.Entry> nestedWar,
+            ZipCentralDirectoryReader warReader, JarContentCache contentCache) throws IOException {
+        final List<ZipCentralDirectoryReader.Entry> jars = new ArrayList<>();
+        final boolean[] hasClasses = new boolean[1];
+
+        warReader.read(new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                String name = entry.getName();
+                if (entry.isDirectory()) {
+                    return;
+                }
+                if (name.startsWith(WAR_CLASSES_FOLDER)) {
+                    hasClasses[0] = true;
+                } else if (isJarInFolder(name, WAR_LIB_FOLDER)) {
+                    jars.add(entry.copy());
+                }
+            }
+        });
+
+        List<ArchiveClasspathEntry> warEntries = new ArrayList<>();
+        if (hasClasses[0]) {
+            warEntries.add(new ArchiveClasspathEntry(null, archive, nestedWar, WAR_CLASSES_FOLDER, null));
+        }
+        for (ZipCentralDirectoryReader.Entry jar : jars) {
+            List<ZipCentralDirectoryReader.Entry> nestedJar = new ArrayList<>(nestedWar);
+            nestedJar.add(jar);
+            warEntries.add(new ArchiveClasspathEntry(null, archive, nestedJar, null, contentCache));
+        }
+        return warEntries;
+    }
+
+    private static List<ClasspathEntry> waitForScan(Future<List<ClasspathEntry>> scan) throws IOException {
+        try {
+            return scan.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning the EAR modules.", exc);
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void addNestedJars(List<ClasspathEntry> classpathEntries, Path archive, List<ZipCentralDirectoryReader.Entry> jars,
+            JarContentCache contentCache) {
+        for (ZipCentralDirectoryReader.Entry jar : jars) {
+            classpathEntries.add(new ArchiveClasspathEntry(null, archive, Collections.singletonList(jar), null, contentCache));
+        }
+    }
+
+    /**
+     * @return true if the zip entry is a WAR at the root of an EAR
+     */
+    private static boolean isWarModule(String name) {
+        return name.endsWith(".war") && name.indexOf('/') == -1;
+    }
+
+    /**
+     * @return true if the zip entry is a jar directly inside the folder, not in one of its sub folders
+     */
+    private static boolean isJarInFolder(String name, String folder) {
+        return name.startsWith(folder) && name.endsWith(".jar") && name.indexOf('/', folder.length()) == -1;
+    }
+
+    /**
+     * Scans the entries of a module - or of a shared jar - on a thread of the pool. A WAR module is opened once, and
+     * all its entries are read from it.
+     */
+    private static class ModuleScan implements Callable<List<ClasspathEntry>> {
+
+        private final Path ear;
+        private final List<ClasspathEntry> entries;
+        private final ZipCentralDirectoryReader.Entry war;
+        private final JarContentCache contentCache;
+
+        /**
+         *
+         * @param entries - the entries to scan, or null for a WAR module
+         * @param war - the WAR module whose entries are found and scanned, or null
+         */
+        ModuleScan(Path ear, List<ClasspathEntry> entries, ZipCentralDirectoryReader.Entry war, JarContentCache contentCache) {
+            this.ear = ear;
+            this.entries = entries;
+            this.war = war;
+            this.contentCache = contentCache;
+        }
+
+        @Override
+        public List<ClasspathEntry> call() throws IOException, URISyntaxException {
+            if (war == null) {
+                for (ClasspathEntry entry : entries) {
+                    entry.getResourceVersions();
+                }
+                return entries;
+            }
+            try (FileChannel channel = FileChannel.open(ear, StandardOpenOption.READ)) {
+                ZipCentralDirectoryReader warReader = new ZipCentralDirectoryReader(channel, 0, channel.size()).openNested(war);
+                List<ArchiveClasspathEntry> warEntries = findWarEntries(ear, Collections.singletonList(war), warReader, contentCache);
+                for (ArchiveClasspathEntry warEntry : warEntries) {
+                    warEntry.scanFrom(warReader);
+                }
+                return new ArrayList<ClasspathEntry>(warEntries);
+            }
+        }
+    }
+}
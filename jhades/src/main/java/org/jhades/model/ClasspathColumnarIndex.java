@@ -0,0 +1,445 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.jhades.service.ClasspathScannerListener;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Columnar index of the resource versions of a list of classpath entries, kept in primitive arrays instead of one
+ * object per resource and per version.
+ *
+ * There is one row per resource version, with the columns entry id (the position of the entry on the classpath), size
+ * and CRC. The rows are grouped by resource: the versions of a resource are consecutive and in classpath order, and
+ * each resource is described by its name id and the offset of its first row. The resources themselves are in classpath
+ * order, by first occurrence.
+ *
+ * The duplicate and overlap queries run directly on the arrays. ClasspathResource objects are only created as views,
+ * for the resources that are returned to the caller, and kept so that the same resource is always the same object.
+ *
+ * The index never changes after being built, except for the CRCs of class folder files, which are computed the first
+ * time they are needed.
+ *
+ * @see ResourceNameTable
+ *
+ */
+public final class ClasspathColumnarIndex {
+
+    private final List<ClasspathEntry> classpathEntries;
+    // the table of the name ids, held for as long as the index refers to it
+    private final ResourceNameTable names = ResourceNameTable.getShared();
+    // one value per resource
+    private final int[] resourceNameIds;
+    private final int[] resourceOffsets;
+    // one value per resource version
+    private final int[] entryIds;
+    private final long[] sizes;
+    private final int[] crcs;
+    // one bit per resource version, set once its CRC is stored - the CRC is written before the bit is published
+    private final AtomicIntegerArray crcKnown;
+    // open addressing table of the resources by name id, sized by the number of resources, -1 for an empty slot
+    private final int[] resourceSlots;
+    // the resource objects created so far, so that a resource is always returned as the same object
+    private final AtomicReferenceArray<ClasspathResource> views;
+
+    private ClasspathColumnarIndex(List<ClasspathEntry> classpathEntries, Columns columns) {
+        this.classpathEntries = Collections.unmodifiableList(new ArrayList<>(classpathEntries));
+        int rows = columns.size;
+
+        // first pass: number the resources by first occurrence, and count their versions
+        int[] rowSlots = newSlots(rows);
+        int[] rowResources = new int[rows];
+        int[] versionCounts = new int[Math.max(1, rows)];
+        int[] nameIds = new int[Math.max(1, rows)];
+        int resources = 0;
+        for (int row = 0; row < rows; row++) {
+            int nameId = columns.nameIds[row];
+            int slot = findSlot(rowSlots, nameIds, nameId);
+            int resource = rowSlots[slot];
+            if (resource == -1) {
+                resource = resources++;
+                rowSlots[slot] = resource;
+                nameIds[resource] = nameId;
+            }
+            rowResources[row] = resource;
+            versionCounts[resource]++;
+        }
+        resourceNameIds = Arrays.copyOf(nameIds, resources);
+        resourceSlots = newSlots(resources);
+        for (int resource = 0; resource < resources; resource++) {
+            resourceSlots[findSlot(resourceSlots, resourceNameIds, resourceNameIds[resource])] = resource;
+        }
+        views = new AtomicReferenceArray<>(resources);
+        resourceOffsets = new int[resources + 1];
+        for (int resource = 0; resource < resources; resource++) {
+            resourceOffsets[resource + 1] = resourceOffsets[resource] + versionCounts[resource];
+        }
+
+        // second pass: counting sort of the rows by resource, which keeps them in classpath order inside each resource
+        int[] cursors = Arrays.copyOf(resourceOffsets, resources);
+        entryIds = new int[rows];
+        sizes = new long[rows];
+        crcs = new int[rows];
+        int[] knownBits = new int[(rows + 31) >>> 5];
+        for (int row = 0; row < rows; row++) {
+            int target = cursors[rowResources[row]]++;
+            entryIds[target] = columns.entryIds[row];
+            sizes[target] = columns.sizes[row];
+            crcs[target] = (int) columns.crcs[row];
+            if (columns.crcs[row] != ClasspathResourceVersion.UNKNOWN_CRC) {
+                knownBits[target >>> 5] |= 1 << (target & 31);
+            }
+        }
+        // the array copies the bits before being assigned to the final field, which publishes all the columns
+        crcKnown = new AtomicIntegerArray(knownBits);
+    }
+
+    /**
+     *
+     * Scans a list of classpath entries in parallel and builds their index. Entries that were not scanned before don't
+     * keep their resource versions, the index is the only copy of the scan.
+     *
+     * @param classpathEntries - the classpath entries, in classpath order
+     * @return the index of all the resource versions of the entries
+     */
+    public static ClasspathColumnarIndex build(List<ClasspathEntry> classpathEntries, StdOutLogger logger,
+            ClasspathScannerListener listener) {
+        final Columns columns = new Columns();
+        ClasspathEntries.scanEntriesInOrder(classpathEntries, logger, listener, false, new ClasspathEntries.ScannedEntryHandler() {
+            private int entryId = 0;
+
+            @Override
+            public void onEntryScanned(List<ClasspathResourceVersion> resourceVersions) {
+                for (ClasspathResourceVersion version : resourceVersions) {
+                    if (version.getResourceNameId() != ResourceNameTable.NO_NAME) {
+                        columns.add(entryId, version.getResourceNameId(), version.getFileSize(), version.getStoredCrc());
+                    }
+                }
+                entryId++;
+            }
+        });
+        return new ClasspathColumnarIndex(classpathEntries, columns);
+    }
+
+    /**
+     * @return the indexed classpath entries, by entry id
+     */
+    public List<ClasspathEntry> getClasspathEntries() {
+        return classpathEntries;
+    }
+
+    /**
+     * @return the number of resources
+     */
+    public int getResourceCount() {
+        return resourceNameIds.length;
+    }
+
+    /**
+     * @return the number of resource versions
+     */
+    public int getVersionCount() {
+        return entryIds.length;
+    }
+
+    /**
+     *
+     * Estimates the memory retained by the index: its arrays, and the names of its resources on the name table, which
+     * usually take most of the memory. The resource objects created for queries and the classpath entries are not
+     * included.
+     *
+     * @return the estimated size of the index, in bytes
+     */
+    public long getMemorySize() {
+        long arrays = arraySize(resourceNameIds.length, 4) + arraySize(resourceOffsets.length, 4)
+                + arraySize(resourceSlots.length, 4) + arraySize(views.length(), 4);
+        arrays += arraySize(entryIds.length, 4) + arraySize(sizes.length, 8) + arraySize(crcs.length, 4)
+                + arraySize(crcKnown.length(), 4);
+        return arrays + names.getMemorySize(resourceNameIds);
+    }
+
+    /**
+     * @param resource - a resource of the index, between zero and the resource count
+     * @return the name of the resource
+     */
+    public String getResourceName(int resource) {
+        return names.getName(resourceNameIds[resource]);
+    }
+
+    /**
+     * @param resource - a resource of the index
+     * @return the number of versions of the resource
+     */
+    public int getNumberOfVersions(int resource) {
+        return resourceOffsets[resource + 1] - resourceOffsets[resource];
+    }
+
+    /**
+     *
+     * @param resourceName - the full resource name, such as /java/lang/String.class
+     * @return the resource with that name, or -1 if not found
+     */
+    public int findResource(String resourceName) {
+        int nameId = names.find(resourceName);
+        return nameId != ResourceNameTable.NO_NAME ? resourceSlots[findSlot(resourceSlots, resourceNameIds, nameId)] : -1;
+    }
+
+    /**
+     *
+     * @param mode - which versions are considered different
+     * @param classFilesOnly - true to consider only class files
+     * @return the resources with more than one version that differ as required by the mode, in classpath order
+     */
+    public int[] findResourcesWithDuplicates(DuplicatesMode mode, boolean classFilesOnly) {
+        int[] found = new int[16];
+        int total = 0;
+        for (int resource = 0; resource < resourceNameIds.length; resource++) {
+            // the name is checked first, so that CRCs are only computed for class files
+            if ((!classFilesOnly || names.endsWith(resourceNameIds[resource], ".class")) && hasDuplicates(resource, mode)) {
+                if (total == found.length) {
+                    found = Arrays.copyOf(found, total * 2);
+                }
+                found[total++] = resource;
+            }
+        }
+        return Arrays.copyOf(found, total);
+    }
+
+    /**
+     *
+     * Matches the resource names one by one on a reused builder, so that no name string is created for ASCII names.
+     *
+     * @param pattern - the regular expression, found anywhere in the name
+     * @return the resources whose name matches, in classpath order
+     */
+    public int[] findResourcesByRegex(Pattern pattern) {
+        StringBuilder name = new StringBuilder();
+        Matcher matcher = pattern.matcher(name);
+        int[] found = new int[16];
+        int total = 0;
+        for (int resource = 0; resource < resourceNameIds.length; resource++) {
+            if (resourceNameIds[resource] == ResourceNameTable.NO_NAME) {
+                continue;
+            }
+            name.setLength(0);
+            names.appendName(resourceNameIds[resource], name);
+            if (matcher.reset(name).find()) {
+                if (total == found.length) {
+                    found = Arrays.copyOf(found, total * 2);
+                }
+                found[total++] = resource;
+            }
+        }
+        return Arrays.copyOf(found, total);
+    }
+
+    /**
+     *
+     * Finds the pairs of jars with overlapping class files, counting the pairs directly on the entry id column.
+     *
+     * @param mode - which versions are considered different
+     * @return - a list of jar pairs that have overlapping class files, sorted by the number of common classes descending
+     */
+    public List<JarPair> findOverlappingJars(DuplicatesMode mode) {
+        int[] classFilesWithDuplicates = findResourcesWithDuplicates(mode, true);
+
+        // the same entry can show up several times on the classpath, for example on two class loaders
+        Map<ClasspathEntry, Integer> canonicalIds = new HashMap<>();
+        List<ClasspathEntry> canonicalEntries = new ArrayList<>();
+        int[] canonicalIdsByEntryId = new int[classpathEntries.size()];
+        for (int entryId = 0; entryId < classpathEntries.size(); entryId++) {
+            ClasspathEntry entry = classpathEntries.get(entryId);
+            Integer canonicalId = canonicalIds.get(entry);
+            if (canonicalId == null) {
+                canonicalId = canonicalEntries.size();
+                canonicalIds.put(entry, canonicalId);
+                canonicalEntries.add(entry);
+            }
+            canonicalIdsByEntryId[entryId] = canonicalId;
+        }
+
+        int total = 0;
+        for (int resource : classFilesWithDuplicates) {
+            total += getNumberOfVersions(resource);
+        }
+        int[] groupEntryIds = new int[total];
+        int[] groupOffsets = new int[classFilesWithDuplicates.length + 1];
+        int position = 0;
+        for (int group = 0; group < classFilesWithDuplicates.length; group++) {
+            int resource = classFilesWithDuplicates[group];
+            for (int row = resourceOffsets[resource]; row < resourceOffsets[resource + 1]; row++) {
+                groupEntryIds[position++] = canonicalIdsByEntryId[entryIds[row]];
+            }
+            groupOffsets[group + 1] = position;
+        }
+
+        return JarPairs.findOverlappingJarPairs(canonicalEntries, groupEntryIds, groupOffsets,
+                ClasspathEntries.getDefaultScanParallelism(), Integer.MAX_VALUE);
+    }
+
+    /**
+     *
+     * Returns the view of a resource of the index, with all its versions. The view is created the first time, the
+     * following calls return the same object.
+     *
+     * @param resource - a resource of the index
+     * @return the classpath resource object
+     */
+    public ClasspathResource getResource(int resource) {
+        ClasspathResource view = views.get(resource);
+        if (view == null) {
+            views.compareAndSet(resource, null, createResource(resource));
+            view = views.get(resource);
+        }
+        return view;
+    }
+
+    private ClasspathResource createResource(int resource) {
+        int nameId = resourceNameIds[resource];
+        ClasspathResource view = null;
+        for (int row = resourceOffsets[resource]; row < resourceOffsets[resource + 1]; row++) {
+            long crc = isBitSet(row) ? crcs[row] & 0xFFFFFFFFL : ClasspathResourceVersion.UNKNOWN_CRC;
+            ClasspathResourceVersion version = new ClasspathResourceVersion(classpathEntries.get(entryIds[row]), nameId, sizes[row], crc);
+            if (view == null) {
+                view = new ClasspathResource(nameId, version);
+            } else {
+                view.getResourceFileVersions().add(version);
+            }
+        }
+        return view;
+    }
+
+    /**
+     * @param resources - resources of the index
+     * @return the classpath resource objects of the given resources
+     */
+    public List<ClasspathResource> getResources(int[] resources) {
+        List<ClasspathResource> views = new ArrayList<>(resources.length);
+        for (int resource : resources) {
+            views.add(getResource(resource));
+        }
+        return views;
+    }
+
+    /**
+     * @return the classpath resource objects of all the resources, in classpath order
+     */
+    public List<ClasspathResource> getResources() {
+        List<ClasspathResource> views = new ArrayList<>(resourceNameIds.length);
+        for (int resource = 0; resource < resourceNameIds.length; resource++) {
+            views.add(getResource(resource));
+        }
+        return views;
+    }
+
+    private boolean hasDuplicates(int resource, DuplicatesMode mode) {
+        int from = resourceOffsets[resource];
+        int to = resourceOffsets[resource + 1];
+        if (to - from <= 1) {
+            return false;
+        }
+        if (mode == DuplicatesMode.ALL) {
+            return true;
+        }
+        for (int row = from + 1; row < to; row++) {
+            if (sizes[row] != sizes[from]) {
+                return true;
+            }
+        }
+        if (mode == DuplicatesMode.DIFFERENT_SIZE) {
+            return false;
+        }
+        // all the sizes are the same, compare the CRCs - a version with an unknown CRC counts as different
+        for (int row = from; row < to; row++) {
+            if (!isCrcKnown(row, resourceNameIds[resource]) || crcs[row] != crcs[from]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Class folder files have no CRC until it's needed, it's computed and stored on the index the first time. Threads
+     * that need the same CRC at the same time may both compute it, they store the same value.
+     */
+    private boolean isCrcKnown(int row, int nameId) {
+        if (isBitSet(row)) {
+            return true;
+        }
+        ClasspathEntry entry = classpathEntries.get(entryIds[row]);
+        long crc = entry.computeResourceCrc(names.getName(nameId));
+        if (crc == ClasspathResourceVersion.UNKNOWN_CRC) {
+            return false;
+        }
+        crcs[row] = (int) crc;
+        int bits;
+        do {
+            bits = crcKnown.get(row >>> 5);
+        } while (!crcKnown.compareAndSet(row >>> 5, bits, bits | 1 << (row & 31)));
+        return true;
+    }
+
+    private boolean isBitSet(int row) {
+        return (crcKnown.get(row >>> 5) & 1 << (row & 31)) != 0;
+    }
+
+    private static int[] newSlots(int count) {
+        int capacity = Integer.highestOneBit(Math.max(1, count) * 2 - 1) << 1;
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        return slots;
+    }
+
+    /**
+     * @return the slot of the resource with the name id, or the empty slot where it should be added
+     */
+    private static int findSlot(int[] slots, int[] resourceNameIds, int nameId) {
+        int mask = slots.length - 1;
+        int hash = nameId * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slots[slot] != -1 && resourceNameIds[slots[slot]] != nameId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long arraySize(int length, int elementSize) {
+        // array header, and the elements rounded up to 8 bytes
+        return 16 + ((long) length * elementSize + 7) / 8 * 8;
+    }
+
+    /**
+     * The columns while the entries are scanned, in scan order.
+     */
+    private static class Columns {
+
+        private int[] entryIds = new int[1024];
+        private int[] nameIds = new int[1024];
+        private long[] sizes = new long[1024];
+        private long[] crcs = new long[1024];
+        private int size;
+
+        void add(int entryId, int nameId, long fileSize, long crc) {
+            if (size == entryIds.length) {
+                entryIds = Arrays.copyOf(entryIds, size * 2);
+                nameIds = Arrays.copyOf(nameIds, size * 2);
+                sizes = Arrays.copyOf(sizes, size * 2);
+                crcs = Arrays.copyOf(crcs, size * 2);
+            }
+            entryIds[size] = entryId;
+            nameIds[size] = nameId;
+            sizes[size] = fileSize;
+            crcs[size] = crc;
+            size++;
+        }
+    }
+}
@@ -3,10 +3,22 @@ package org.jhades.model;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.jhades.service.ClasspathScanMetricsListener;
 import org.jhades.service.ClasspathScannerListener;
+import org.jhades.utils.ScanStatistics;
 import org.jhades.utils.StdOutLogger;
 
 /**
@@ -17,51 +29,488 @@ import org.jhades.utils.StdOutLogger;
  */
 public final class ClasspathEntries {
 
+    /**
+     * System property that sets the number of threads used to scan classpath entries, 1 means sequential scanning.
+     */
+    public static final String SCAN_PARALLELISM_PROPERTY = "jhades.scan.parallelism";
+    private static final Comparator<ClasspathResourceVersion> BY_RESOURCE_NAME = new Comparator<ClasspathResourceVersion>() {
+        @Override
+        public int compare(ClasspathResourceVersion version1, ClasspathResourceVersion version2) {
+            return ResourceNameTable.getShared().compare(version1.getResourceNameId(), version2.getResourceNameId());
+        }
+    };
+
     private ClasspathEntries() {
         throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
     }
 
+    /**
+     *
+     * @return the number of threads used to scan classpath entries by default: the value of the system property
+     * jhades.scan.parallelism, or the number of available processors if the property is not set.
+     */
+    public static int getDefaultScanParallelism() {
+        String parallelism = System.getProperty(SCAN_PARALLELISM_PROPERTY);
+        if (parallelism != null) {
+            try {
+                return Math.max(1, Integer.parseInt(parallelism.trim()));
+            } catch (NumberFormatException exc) {
+                StdOutLogger.getLogger().warn("Invalid value for " + SCAN_PARALLELISM_PROPERTY + ": " + parallelism);
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      *
      * Scans for classpath resources in a list of classpath entries (jars or class folders).
      *
      * class folders are walked through using some of the java 7 NIO functionality.
      *
+     * The entries are scanned in parallel using the default scan parallelism.
+     *
      * @param classpathEntries - the list of classpath entries to be scanned
      * @return - the list of classpath resources found by scanning the provided classpath entries.
      */
     public static List<ClasspathResource> findClasspathResourcesInEntries(List<ClasspathEntry> classpathEntries,
             StdOutLogger logger, ClasspathScannerListener listener) {
+        return findClasspathResourcesInEntries(classpathEntries, logger, listener, getDefaultScanParallelism());
+    }
 
-        // find all classpath resource versions
-        List<ClasspathResourceVersion> allResourceVersions = new ArrayList<>();
+    /**
+     *
+     * Scans for classpath resources in a list of classpath entries, using a fork-join pool with the given parallelism.
+     *
+     * @param parallelism - the number of entries scanned at the same time, 1 to scan sequentially on the calling thread
+     * @return - the list of classpath resources found by scanning the provided classpath entries.
+     */
+    public static List<ClasspathResource> findClasspathResourcesInEntries(List<ClasspathEntry> classpathEntries,
+            StdOutLogger logger, ClasspathScannerListener listener, int parallelism) {
+        ForkJoinPool pool = createScanPool(classpathEntries, parallelism);
+        try {
+            return findClasspathResourcesInEntries(classpathEntries, logger, listener, pool);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
 
-        Map<String, ClasspathResource> resourcesPerNameMap = new HashMap<>();
+    /**
+     *
+     * Scans for classpath resources in a list of classpath entries, using the given executor to scan the entries at
+     * the same time.
+     *
+     * The entries are merged in classpath order while the remaining ones are still being scanned, so the resource
+     * versions of each resource are always listed in classpath order, as well as the resources themselves (by first
+     * occurrence).
+     *
+     * The listener is called exactly once per entry for each event, from the scanning threads but never concurrently.
+     *
+     * @param executor - the executor that scans the entries, or null to scan sequentially on the calling thread
+     * @return - the list of classpath resources found by scanning the provided classpath entries.
+     */
+    public static List<ClasspathResource> findClasspathResourcesInEntries(List<ClasspathEntry> classpathEntries,
+            StdOutLogger logger, ClasspathScannerListener listener, ExecutorService executor) {
+
+        final Map<Integer, ClasspathResource> resourcesPerNameMap = new LinkedHashMap<>();
 
         try {
+            scanEntries(classpathEntries, listener, executor, false, true, new ScannedEntryHandler() {
+                @Override
+                public void onEntryScanned(List<ClasspathResourceVersion> resourceVersions) {
+                    addResourceVersions(resourcesPerNameMap, resourceVersions);
+                }
+            });
+        } catch (URISyntaxException | IOException ex) {
+            logger.error(ex.getMessage(), ex);
+        }
 
-            for (ClasspathEntry entry : classpathEntries) {
-                if (listener != null) {
-                    listener.onEntryScanStart(entry);
+        return new ArrayList<>(resourcesPerNameMap.values());
+    }
+
+    /**
+     *
+     * Scans a list of classpath entries in parallel, so that their resource versions are loaded.
+     *
+     * @param classpathEntries - the list of classpath entries to be scanned
+     */
+    public static void scanClasspathEntries(List<ClasspathEntry> classpathEntries, StdOutLogger logger,
+            ClasspathScannerListener listener) {
+        ForkJoinPool pool = createScanPool(classpathEntries, getDefaultScanParallelism());
+        try {
+            scanEntries(classpathEntries, listener, pool, false, true, new ScannedEntryHandler() {
+                @Override
+                public void onEntryScanned(List<ClasspathResourceVersion> resourceVersions) {
                 }
-                allResourceVersions.addAll(entry.getResourceVersions());
-                if (listener != null) {
-                    listener.onEntryScanEnd(entry);
+            });
+        } catch (URISyntaxException | IOException ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     *
+     * Scans a list of classpath entries and returns only the resources that have more than one version.
+     *
+     * Instead of grouping all the resource versions by name, the resource versions of each entry are sorted by name
+     * (in parallel, while the entries are scanned) and then merged across all entries: only the resources that really
+     * have multiple versions are created, which uses much less memory than building the full list of resources.
+     *
+     * @param classpathEntries - the list of classpath entries to be scanned
+     * @return - the resources with multiple versions, ordered by name, each with its versions in classpath order.
+     */
+    public static List<ClasspathResource> findResourcesWithDuplicatesInEntries(List<ClasspathEntry> classpathEntries,
+            StdOutLogger logger, ClasspathScannerListener listener) {
+
+        final List<ClasspathResourceVersion[]> sortedVersionsPerEntry = new ArrayList<>();
+
+        ForkJoinPool pool = createScanPool(classpathEntries, getDefaultScanParallelism());
+        try {
+            scanEntries(classpathEntries, listener, pool, true, true, new ScannedEntryHandler() {
+                @Override
+                public void onEntryScanned(List<ClasspathResourceVersion> resourceVersions) {
+                    sortedVersionsPerEntry.add(resourceVersions.toArray(new ClasspathResourceVersion[resourceVersions.size()]));
                 }
+            });
+        } catch (URISyntaxException | IOException ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
             }
+        }
+
+        return mergeDuplicates(sortedVersionsPerEntry);
+    }
+
+    /**
+     *
+     * Iterates over the resource versions of a list of classpath entries, in classpath order.
+     *
+     * The entries are only scanned while iterating, one at a time, and their versions are not kept on the entries
+     * unless they were scanned before: only the versions of the current entry are in memory, whatever the size of the
+     * classpath. Each call to iterator() scans the entries again.
+     *
+     * Entries that can't be scanned are logged and skipped.
+     *
+     * A metrics listener gets the scan summary once the iteration ends, when hasNext() first returns false - also for an
+     * empty list of entries. An iteration that is abandoned before its end sends no summary.
+     *
+     * @param classpathEntries - the list of classpath entries to be scanned
+     * @return - a lazy iterable over the resource versions of all entries
+     */
+    public static Iterable<ClasspathResourceVersion> iterateResourceVersions(final List<ClasspathEntry> classpathEntries,
+            final StdOutLogger logger, final ClasspathScannerListener listener) {
+        return new Iterable<ClasspathResourceVersion>() {
+            @Override
+            public Iterator<ClasspathResourceVersion> iterator() {
+                return new ResourceVersionIterator(classpathEntries, logger, listener);
+            }
+        };
+    }
+
+    /**
+     *
+     * Iterates over the resources of a list of classpath entries, in resource name order.
+     *
+     * The scan is deferred but not streamed: the first resource in name order can be on any entry, so iterator() scans
+     * all the entries in parallel and sorts the versions of each one before returning. The name-sorted versions are
+     * then merged while iterating: no list of resources is ever built, the versions of an entry are released once all
+     * of them were merged, and they are not kept on the entries unless they were scanned before. Each call to
+     * iterator() scans the entries again.
+     *
+     * @param classpathEntries - the list of classpath entries to be scanned
+     * @return - a lazy iterable over the resources, each with its versions in classpath order
+     */
+    public static Iterable<ClasspathResource> iterateClasspathResources(final List<ClasspathEntry> classpathEntries,
+            final StdOutLogger logger, final ClasspathScannerListener listener) {
+        return new Iterable<ClasspathResource>() {
+            @Override
+            public Iterator<ClasspathResource> iterator() {
+                final List<ClasspathResourceVersion[]> sortedVersionsPerEntry = new ArrayList<>();
 
-            for (ClasspathResourceVersion resourceVersion : allResourceVersions) {
-                String resourceName = resourceVersion.getResourceName();
-                if (!resourcesPerNameMap.containsKey(resourceName)) {
-                    resourcesPerNameMap.put(resourceName, new ClasspathResource(resourceName, resourceVersion));
-                } else {
-                    resourcesPerNameMap.get(resourceName).getResourceFileVersions().add(resourceVersion);
+                ForkJoinPool pool = createScanPool(classpathEntries, getDefaultScanParallelism());
+                try {
+                    scanEntries(classpathEntries, listener, pool, true, false, new ScannedEntryHandler() {
+                        @Override
+                        public void onEntryScanned(List<ClasspathResourceVersion> resourceVersions) {
+                            sortedVersionsPerEntry.add(resourceVersions.toArray(new ClasspathResourceVersion[resourceVersions.size()]));
+                        }
+                    });
+                } catch (URISyntaxException | IOException ex) {
+                    logger.error(ex.getMessage(), ex);
+                } finally {
+                    if (pool != null) {
+                        pool.shutdown();
+                    }
                 }
+
+                return new SortedResourceMerge(sortedVersionsPerEntry, false);
             }
+        };
+    }
+
+    /**
+     * Scans the entries in parallel, and hands the versions of each entry to the handler on the calling thread, in
+     * classpath order - one call per entry, even if it's empty.
+     */
+    static void scanEntriesInOrder(List<ClasspathEntry> classpathEntries, StdOutLogger logger,
+            ClasspathScannerListener listener, boolean keepVersions, ScannedEntryHandler handler) {
+        ForkJoinPool pool = createScanPool(classpathEntries, getDefaultScanParallelism());
+        try {
+            scanEntries(classpathEntries, listener, pool, false, keepVersions, handler);
         } catch (URISyntaxException | IOException ex) {
             logger.error(ex.getMessage(), ex);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
         }
+    }
 
-        return new ArrayList<>(resourcesPerNameMap.values());
+    private static List<ClasspathResource> mergeDuplicates(List<ClasspathResourceVersion[]> sortedVersionsPerEntry) {
+        List<ClasspathResource> resourcesWithDuplicates = new ArrayList<>();
+        Iterator<ClasspathResource> merge = new SortedResourceMerge(sortedVersionsPerEntry, true);
+        while (merge.hasNext()) {
+            resourcesWithDuplicates.add(merge.next());
+        }
+        return resourcesWithDuplicates;
+    }
+
+    private static ForkJoinPool createScanPool(List<ClasspathEntry> classpathEntries, int parallelism) {
+        if (parallelism <= 1 || classpathEntries.size() <= 1) {
+            return null;
+        }
+        return new ForkJoinPool(Math.min(parallelism, classpathEntries.size()));
+    }
+
+    /**
+     * Scans the entries, on the executor if there is one, and hands their resource versions to the handler in
+     * classpath order on the calling thread.
+     */
+    private static void scanEntries(List<ClasspathEntry> classpathEntries, ClasspathScannerListener listener,
+            ExecutorService executor, boolean sortByName, boolean keepVersions, ScannedEntryHandler handler)
+            throws URISyntaxException, IOException {
+        ClasspathScanSummary summary = listener instanceof ClasspathScanMetricsListener ? new ClasspathScanSummary() : null;
+        long startTime = System.nanoTime();
+        // all the scanned versions are held until the handler is done with them
+        long indexSize = 0;
+
+        if (executor == null) {
+            for (ClasspathEntry entry : classpathEntries) {
+                List<ClasspathResourceVersion> resourceVersions = scanEntry(entry, listener, summary, sortByName, keepVersions);
+                handler.onEntryScanned(resourceVersions);
+                indexSize += resourceVersions.size();
+            }
+        } else {
+            List<Future<List<ClasspathResourceVersion>>> scans = new ArrayList<>();
+            for (ClasspathEntry entry : classpathEntries) {
+                scans.add(executor.submit(new EntryScan(entry, listener, summary, sortByName, keepVersions)));
+            }
+            try {
+                for (Future<List<ClasspathResourceVersion>> scan : scans) {
+                    List<ClasspathResourceVersion> resourceVersions = waitForScan(scan);
+                    handler.onEntryScanned(resourceVersions);
+                    indexSize += resourceVersions.size();
+                }
+            } finally {
+                for (Future<List<ClasspathResourceVersion>> scan : scans) {
+                    scan.cancel(false);
+                }
+            }
+        }
+
+        if (summary != null) {
+            summary.updatePeakIndexSize(indexSize);
+            notifyScanSummary(listener, summary, startTime);
+        }
+    }
+
+    private static void addResourceVersions(Map<Integer, ClasspathResource> resourcesPerNameMap,
+            List<ClasspathResourceVersion> resourceVersions) {
+        for (ClasspathResourceVersion resourceVersion : resourceVersions) {
+            int nameId = resourceVersion.getResourceNameId();
+            ClasspathResource resource = resourcesPerNameMap.get(nameId);
+            if (resource == null) {
+                resourcesPerNameMap.put(nameId, new ClasspathResource(nameId, resourceVersion));
+            } else {
+                resource.getResourceFileVersions().add(resourceVersion);
+            }
+        }
+    }
+
+    /**
+     * Entries scanned without keeping their versions are read again on each scan, unless they were scanned before.
+     */
+    private static List<ClasspathResourceVersion> scanEntry(ClasspathEntry entry, ClasspathScannerListener listener,
+            ClasspathScanSummary summary, boolean sortByName, boolean keepVersions) throws URISyntaxException, IOException {
+        if (listener != null) {
+            synchronized (listener) {
+                listener.onEntryScanStart(entry);
+            }
+        }
+        ScanStatistics statistics = summary != null ? ScanStatistics.start() : null;
+        long startTime = System.nanoTime();
+        List<ClasspathResourceVersion> resourceVersions;
+        try {
+            resourceVersions = keepVersions ? entry.getResourceVersions() : entry.readResourceVersions();
+        } catch (URISyntaxException | IOException | RuntimeException exc) {
+            if (statistics != null) {
+                ScanStatistics.setFailure(exc.toString());
+                statistics.stop();
+                notifyEntryScanMetrics(listener, summary, new ClasspathEntryScanMetrics(entry, System.nanoTime() - startTime,
+                        statistics.getBytesRead(), 0, statistics.getDirectoryCount(), statistics.isCacheHit(),
+                        statistics.getFailureReason()));
+            }
+            throw exc;
+        }
+        long wallTime = System.nanoTime() - startTime;
+        if (statistics != null) {
+            statistics.stop();
+        }
+        if (listener != null) {
+            synchronized (listener) {
+                listener.onEntryScanEnd(entry);
+            }
+        }
+        if (statistics != null) {
+            notifyEntryScanMetrics(listener, summary, new ClasspathEntryScanMetrics(entry, wallTime, statistics.getBytesRead(),
+                    resourceVersions.size(), statistics.getDirectoryCount(), statistics.isCacheHit(), statistics.getFailureReason()));
+        }
+        if (sortByName) {
+            ClasspathResourceVersion[] sorted = resourceVersions.toArray(new ClasspathResourceVersion[resourceVersions.size()]);
+            Arrays.sort(sorted, BY_RESOURCE_NAME);
+            resourceVersions = Arrays.asList(sorted);
+        }
+        return resourceVersions;
+    }
+
+    private static void notifyEntryScanMetrics(ClasspathScannerListener listener, ClasspathScanSummary summary,
+            ClasspathEntryScanMetrics metrics) {
+        synchronized (listener) {
+            summary.addEntry(metrics);
+            ((ClasspathScanMetricsListener) listener).onEntryScanMetrics(metrics);
+        }
+    }
+
+    private static void notifyScanSummary(ClasspathScannerListener listener, ClasspathScanSummary summary, long startTime) {
+        synchronized (listener) {
+            summary.setWallTimeNanos(System.nanoTime() - startTime);
+            ((ClasspathScanMetricsListener) listener).onScanSummary(summary);
+        }
+    }
+
+    private static List<ClasspathResourceVersion> waitForScan(Future<List<ClasspathResourceVersion>> scan)
+            throws URISyntaxException, IOException {
+        try {
+            return scan.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning the classpath.", exc);
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Scans the next entry only when the versions of the current one are used up.
+     */
+    private static class ResourceVersionIterator implements Iterator<ClasspathResourceVersion> {
+
+        private final Iterator<ClasspathEntry> entries;
+        private final StdOutLogger logger;
+        private final ClasspathScannerListener listener;
+        private final ClasspathScanSummary summary;
+        private final long startTime = System.nanoTime();
+        private boolean summarized;
+        private Iterator<ClasspathResourceVersion> versions = Collections.<ClasspathResourceVersion>emptyList().iterator();
+
+        ResourceVersionIterator(List<ClasspathEntry> classpathEntries, StdOutLogger logger, ClasspathScannerListener listener) {
+            this.entries = classpathEntries.iterator();
+            this.logger = logger;
+            this.listener = listener;
+            this.summary = listener instanceof ClasspathScanMetricsListener ? new ClasspathScanSummary() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!versions.hasNext() && entries.hasNext()) {
+                ClasspathEntry entry = entries.next();
+                try {
+                    List<ClasspathResourceVersion> entryVersions = scanEntry(entry, listener, summary, false, false);
+                    // only the versions of the current entry are held
+                    if (summary != null) {
+                        summary.updatePeakIndexSize(entryVersions.size());
+                    }
+                    versions = entryVersions.iterator();
+                } catch (URISyntaxException | IOException ex) {
+                    logger.error("Could not scan " + entry.getUrl() + " - reason: " + ex.getMessage(), ex);
+                }
+            }
+            if (versions.hasNext()) {
+                return true;
+            }
+            if (summary != null && !summarized) {
+                summarized = true;
+                notifyScanSummary(listener, summary, startTime);
+            }
+            return false;
+        }
+
+        @Override
+        public ClasspathResourceVersion next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return versions.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Resource versions cannot be removed.");
+        }
+    }
+
+    interface ScannedEntryHandler {
+
+        void onEntryScanned(List<ClasspathResourceVersion> resourceVersions);
+    }
+
+    private static class EntryScan implements Callable<List<ClasspathResourceVersion>> {
+
+        private final ClasspathEntry entry;
+        private final ClasspathScannerListener listener;
+        private final ClasspathScanSummary summary;
+        private final boolean sortByName;
+        private final boolean keepVersions;
+
+        public EntryScan(ClasspathEntry entry, ClasspathScannerListener listener, ClasspathScanSummary summary,
+                boolean sortByName, boolean keepVersions) {
+            this.entry = entry;
+            this.listener = listener;
+            this.summary = summary;
+            this.sortByName = sortByName;
+            this.keepVersions = keepVersions;
+        }
+
+        @Override
+        public List<ClasspathResourceVersion> call() throws Exception {
+            return scanEntry(entry, listener, summary, sortByName, keepVersions);
+        }
     }
 }
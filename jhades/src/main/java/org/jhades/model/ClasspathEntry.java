@@ -1,26 +1,30 @@
 package org.jhades.model;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitResult;
 import static java.nio.file.FileVisitResult.CONTINUE;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
-import java.util.jar.Attributes;
-import java.util.jar.JarInputStream;
-import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.JarIndexCache;
+import org.jhades.utils.ScanStatistics;
 import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipCentralDirectoryReader;
 
 /**
  *
@@ -30,10 +34,14 @@ import org.jhades.utils.StdOutLogger;
 public class ClasspathEntry {
 
     private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final String NESTED_SEPARATOR = "!/";
     private final ClazzLoader classLoader;
     private final String url;
     private List<ClasspathResourceVersion> resourceVersions = new ArrayList<>();
     private boolean lazyLoadDone = false;
+    private volatile String canonicalLocation;
+    // holds the shared name table for as long as the resource versions of this entry refer to it
+    private final ResourceNameTable names = ResourceNameTable.getShared();
 
     public ClasspathEntry(ClazzLoader classLoader, String url) {
         this.classLoader = classLoader;
@@ -48,6 +56,29 @@ public class ClasspathEntry {
         return url;
     }
 
+    /**
+     * @return the name table of the resource names of this entry
+     */
+    ResourceNameTable getNames() {
+        return names;
+    }
+
+    /**
+     *
+     * Entries are equal if they have the same URL - the same file reached through different URLs has the same
+     * canonical location instead.
+     *
+     * @return the canonical location of the entry, see FileUtils.getCanonicalLocation(String)
+     */
+    public String getCanonicalLocation() {
+        String location = canonicalLocation;
+        if (location == null) {
+            location = url != null ? FileUtils.getCanonicalLocation(url) : null;
+            canonicalLocation = location;
+        }
+        return location;
+    }
+
     @Override
     public int hashCode() {
         int hash = 3;
@@ -76,11 +107,28 @@ public class ClasspathEntry {
     }
 
     public boolean isJar() {
-        return url != null && url.endsWith(".jar");
+        if (url == null) {
+            return false;
+        }
+        // nested jar URLs can end with the separator of the jar root, such as jar:file:/app.jar!/BOOT-INF/lib/x.jar!/
+        String path = url.endsWith(NESTED_SEPARATOR) ? url.substring(0, url.length() - NESTED_SEPARATOR.length()) : url;
+        return path.endsWith(".jar");
     }
 
     public boolean isClassFolder() {
-        return url != null && url.endsWith("/");
+        return url != null && url.endsWith("/") && !isJar();
+    }
+
+    /**
+     *
+     * Nested archive entries are inside another archive, such as the jars of an executable fat jar - their URL follows
+     * the jar URL syntax, for example jar:file:/app.jar!/BOOT-INF/lib/commons-lang.jar!/ or
+     * jar:file:/app.jar!/BOOT-INF/classes!/
+     *
+     * @return true if the entry is inside an archive, and is scanned in place
+     */
+    public boolean isNestedArchive() {
+        return url != null && url.startsWith("jar:") && url.contains(NESTED_SEPARATOR);
     }
 
     public String getClassLoaderName() {
@@ -90,83 +138,242 @@ public class ClasspathEntry {
     /**
      * The contents of a jar are only loaded if accessed the first time.
      *
+     * Entries can be scanned from several threads, the first caller does the scan and the others wait for it.
+     *
      */
-    public List<ClasspathResourceVersion> getResourceVersions() throws URISyntaxException, IOException {
+    public synchronized List<ClasspathResourceVersion> getResourceVersions() throws URISyntaxException, IOException {
         if (!lazyLoadDone) {
-            if (isClassFolder()) {
-                logger.debug("\nScanning class folder: " + getUrl());
+            scan(resourceVersions);
+            lazyLoadDone = true;
+        } else {
+            ScanStatistics.setCacheHit();
+        }
 
-                URI uri = new URI(getUrl());
-                Path start = Paths.get(uri);
+        return resourceVersions;
+    }
 
-                scanClasspathEntry(start);
+    /**
+     *
+     * Keeps the resource versions of this entry when it was scanned together with the other entries of the same
+     * archive, unless it was already scanned.
+     *
+     * @param versions - the resource versions of this entry
+     */
+    synchronized void setResourceVersions(List<ClasspathResourceVersion> versions) {
+        if (!lazyLoadDone) {
+            resourceVersions = versions;
+            lazyLoadDone = true;
+        }
+    }
 
-            } else if (isJar()) {
-                logger.debug("\nScanning jar: " + getUrl());
+    /**
+     *
+     * Reads the resource versions of this entry without keeping them: if the entry was not scanned yet, it's scanned
+     * again on each call, and the result can be garbage collected once used.
+     *
+     * @return the resource versions of this entry
+     */
+    public List<ClasspathResourceVersion> readResourceVersions() throws URISyntaxException, IOException {
+        synchronized (this) {
+            if (lazyLoadDone) {
+                ScanStatistics.setCacheHit();
+                return resourceVersions;
+            }
+        }
+        List<ClasspathResourceVersion> versions = new ArrayList<>();
+        scan(versions);
+        return versions;
+    }
 
-                URI uri = new URI("jar:" + getUrl());
+    /**
+     * Scans the entry from the file system - entries that are not on the file system, such as the jars inside a WAR,
+     * override this to read their resource versions from elsewhere.
+     */
+    protected void scan(List<ClasspathResourceVersion> versions) throws URISyntaxException, IOException {
+        if (isNestedArchive()) {
+            logger.debug("\nScanning nested archive: " + getUrl());
+
+            try {
+                scanNestedArchive(versions);
+            } catch (Exception exc) {
+                logger.debug("Could not scan nested archive: " + getUrl() + " - reason:" + exc.getMessage());
+                ScanStatistics.setFailure(exc.toString());
+            }
+        } else if (isClassFolder()) {
+            logger.debug("\nScanning class folder: " + getUrl());
 
-                try (FileSystem jarFS = FileSystems.newFileSystem(uri, new HashMap<String, String>())) {
-                    Path zipInJarPath = jarFS.getPath("/");
+            URI uri = new URI(getUrl());
+            Path start = Paths.get(uri);
 
-                    scanClasspathEntry(zipInJarPath);
+            scanClasspathEntry(start, versions);
 
-                } catch (Exception exc) {
-                    logger.debug("Could not scan jar: " + getUrl() + " - reason:" + exc.getMessage());
-                }
+        } else if (isJar()) {
+            logger.debug("\nScanning jar: " + getUrl());
+
+            try {
+                scanJar(Paths.get(new URI(getUrl())), versions);
+            } catch (Exception exc) {
+                logger.debug("Could not scan jar: " + getUrl() + " - reason:" + exc.getMessage());
+                ScanStatistics.setFailure(exc.toString());
             }
-            lazyLoadDone = true;
         }
-
-        return resourceVersions;
     }
 
     /**
      *
      * @return the list of classpath entries (jars, folders) linked to this jar via it's manifest Class-Path property
      *
+     * @see ManifestClasspathResolver
      */
     public List<ClasspathEntry> findManifestClasspathEntries() {
         List<ClasspathEntry> manifestClasspathEntries = new ArrayList<>();
-        // scan for Class-Path entries on MANIFEST.MF
-        if (isJar()) {
-            JarInputStream jarStream;
-            try {
-                jarStream = new JarInputStream(new URL(getUrl()).openStream());
-                Manifest manifest = jarStream.getManifest();
-                if (manifest != null) {
-                    Attributes attrs = manifest.getMainAttributes();
-                    if (attrs != null) {
-                        String manifestClasspath = attrs.getValue("Class-Path");
-                        if (manifestClasspath != null) {
-                            String[] jarPaths = manifestClasspath.split(" ");
-                            if (jarPaths != null) {
-                                for (String jarPath : jarPaths) {
-                                    logger.debug("Manifest jar path: " + jarPath);
-                                    manifestClasspathEntries.add(new ClasspathEntry(classLoader, jarPath));
-                                }
-                            }
-                        }
+        for (String manifestUrl : ManifestClasspathResolver.readManifestClasspath(getUrl())) {
+            manifestClasspathEntries.add(new ClasspathEntry(classLoader, manifestUrl));
+        }
+        return manifestClasspathEntries;
+    }
+
+    /**
+     * Jars are scanned by reading only their central directory, the jar contents are not decompressed.
+     *
+     * If the jar index cache is enabled, the index of the jar is taken from the cache if the jar did not change.
+     */
+    private void scanJar(Path jarFile, final List<ClasspathResourceVersion> versions) throws IOException {
+        ZipCentralDirectoryReader.EntryVisitor visitor = new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry zipEntry) {
+                if (zipEntry.isDirectory()) {
+                    ScanStatistics.addDirectory();
+                } else {
+                    String resourceName = "/" + zipEntry.getName();
+                    if (logger.isDebugEnabled()) {
+                        logger.debug(getUrl() + " -" + resourceName);
                     }
+                    versions.add(new ClasspathResourceVersion(ClasspathEntry.this, resourceName, zipEntry.getSize(), zipEntry.getCrc()));
                 }
-            } catch (IOException ex) {
-                logger.warn("Problem scanning Manifest classpath: " + ex.getMessage());
             }
+        };
+
+        JarIndexCache cache = JarIndexCache.getDefault();
+        if (cache != null) {
+            cache.read(jarFile, visitor);
+        } else {
+            ZipCentralDirectoryReader.read(jarFile, visitor);
+        }
+    }
+
+    /**
+     *
+     * Reads the nested jars of the URL one inside the other, without extracting them: stored jars are read in place
+     * from the enclosing archive, and deflated ones are inflated in memory. The last part of the URL is a folder, such
+     * as BOOT-INF/classes, unless it's a jar. The nested jars of the outer archive are looked up on its cached
+     * directory, so that the entries of a fat jar don't each read its whole central directory.
+     */
+    private void scanNestedArchive(List<ClasspathResourceVersion> versions) throws URISyntaxException, IOException {
+        String[] parts = url.substring("jar:".length()).split(NESTED_SEPARATOR, -1);
+        int last = parts.length - 1;
+        while (last > 0 && parts[last].isEmpty()) {
+            last--;
+        }
+
+        Path archive = Paths.get(new URI(parts[0]));
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(channel, 0, channel.size());
+            String folder = null;
+            for (int i = 1; i <= last; i++) {
+                if (i < last || parts[i].endsWith(".jar")) {
+                    // the directory of the outer archive is shared by all its nested entries, it's read only once
+                    ZipCentralDirectoryReader.Entry nestedJar = i == 1 ? NestedArchiveDirectory.findEntry(archive, reader, parts[i])
+                            : reader.findEntry(parts[i]);
+                    if (nestedJar == null) {
+                        throw new FileNotFoundException(parts[i] + " not found");
+                    }
+                    reader = reader.openNested(nestedJar);
+                } else {
+                    folder = parts[i].endsWith("/") ? parts[i] : parts[i] + "/";
+                }
+            }
+            readArchiveEntries(reader, folder, versions);
         }
-        return manifestClasspathEntries;
     }
 
-    private List<ClasspathResourceVersion> scanClasspathEntry(Path start) throws IOException {
+    /**
+     *
+     * Adds the files of an archive as resource versions of this entry.
+     *
+     * @param folder - the folder of the archive that is this entry, or null if the whole archive is
+     */
+    void readArchiveEntries(ZipCentralDirectoryReader reader, final String folder, final List<ClasspathResourceVersion> versions)
+            throws IOException {
+        reader.read(new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry zipEntry) {
+                String name = zipEntry.getName();
+                if (folder != null && !name.startsWith(folder)) {
+                    return;
+                }
+                if (zipEntry.isDirectory()) {
+                    ScanStatistics.addDirectory();
+                    return;
+                }
+                String resourceName = "/" + (folder != null ? name.substring(folder.length()) : name);
+                if (logger.isDebugEnabled()) {
+                    logger.debug(getUrl() + " -" + resourceName);
+                }
+                versions.add(new ClasspathResourceVersion(ClasspathEntry.this, resourceName, zipEntry.getSize(), zipEntry.getCrc()));
+            }
+        });
+    }
+
+    /**
+     *
+     * Class folders have no central directory with the CRC of each file, so it's computed from the file contents.
+     *
+     * @param resourceName - the resource name, relative to the class folder
+     * @return the CRC32 of the resource file, or UNKNOWN_CRC if this is not a class folder or the file can't be read
+     */
+    long computeResourceCrc(String resourceName) {
+        if (!isClassFolder() || isNestedArchive()) {
+            return ClasspathResourceVersion.UNKNOWN_CRC;
+        }
+        try {
+            Path file = Paths.get(new URI(getUrl())).resolve(resourceName.substring(1));
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[8192];
+            try (InputStream in = Files.newInputStream(file)) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                }
+            }
+            return crc.getValue();
+        } catch (URISyntaxException | IOException | InvalidPathException exc) {
+            logger.debug("Could not compute CRC of " + getUrl() + resourceName + " - reason:" + exc.getMessage());
+            return ClasspathResourceVersion.UNKNOWN_CRC;
+        }
+    }
+
+    /**
+     * The resources of a class folder are named relative to the folder, in the same way as the resources of a jar.
+     */
+    private void scanClasspathEntry(final Path start, final List<ClasspathResourceVersion> versions) throws IOException {
         Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                ScanStatistics.addDirectory();
+                return CONTINUE;
+            }
+
             @Override
             public FileVisitResult visitFile(Path classpathResourceFile, BasicFileAttributes attrs) throws IOException {
-                String resourceName = classpathResourceFile.toString();
-                logger.debug(getUrl() + " -" + resourceName);
+                String resourceName = "/" + start.relativize(classpathResourceFile).toString().replace(File.separatorChar, '/');
+                if (logger.isDebugEnabled()) {
+                    logger.debug(getUrl() + " -" + resourceName);
+                }
                 ClasspathResourceVersion classFileVersion = new ClasspathResourceVersion(ClasspathEntry.this, resourceName, attrs.size());
-                resourceVersions.add(classFileVersion);
+                versions.add(classFileVersion);
                 return CONTINUE;
             }
         });
-        return resourceVersions;
     }
 }
@@ -0,0 +1,90 @@
+package org.jhades.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * The metrics of the scan of one classpath entry, for finding the entries that make a scan slow.
+ *
+ * @see org.jhades.service.ClasspathScanMetricsListener
+ *
+ */
+public final class ClasspathEntryScanMetrics {
+
+    private final ClasspathEntry classpathEntry;
+    private final long wallTimeNanos;
+    private final long bytesRead;
+    private final int resourceCount;
+    private final int directoryCount;
+    private final boolean cacheHit;
+    private final String failureReason;
+
+    ClasspathEntryScanMetrics(ClasspathEntry classpathEntry, long wallTimeNanos, long bytesRead, int resourceCount,
+            int directoryCount, boolean cacheHit, String failureReason) {
+        this.classpathEntry = classpathEntry;
+        this.wallTimeNanos = wallTimeNanos;
+        this.bytesRead = bytesRead;
+        this.resourceCount = resourceCount;
+        this.directoryCount = directoryCount;
+        this.cacheHit = cacheHit;
+        this.failureReason = failureReason;
+    }
+
+    public ClasspathEntry getClasspathEntry() {
+        return classpathEntry;
+    }
+
+    /**
+     * @return the elapsed time of the scan of the entry, in nanoseconds
+     */
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    public long getWallTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(wallTimeNanos);
+    }
+
+    /**
+     * @return the bytes read from the jar files: the central directory of a jar, plus the nested jars read to reach
+     * an entry inside an archive - nothing is read of a class folder but its file attributes
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the number of resource files found in the entry
+     */
+    public int getResourceCount() {
+        return resourceCount;
+    }
+
+    /**
+     * @return the number of directories found in the entry
+     */
+    public int getDirectoryCount() {
+        return directoryCount;
+    }
+
+    /**
+     * @return true if the resources came from a cache: the entry was already scanned, or its index was cached
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * @return why the entry could not be scanned, or null if the scan succeeded
+     */
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    @Override
+    public String toString() {
+        return "ClasspathEntryScanMetrics{" + "url=" + classpathEntry.getUrl() + ", wallTimeMillis=" + getWallTimeMillis()
+                + ", bytesRead=" + bytesRead + ", resourceCount=" + resourceCount + ", directoryCount=" + directoryCount
+                + ", cacheHit=" + cacheHit + ", failureReason=" + failureReason + '}';
+    }
+}
@@ -15,16 +15,33 @@ import java.util.Objects;
  */
 public class ClasspathResource {
 
-    private final String name;
+    // holds the shared name table for as long as this resource refers to it
+    private final ResourceNameTable names = ResourceNameTable.getShared();
+    private final int nameId;
     private final List<ClasspathResourceVersion> resourceFileVersions = new ArrayList<>();
 
     public ClasspathResource(String name, ClasspathResourceVersion resourceFileVersion) {
-        this.name = name;
+        this.nameId = names.intern(name);
+        this.resourceFileVersions.add(resourceFileVersion);
+    }
+
+    /**
+     * The resources created while scanning take the name id of their first version, the name is not looked up again.
+     */
+    ClasspathResource(int nameId, ClasspathResourceVersion resourceFileVersion) {
+        this.nameId = nameId;
         this.resourceFileVersions.add(resourceFileVersion);
     }
 
     public String getName() {
-        return name;
+        return names.getName(nameId);
+    }
+
+    /**
+     * @return the id of the resource name on the shared resource name table
+     */
+    public int getNameId() {
+        return nameId;
     }
 
     public List<ClasspathResourceVersion> getResourceFileVersions() {
@@ -38,7 +55,7 @@ public class ClasspathResource {
     @Override
     public int hashCode() {
         int hash = 5;
-        hash = 29 * hash + Objects.hashCode(this.name);
+        hash = 29 * hash + this.nameId;
         hash = 29 * hash + Objects.hashCode(this.resourceFileVersions);
         return hash;
     }
@@ -52,7 +69,7 @@ public class ClasspathResource {
             return false;
         }
         final ClasspathResource other = (ClasspathResource) obj;
-        if (!Objects.equals(this.name, other.name)) {
+        if (this.nameId != other.nameId) {
             return false;
         }
         if (!Objects.equals(this.resourceFileVersions, other.resourceFileVersions)) {
@@ -63,27 +80,54 @@ public class ClasspathResource {
 
     @Override
     public String toString() {
-        return "Clazz{" + "name=" + name + ", classFileVersions=" + resourceFileVersions + '}';
+        return "Clazz{" + "name=" + getName() + ", classFileVersions=" + resourceFileVersions + '}';
     }
 
     public boolean hasDuplicates(boolean excludeSameSizeDups) {
-        boolean hasDuplicates = false;
-
-        if (!excludeSameSizeDups) {
-            hasDuplicates = resourceFileVersions.size() > 1;
-        } else if (resourceFileVersions.size() > 1) {
-            // exclude resource files for which all versions have the same size
-            boolean multipleSizesExist = false;
-            long size = resourceFileVersions.get(0).getFileSize();
-            for (ClasspathResourceVersion resourceFileVersion : resourceFileVersions) {
-                if (resourceFileVersion.getFileSize() != size) {
-                    multipleSizesExist = true;
-                    break;
-                }
+        return hasDuplicates(DuplicatesMode.of(excludeSameSizeDups));
+    }
+
+    /**
+     *
+     * @param mode - which versions are considered different
+     * @return - true if the resource has more than one version, and the versions differ as required by the mode
+     */
+    public boolean hasDuplicates(DuplicatesMode mode) {
+        if (resourceFileVersions.size() <= 1) {
+            return false;
+        }
+        switch (mode) {
+            case DIFFERENT_SIZE:
+                return hasMultipleSizes();
+            case DIFFERENT_CONTENT:
+                // the CRCs are only looked at if all sizes are the same
+                return hasMultipleSizes() || hasMultipleCrcs();
+            default:
+                return true;
+        }
+    }
+
+    private boolean hasMultipleSizes() {
+        long size = resourceFileVersions.get(0).getFileSize();
+        for (ClasspathResourceVersion resourceFileVersion : resourceFileVersions) {
+            if (resourceFileVersion.getFileSize() != size) {
+                return true;
             }
-            hasDuplicates = multipleSizesExist;
         }
+        return false;
+    }
 
-        return hasDuplicates;
+    /**
+     * A version with an unknown CRC can't be proven identical to the others, so it counts as different.
+     */
+    private boolean hasMultipleCrcs() {
+        long crc = resourceFileVersions.get(0).getCrc();
+        for (ClasspathResourceVersion resourceFileVersion : resourceFileVersions) {
+            long versionCrc = resourceFileVersion.getCrc();
+            if (versionCrc == ClasspathResourceVersion.UNKNOWN_CRC || versionCrc != crc) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -7,18 +7,51 @@ import java.util.Objects;
  * A classpath resource can have several versions, for example a class file can have different versions on different
  * jars.
  *
+ * The resource name is kept as an id of the name table of its classpath entry, the shared resource name table. The
+ * version also holds that table, so that a version without an entry keeps the table its id belongs to.
+ *
+ * @see ResourceNameTable
  *
  */
 public class ClasspathResourceVersion {
 
+    /**
+     * The CRC of a version that is not known, or could not be computed.
+     */
+    public static final long UNKNOWN_CRC = -1;
     private final ClasspathEntry classpathEntry;
-    private String resourceName;
+    // fits in the object alignment padding, it doesn't make the versions bigger
+    private final ResourceNameTable names;
+    private final int resourceNameId;
     private final long fileSize;
+    private volatile long crc;
 
     public ClasspathResourceVersion(ClasspathEntry classpathEntry, String resourceName, long classSize) {
+        this(classpathEntry, resourceName, classSize, UNKNOWN_CRC);
+    }
+
+    public ClasspathResourceVersion(ClasspathEntry classpathEntry, String resourceName, long classSize, long crc) {
+        this(classpathEntry, namesOf(classpathEntry), resourceName, classSize, crc);
+    }
+
+    private ClasspathResourceVersion(ClasspathEntry classpathEntry, ResourceNameTable names, String resourceName,
+            long classSize, long crc) {
+        this.classpathEntry = classpathEntry;
+        this.names = names;
+        this.resourceNameId = names.intern(resourceName);
+        this.fileSize = classSize;
+        this.crc = crc;
+    }
+
+    /**
+     * Versions created from an index already have the id of their name.
+     */
+    ClasspathResourceVersion(ClasspathEntry classpathEntry, int resourceNameId, long classSize, long crc) {
         this.classpathEntry = classpathEntry;
-        this.resourceName = resourceName;
+        this.names = namesOf(classpathEntry);
+        this.resourceNameId = resourceNameId;
         this.fileSize = classSize;
+        this.crc = crc;
     }
 
     public ClasspathEntry getClasspathEntry() {
@@ -30,14 +63,46 @@ public class ClasspathResourceVersion {
     }
 
     public String getResourceName() {
-        return resourceName;
+        return names.getName(resourceNameId);
+    }
+
+    private static ResourceNameTable namesOf(ClasspathEntry classpathEntry) {
+        return classpathEntry != null ? classpathEntry.getNames() : ResourceNameTable.getShared();
+    }
+
+    /**
+     * @return the id of the resource name on the shared resource name table
+     */
+    public int getResourceNameId() {
+        return resourceNameId;
+    }
+
+    /**
+     *
+     * Jar versions get their CRC from the jar central directory. The CRC of class folder files is only computed the
+     * first time it's needed, so only the files that are compared with other versions are read.
+     *
+     * @return the CRC32 of the resource contents, or UNKNOWN_CRC if it could not be determined
+     */
+    public long getCrc() {
+        if (crc == UNKNOWN_CRC && classpathEntry != null && classpathEntry.isClassFolder()) {
+            crc = classpathEntry.computeResourceCrc(getResourceName());
+        }
+        return crc;
+    }
+
+    /**
+     * @return the CRC known so far, without computing it
+     */
+    long getStoredCrc() {
+        return crc;
     }
 
     @Override
     public int hashCode() {
         int hash = 5;
         hash = 97 * hash + Objects.hashCode(this.classpathEntry);
-        hash = 97 * hash + Objects.hashCode(this.resourceName);
+        hash = 97 * hash + this.resourceNameId;
         return hash;
     }
 
@@ -53,7 +118,7 @@ public class ClasspathResourceVersion {
         if (!Objects.equals(this.classpathEntry, other.classpathEntry)) {
             return false;
         }
-        if (!Objects.equals(this.resourceName, other.resourceName)) {
+        if (this.resourceNameId != other.resourceNameId) {
             return false;
         }
         return true;
@@ -62,6 +127,6 @@ public class ClasspathResourceVersion {
     @Override
     public String toString() {
         return "ClasspathResourceVersion{classpathEntry=" + classpathEntry.toString() + ", resourceName="
-            + resourceName + ", fileSize=" + fileSize + "}";
+            + getResourceName() + ", fileSize=" + fileSize + "}";
     }
 }
@@ -32,9 +32,9 @@ public final class ClasspathResources {
         }
         List<ClasspathResource> filtered = new ArrayList<>();
 
+        ResourceNameTable names = ResourceNameTable.getShared();
         for (ClasspathResource classpathResource : classpathResources) {
-            String resourceName = classpathResource.getName();
-            if (resourceName != null && resourceName.endsWith(".class")) {
+            if (names.endsWith(classpathResource.getNameId(), ".class")) {
                 filtered.add(classpathResource);
             }
         }
@@ -70,11 +70,22 @@ public final class ClasspathResources {
      * @return - the list of resources with duplicates
      */
     public static List<ClasspathResource> findResourcesWithDuplicates(List<ClasspathResource> resourceFiles, boolean excludeSameSizeDups) {
+        return findResourcesWithDuplicates(resourceFiles, DuplicatesMode.of(excludeSameSizeDups));
+    }
+
+    /**
+     * Inspects a given list of classpath resources, and returns only the resources that contain multiple versions.
+     *
+     * @param resourceFiles - the resource files to be inspected
+     * @param mode - which versions are considered different, for example DIFFERENT_CONTENT to exclude identical copies
+     * @return - the list of resources with duplicates
+     */
+    public static List<ClasspathResource> findResourcesWithDuplicates(List<ClasspathResource> resourceFiles, DuplicatesMode mode) {
         List<ClasspathResource> resourcesWithDuplicates = new ArrayList<>();
 
         // keep only entries with duplicates
         for (ClasspathResource resource : resourceFiles) {
-            if (resource.hasDuplicates(excludeSameSizeDups)) {
+            if (resource.hasDuplicates(mode)) {
                 resourcesWithDuplicates.add(resource);
             }
         }
@@ -0,0 +1,122 @@
+package org.jhades.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * The metrics of a whole classpath scan, aggregated from the metrics of its entries.
+ *
+ * @see org.jhades.service.ClasspathScanMetricsListener
+ *
+ */
+public final class ClasspathScanSummary {
+
+    private int entryCount;
+    private int failedEntryCount;
+    private int cacheHitCount;
+    private long bytesRead;
+    private long resourceCount;
+    private long entriesWallTimeNanos;
+    private long wallTimeNanos;
+    private long peakIndexSize;
+
+    ClasspathScanSummary() {
+    }
+
+    void addEntry(ClasspathEntryScanMetrics metrics) {
+        entryCount++;
+        if (metrics.getFailureReason() != null) {
+            failedEntryCount++;
+        }
+        if (metrics.isCacheHit()) {
+            cacheHitCount++;
+        }
+        bytesRead += metrics.getBytesRead();
+        resourceCount += metrics.getResourceCount();
+        entriesWallTimeNanos += metrics.getWallTimeNanos();
+    }
+
+    void updatePeakIndexSize(long indexSize) {
+        peakIndexSize = Math.max(peakIndexSize, indexSize);
+    }
+
+    void setWallTimeNanos(long wallTimeNanos) {
+        this.wallTimeNanos = wallTimeNanos;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getFailedEntryCount() {
+        return failedEntryCount;
+    }
+
+    public int getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getResourceCount() {
+        return resourceCount;
+    }
+
+    /**
+     * @return the elapsed time of the whole scan, in nanoseconds - less than the sum of the entry times when the
+     * entries are scanned in parallel
+     */
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * @return the sum of the scan times of all the entries, in nanoseconds
+     */
+    public long getEntriesWallTimeNanos() {
+        return entriesWallTimeNanos;
+    }
+
+    /**
+     * @return the largest number of resource versions held by the scan at once: all of them when the scan builds a
+     * list or an index, only the ones of the biggest entry when iterating
+     */
+    public long getPeakIndexSize() {
+        return peakIndexSize;
+    }
+
+    /**
+     * @return the number of entries scanned per second
+     */
+    public double getEntriesPerSecond() {
+        return perSecond(entryCount);
+    }
+
+    /**
+     * @return the number of resources found per second
+     */
+    public double getResourcesPerSecond() {
+        return perSecond(resourceCount);
+    }
+
+    /**
+     * @return the number of bytes read per second
+     */
+    public double getBytesPerSecond() {
+        return perSecond(bytesRead);
+    }
+
+    private double perSecond(long count) {
+        return wallTimeNanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos(1) / wallTimeNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ClasspathScanSummary{" + "entryCount=" + entryCount + ", failedEntryCount=" + failedEntryCount
+                + ", cacheHitCount=" + cacheHitCount + ", bytesRead=" + bytesRead + ", resourceCount=" + resourceCount
+                + ", wallTimeMillis=" + TimeUnit.NANOSECONDS.toMillis(wallTimeNanos) + ", peakIndexSize=" + peakIndexSize
+                + ", resourcesPerSecond=" + Math.round(getResourcesPerSecond()) + '}';
+    }
+}
@@ -0,0 +1,128 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.jhades.service.ClasspathScannerListener;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * The result of scanning the classpath once: the classpath entries and all the resources found on them.
+ *
+ * A snapshot never changes after being created, it can be shared by several queries and threads. To see changes on
+ * the classpath, a new snapshot needs to be created.
+ *
+ * The scan is kept in a columnar index, on which the queries run, including the lookups by name. The object views of
+ * the scan (the full list of resources and the resources with duplicates) are only built the first time they are
+ * needed, so that queries that only need duplicates never build the full list.
+ *
+ * @see org.jhades.service.ClasspathScanner#getSnapshot()
+ *
+ */
+public final class ClasspathSnapshot {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private final List<ClasspathEntry> classpathEntries;
+    private final ClasspathScannerListener listener;
+    private final long creationTime = System.currentTimeMillis();
+    private volatile ClasspathColumnarIndex columnarIndex;
+    private volatile List<ClasspathResource> classpathResources;
+    private volatile List<ClasspathResource> resourcesWithDuplicates;
+
+    /**
+     *
+     * @param classpathEntries - the classpath entries, they are scanned when the snapshot is first queried unless they
+     * were scanned already
+     */
+    public ClasspathSnapshot(List<ClasspathEntry> classpathEntries) {
+        this(classpathEntries, null);
+    }
+
+    /**
+     *
+     * @param classpathEntries - the classpath entries, they are scanned when the snapshot is first queried unless they
+     * were scanned already
+     * @param listener - the listener notified while the columnar index is built, or null
+     */
+    public ClasspathSnapshot(List<ClasspathEntry> classpathEntries, ClasspathScannerListener listener) {
+        this.classpathEntries = Collections.unmodifiableList(new ArrayList<>(classpathEntries));
+        this.listener = listener;
+    }
+
+    /**
+     * @return the classpath entries, in classpath order
+     */
+    public List<ClasspathEntry> getClasspathEntries() {
+        return classpathEntries;
+    }
+
+    /**
+     *
+     * Scanned entries that were not scanned before don't keep their resource versions, the index holds the scan.
+     *
+     * @return the columnar index of the resource versions of the classpath entries
+     */
+    public ClasspathColumnarIndex getColumnarIndex() {
+        ClasspathColumnarIndex index = columnarIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = columnarIndex;
+                if (index == null) {
+                    index = ClasspathColumnarIndex.build(classpathEntries, logger, listener);
+                    columnarIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return all the resources found on the classpath, including all its known versions
+     */
+    public List<ClasspathResource> getClasspathResources() {
+        List<ClasspathResource> resources = classpathResources;
+        if (resources == null) {
+            ClasspathColumnarIndex index = getColumnarIndex();
+            synchronized (this) {
+                resources = classpathResources;
+                if (resources == null) {
+                    resources = Collections.unmodifiableList(index.getResources());
+                    classpathResources = resources;
+                }
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * @return the resources found on the classpath that have more than one version
+     */
+    public List<ClasspathResource> getResourcesWithDuplicates() {
+        List<ClasspathResource> duplicates = resourcesWithDuplicates;
+        if (duplicates == null) {
+            ClasspathColumnarIndex index = getColumnarIndex();
+            synchronized (this) {
+                duplicates = resourcesWithDuplicates;
+                if (duplicates == null) {
+                    duplicates = Collections.unmodifiableList(
+                            index.getResources(index.findResourcesWithDuplicates(DuplicatesMode.ALL, false)));
+                    resourcesWithDuplicates = duplicates;
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * @return the time the snapshot was created, in milliseconds since the epoch
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ClasspathSnapshot{classpathEntries=" + classpathEntries.size() + ", creationTime=" + creationTime + "}";
+    }
+}
@@ -1,8 +1,13 @@
 package org.jhades.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import org.jhades.utils.StdOutLogger;
 
 /**
  *
@@ -13,6 +18,7 @@ import java.util.Objects;
  */
 public abstract class ClazzLoader {
 
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
     private String name;
     private String details;
     private boolean isSupported;
@@ -41,11 +47,44 @@ public abstract class ClazzLoader {
     }
 
     protected void addClasspathEntry(ClasspathEntry newEntry) {
+        addClasspathEntries(Collections.singletonList(newEntry));
+    }
+
+    /**
+     *
+     * Adds classpath entries, each jar followed by the jars of its manifest Class-Path. The manifests are read in
+     * parallel, and a jar that is already on the classpath is not added again, whatever the URL it's reached through:
+     * the entries are compared by canonical location, which also stops Class-Path cycles.
+     *
+     * @param newEntries - the entries to add, in classpath order
+     */
+    protected void addClasspathEntries(List<ClasspathEntry> newEntries) {
+        List<String> urls = new ArrayList<>();
+        for (ClasspathEntry newEntry : newEntries) {
+            urls.add(newEntry.getUrl());
+        }
+        Map<String, List<String>> manifestClasspaths = ManifestClasspathResolver.readManifestClasspaths(urls,
+                ClasspathEntries.getDefaultScanParallelism());
+
+        Set<String> addedLocations = new HashSet<>();
+        for (ClasspathEntry entry : classpathEntries) {
+            addedLocations.add(entry.getCanonicalLocation());
+        }
+        for (ClasspathEntry newEntry : newEntries) {
+            addClasspathEntry(newEntry, manifestClasspaths, addedLocations);
+        }
+    }
+
+    private void addClasspathEntry(ClasspathEntry newEntry, Map<String, List<String>> manifestClasspaths, Set<String> addedLocations) {
+        if (!addedLocations.add(newEntry.getCanonicalLocation())) {
+            logger.debug("Classpath entry already on the classpath of " + name + ": " + newEntry.getUrl());
+            return;
+        }
         classpathEntries.add(newEntry);
-        if (newEntry.isJar()) {
-            List<ClasspathEntry> manifestClasspath = newEntry.findManifestClasspathEntries();
-            for (ClasspathEntry manifestEntry : manifestClasspath) {
-                addClasspathEntry(manifestEntry);
+        List<String> manifestClasspath = manifestClasspaths.get(newEntry.getUrl());
+        if (manifestClasspath != null) {
+            for (String url : manifestClasspath) {
+                addClasspathEntry(new ClasspathEntry(this, url), manifestClasspaths, addedLocations);
             }
         }
     }
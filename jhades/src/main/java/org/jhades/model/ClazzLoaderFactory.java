@@ -1,9 +1,11 @@
 package org.jhades.model;
 
+import java.io.IOException;
+import java.net.URL;
 import java.net.URLClassLoader;
 import static org.jhades.service.ClasspathScanner.BOOTSTRAP_CLASS_LOADER;
-import sun.misc.Launcher;
-import sun.misc.URLClassPath;
+import org.jhades.utils.JrtModuleIndex;
+import org.jhades.utils.StdOutLogger;
 
 /**
  *
@@ -17,6 +19,8 @@ import sun.misc.URLClassPath;
  */
 public class ClazzLoaderFactory {
 
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+
     public static ClazzLoader createClazzLoader(ClassLoader classLoader) {
         ClazzLoader cl = null;
         if (classLoader instanceof URLClassLoader) {
@@ -30,8 +34,37 @@ public class ClazzLoaderFactory {
         return cl;
     }
 
+    /**
+     *
+     * Up to JDK 8 the bootstrap class path is a list of jars, on later JDKs the bootstrap classes are in the module
+     * image, indexed through the jrt:/ file system.
+     *
+     * @return the bootstrap class loader, without classpath entries if its classes could not be found
+     */
     public static ClazzLoader createBootstrapClassLoader() {
-        URLClassPath cp = Launcher.getBootstrapClassPath();
-        return new UrlClazzLoader(BOOTSTRAP_CLASS_LOADER, "N/A", cp.getURLs());
+        URL[] bootstrapClassPath = findBootstrapClassPath();
+        if (bootstrapClassPath != null) {
+            return new UrlClazzLoader(BOOTSTRAP_CLASS_LOADER, "N/A", bootstrapClassPath);
+        }
+        if (JrtModuleIndex.isAvailable()) {
+            try {
+                return new JrtClazzLoader(JrtModuleIndex.getDefault());
+            } catch (IOException | RuntimeException exc) {
+                logger.warn("Could not index the JDK module image - reason: " + exc.getMessage());
+            }
+        }
+        return new UrlClazzLoader(BOOTSTRAP_CLASS_LOADER, "N/A", new URL[0]);
+    }
+
+    /**
+     * sun.misc.Launcher only exists up to JDK 8, so it's called via reflection.
+     */
+    private static URL[] findBootstrapClassPath() {
+        try {
+            Object classPath = Class.forName("sun.misc.Launcher").getMethod("getBootstrapClassPath").invoke(null);
+            return (URL[]) classPath.getClass().getMethod("getURLs").invoke(classPath);
+        } catch (ReflectiveOperationException | RuntimeException exc) {
+            return null;
+        }
     }
 }
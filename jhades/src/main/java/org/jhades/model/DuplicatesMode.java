@@ -0,0 +1,32 @@
+package org.jhades.model;
+
+/**
+ *
+ * Which resources with several versions are reported as duplicates.
+ *
+ * @see ClasspathResource#hasDuplicates(DuplicatesMode)
+ *
+ */
+public enum DuplicatesMode {
+
+    /**
+     * All the resources with more than one version.
+     */
+    ALL,
+    /**
+     * Excludes the resources for which all versions have the same size.
+     */
+    DIFFERENT_SIZE,
+    /**
+     * Excludes the resources for which all versions have the same content - the versions are compared by size and by
+     * CRC32, as stored in the jars central directory.
+     */
+    DIFFERENT_CONTENT;
+
+    /**
+     * @return the mode matching the excludeSameSizeDups flag of the reports
+     */
+    public static DuplicatesMode of(boolean excludeSameSizeDups) {
+        return excludeSameSizeDups ? DIFFERENT_SIZE : ALL;
+    }
+}
@@ -0,0 +1,65 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * A module of an EAR, either a WAR or an EJB jar, with its classpath: the entries of the module followed by the shared
+ * jars of the EAR lib folder.
+ *
+ * The shared jars are the same classpath entries in all the modules of the EAR, so they are only scanned once.
+ *
+ * @see ArchiveEntries#findEarModules(java.nio.file.Path, JarContentCache, int)
+ *
+ */
+public final class EarModule {
+
+    private final String name;
+    private final List<ClasspathEntry> moduleEntries;
+    private final List<ClasspathEntry> sharedEntries;
+    private final List<ClasspathEntry> classpathEntries;
+
+    EarModule(String name, List<ClasspathEntry> moduleEntries, List<ClasspathEntry> sharedEntries) {
+        this.name = name;
+        this.moduleEntries = Collections.unmodifiableList(new ArrayList<>(moduleEntries));
+        this.sharedEntries = Collections.unmodifiableList(new ArrayList<>(sharedEntries));
+        List<ClasspathEntry> entries = new ArrayList<>(moduleEntries);
+        entries.addAll(sharedEntries);
+        this.classpathEntries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return the name of the module in the EAR, such as web.war
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the entries of the module itself, without the shared jars
+     */
+    public List<ClasspathEntry> getModuleEntries() {
+        return moduleEntries;
+    }
+
+    /**
+     * @return the shared jars of the EAR lib folder, the same entries for all the modules
+     */
+    public List<ClasspathEntry> getSharedEntries() {
+        return sharedEntries;
+    }
+
+    /**
+     * @return the classpath of the module, including the shared jars of the EAR
+     */
+    public List<ClasspathEntry> getClasspathEntries() {
+        return classpathEntries;
+    }
+
+    @Override
+    public String toString() {
+        return "EarModule{" + "name=" + name + ", classpathEntries=" + classpathEntries.size() + '}';
+    }
+}
@@ -0,0 +1,141 @@
+package org.jhades.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jhades.utils.ScanStatistics;
+import org.jhades.utils.ZipCentralDirectoryReader;
+
+/**
+ *
+ * An in-memory cache of jar indexes, shared by all the archives scanned in the same JVM and addressed by jar content:
+ * identical copies of a jar bundled in several archives are indexed only once.
+ *
+ * The index only holds the resource names, sizes and CRCs, which all come from the central directory of the jar - so a
+ * jar is identified by the SHA-256 digest of its central directory, and jars with the same digest always have the same
+ * index. Only the central directory needs to be read to compute the digest, the rest of the jar is read only if it's
+ * nested and compressed, in which case it has to be inflated to find its central directory. Each classpath entry gets
+ * its own resource versions, created from the shared index.
+ *
+ * Jars can be looked up from several threads, the first caller reads the jar and the others wait for it.
+ *
+ * @see ArchiveClasspathEntry
+ *
+ */
+public final class JarContentCache {
+
+    private final ConcurrentMap<String, FutureTask<JarIndex>> indexes = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @return the number of distinct jars indexed
+     */
+    public int size() {
+        return indexes.size();
+    }
+
+    /**
+     * @return the number of jars whose index was already in the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of jars that had to be read
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Adds the resource versions of a jar entry, indexing the jar only if no identical jar was indexed before.
+     *
+     * @param reader - the reader of the jar
+     */
+    void addResourceVersions(final ArchiveClasspathEntry entry, final ZipCentralDirectoryReader reader,
+            List<ClasspathResourceVersion> versions) throws IOException {
+        FutureTask<JarIndex> read = new FutureTask<>(new Callable<JarIndex>() {
+            @Override
+            public JarIndex call() throws IOException {
+                List<ClasspathResourceVersion> scanned = new ArrayList<>();
+                entry.readArchiveEntries(reader, null, scanned);
+                return new JarIndex(scanned);
+            }
+        });
+        FutureTask<JarIndex> index = indexes.putIfAbsent(getContentKey(reader), read);
+        if (index == null) {
+            misses.incrementAndGet();
+            index = read;
+            index.run();
+        } else {
+            hits.incrementAndGet();
+            ScanStatistics.setCacheHit();
+        }
+
+        try {
+            index.get().addResourceVersions(entry, versions);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the index of " + entry.getUrl(), exc);
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return the hexadecimal SHA-256 digest of the central directory of the jar
+     */
+    static String getContentKey(ZipCentralDirectoryReader reader) throws IOException {
+        StringBuilder key = new StringBuilder(64);
+        for (byte digestByte : reader.digestCentralDirectory()) {
+            key.append(Character.forDigit((digestByte >> 4) & 0xF, 16)).append(Character.forDigit(digestByte & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * The resources of a jar, in primitive arrays that don't refer to any classpath entry.
+     */
+    private static final class JarIndex {
+
+        // holds the shared name table for as long as the cached ids refer to it
+        private final ResourceNameTable names = ResourceNameTable.getShared();
+        private final int[] nameIds;
+        private final long[] sizes;
+        private final long[] crcs;
+
+        JarIndex(List<ClasspathResourceVersion> versions) {
+            nameIds = new int[versions.size()];
+            sizes = new long[versions.size()];
+            crcs = new long[versions.size()];
+            for (int i = 0; i < versions.size(); i++) {
+                ClasspathResourceVersion version = versions.get(i);
+                nameIds[i] = version.getResourceNameId();
+                sizes[i] = version.getFileSize();
+                crcs[i] = version.getStoredCrc();
+            }
+        }
+
+        void addResourceVersions(ClasspathEntry entry, List<ClasspathResourceVersion> versions) {
+            for (int i = 0; i < nameIds.length; i++) {
+                versions.add(new ClasspathResourceVersion(entry, nameIds[i], sizes[i], crcs[i]));
+            }
+        }
+    }
+}
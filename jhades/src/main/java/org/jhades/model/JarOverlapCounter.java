@@ -0,0 +1,224 @@
+package org.jhades.model;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Counts, for each pair of classpath entries, the number of resources they have in common.
+ *
+ * The entries are identified by dense integer ids. For a small number of entries, the counts are kept in a triangular
+ * matrix of primitive ints. Otherwise the matrix would be too big, and the counts are kept in an open addressing hash
+ * map keyed by the pair of ids packed into a long.
+ *
+ * A counter is not thread-safe: each thread should use its own counter, and the counters are merged at the end.
+ *
+ */
+final class JarOverlapCounter {
+
+    /**
+     * Above this number of entries a triangular matrix would take more than 2MB, a sparse map is used instead.
+     */
+    static final int MAX_DENSE_ENTRIES = 1024;
+    private final int entryCount;
+    private final int[] matrix;
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    JarOverlapCounter(int entryCount) {
+        this(entryCount, entryCount <= MAX_DENSE_ENTRIES);
+    }
+
+    JarOverlapCounter(int entryCount, boolean dense) {
+        this.entryCount = entryCount;
+        if (dense) {
+            matrix = new int[entryCount * (entryCount + 1) / 2];
+        } else {
+            matrix = null;
+            keys = new long[1024];
+            counts = new int[1024];
+        }
+    }
+
+    /**
+     *
+     * Counts one common resource for every pair of entries of a group - a group is the list of entries where a given
+     * resource was found.
+     *
+     * @param entryIds - array containing the group entry ids
+     * @param from - the position of the first entry id of the group, inclusive
+     * @param to - the position of the last entry id of the group, exclusive
+     */
+    void addGroup(int[] entryIds, int from, int to) {
+        for (int i = from; i < to; i++) {
+            for (int j = i + 1; j < to; j++) {
+                add(entryIds[i], entryIds[j], 1);
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of another counter for the same entries to this one.
+     */
+    void addAll(JarOverlapCounter other) {
+        if (matrix != null && other.matrix != null) {
+            for (int i = 0; i < matrix.length; i++) {
+                matrix[i] += other.matrix[i];
+            }
+        } else if (other.matrix != null) {
+            for (int low = 0; low < entryCount; low++) {
+                for (int high = low; high < entryCount; high++) {
+                    int count = other.matrix[matrixIndex(low, high)];
+                    if (count > 0) {
+                        add(low, high, count);
+                    }
+                }
+            }
+        } else {
+            for (int slot = 0; slot < other.keys.length; slot++) {
+                long key = other.keys[slot];
+                if (key != 0) {
+                    add(lowId(key), highId(key), other.counts[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * Finds the pairs with the most common resources, without allocating any objects per pair.
+     *
+     * @param limit - the maximum number of pairs returned
+     * @return the pairs ordered by count descending (and by entry ids for the same count), each pair packed as three
+     * consecutive ints: the lowest entry id, the highest entry id and the count.
+     */
+    int[] topPairs(int limit) {
+        int total = matrix != null ? nonZeroMatrixCounts() : size;
+        int[] pairIds = new int[total * 2];
+        int[] pairCounts = new int[total];
+        int pair = 0;
+        if (matrix != null) {
+            for (int low = 0; low < entryCount; low++) {
+                for (int high = low; high < entryCount; high++) {
+                    int count = matrix[matrixIndex(low, high)];
+                    if (count > 0) {
+                        pairIds[2 * pair] = low;
+                        pairIds[2 * pair + 1] = high;
+                        pairCounts[pair++] = count;
+                    }
+                }
+            }
+        } else {
+            // keys sort by low id and then by high id, the same order as the matrix above
+            long[] sortedKeys = new long[total];
+            for (long key : keys) {
+                if (key != 0) {
+                    sortedKeys[pair++] = key;
+                }
+            }
+            Arrays.sort(sortedKeys);
+            for (pair = 0; pair < total; pair++) {
+                pairIds[2 * pair] = lowId(sortedKeys[pair]);
+                pairIds[2 * pair + 1] = highId(sortedKeys[pair]);
+                pairCounts[pair] = counts[slot(sortedKeys[pair])];
+            }
+        }
+
+        // count in the high bits, reversed pair position in the low bits: the biggest values come first once sorted
+        long[] ranking = new long[total];
+        for (pair = 0; pair < total; pair++) {
+            ranking[pair] = ((long) pairCounts[pair] << 32) | (Integer.MAX_VALUE - pair);
+        }
+        Arrays.sort(ranking);
+
+        int resultSize = Math.min(limit, total);
+        int[] result = new int[resultSize * 3];
+        for (int rank = 0; rank < resultSize; rank++) {
+            pair = Integer.MAX_VALUE - (int) ranking[total - 1 - rank];
+            result[3 * rank] = pairIds[2 * pair];
+            result[3 * rank + 1] = pairIds[2 * pair + 1];
+            result[3 * rank + 2] = pairCounts[pair];
+        }
+        return result;
+    }
+
+    private void add(int entryId1, int entryId2, int count) {
+        int low = Math.min(entryId1, entryId2);
+        int high = Math.max(entryId1, entryId2);
+        if (matrix != null) {
+            matrix[matrixIndex(low, high)] += count;
+            return;
+        }
+        long key = ((long) (low + 1) << 32) | high;
+        int slot = slot(key);
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            counts[slot] = count;
+            size++;
+            if (size * 2 > keys.length) {
+                resize();
+            }
+        } else {
+            counts[slot] += count;
+        }
+    }
+
+    /**
+     * @return the slot of the key, or the empty slot where it should be inserted
+     */
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private int nonZeroMatrixCounts() {
+        int nonZero = 0;
+        for (int count : matrix) {
+            if (count > 0) {
+                nonZero++;
+            }
+        }
+        return nonZero;
+    }
+
+    /**
+     * The matrix includes the diagonal, for entries listed twice on the classpath.
+     */
+    private static int matrixIndex(int low, int high) {
+        return high * (high + 1) / 2 + low;
+    }
+
+    /**
+     * The low id is stored plus one in the keys, so that no key is zero - zero marks the empty slots.
+     */
+    private static int lowId(long key) {
+        return (int) (key >>> 32) - 1;
+    }
+
+    private static int highId(long key) {
+        return (int) key;
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
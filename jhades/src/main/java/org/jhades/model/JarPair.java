@@ -18,6 +18,12 @@ public class JarPair {
         this.jar2 = jar2;
     }
 
+    public JarPair(ClasspathEntry jar1, ClasspathEntry jar2, long dupClassesTotal) {
+        this.jar1 = jar1;
+        this.jar2 = jar2;
+        this.dupClassesTotal = dupClassesTotal;
+    }
+
     public ClasspathEntry getJar1() {
         return jar1;
     }
@@ -28,9 +34,9 @@ public class JarPair {
 
     @Override
     public int hashCode() {
+        // symmetric, as equals ignores the order of the jars
         int hash = 3;
-        hash = 37 * hash + Objects.hashCode(this.jar1);
-        hash = 37 * hash + Objects.hashCode(this.jar2);
+        hash = 37 * hash + Objects.hashCode(this.jar1) + Objects.hashCode(this.jar2);
         return hash;
     }
 
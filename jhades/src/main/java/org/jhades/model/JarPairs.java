@@ -0,0 +1,177 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Utility class for finding the pairs of jars that contain the same resources.
+ *
+ * Each classpath entry gets a dense integer id, and the versions of each resource become a group of ids. The pairs of
+ * each group are counted on primitive arrays, split in chunks between several threads, so no object is created per
+ * overlapping pair until the final list of jar pairs is built.
+ *
+ * @see JarPair
+ *
+ */
+public final class JarPairs {
+
+    /**
+     * Below this number of resources, the pairs are counted on the calling thread.
+     */
+    private static final int MIN_RESOURCES_PER_WORKER = 4096;
+
+    private JarPairs() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    /**
+     *
+     * Finds all the pairs of jars that have resources in common, using the default scan parallelism.
+     *
+     * @param resourcesWithDuplicates - the resources to consider, usually the ones with more than one version
+     * @return - the overlapping jar pairs, sorted by the number of common resources descending
+     */
+    public static List<JarPair> findOverlappingJarPairs(List<ClasspathResource> resourcesWithDuplicates) {
+        return findOverlappingJarPairs(resourcesWithDuplicates, ClasspathEntries.getDefaultScanParallelism(), Integer.MAX_VALUE);
+    }
+
+    /**
+     *
+     * Finds the pairs of jars that have the most resources in common.
+     *
+     * For each pair, jar1 is the entry that shows up first on the list of resources.
+     *
+     * @param resourcesWithDuplicates - the resources to consider, usually the ones with more than one version
+     * @param parallelism - the maximum number of threads counting pairs, 1 to count on the calling thread
+     * @param limit - the maximum number of pairs returned
+     * @return - the overlapping jar pairs, sorted by the number of common resources descending
+     */
+    public static List<JarPair> findOverlappingJarPairs(List<ClasspathResource> resourcesWithDuplicates, int parallelism, int limit) {
+        if (resourcesWithDuplicates == null) {
+            throw new IllegalArgumentException("Classpath resources cannot be null.");
+        }
+
+        // flatten the versions of each resource into groups of entry ids
+        Map<ClasspathEntry, Integer> entryIds = new HashMap<>();
+        List<ClasspathEntry> entries = new ArrayList<>();
+        int[] groupOffsets = new int[resourcesWithDuplicates.size() + 1];
+        int[] groupEntryIds = new int[resourcesWithDuplicates.size() * 2];
+        int total = 0;
+        for (int group = 0; group < resourcesWithDuplicates.size(); group++) {
+            List<ClasspathResourceVersion> versions = resourcesWithDuplicates.get(group).getResourceFileVersions();
+            if (total + versions.size() > groupEntryIds.length) {
+                int[] grown = new int[Math.max(groupEntryIds.length * 2, total + versions.size())];
+                System.arraycopy(groupEntryIds, 0, grown, 0, total);
+                groupEntryIds = grown;
+            }
+            for (ClasspathResourceVersion version : versions) {
+                ClasspathEntry entry = version.getClasspathEntry();
+                Integer entryId = entryIds.get(entry);
+                if (entryId == null) {
+                    entryId = entries.size();
+                    entryIds.put(entry, entryId);
+                    entries.add(entry);
+                }
+                groupEntryIds[total++] = entryId;
+            }
+            groupOffsets[group + 1] = total;
+        }
+
+        return findOverlappingJarPairs(entries, groupEntryIds, groupOffsets, parallelism, limit);
+    }
+
+    /**
+     *
+     * Finds the pairs of jars that have the most resources in common, from groups of entry ids - each group being the
+     * entries where a resource was found.
+     *
+     * @param entries - the entries, by id
+     * @param groupEntryIds - the entry ids of all the groups, one group after the other
+     * @param groupOffsets - the position of each group in groupEntryIds, followed by the end of the last group
+     * @return - the overlapping jar pairs, sorted by the number of common resources descending
+     */
+    static List<JarPair> findOverlappingJarPairs(List<ClasspathEntry> entries, int[] groupEntryIds, int[] groupOffsets,
+            int parallelism, int limit) {
+        JarOverlapCounter counter = countPairs(groupEntryIds, groupOffsets, entries.size(), parallelism);
+
+        int[] topPairs = counter.topPairs(limit);
+        List<JarPair> jarPairs = new ArrayList<>(topPairs.length / 3);
+        for (int i = 0; i < topPairs.length; i += 3) {
+            jarPairs.add(new JarPair(entries.get(topPairs[i]), entries.get(topPairs[i + 1]), topPairs[i + 2]));
+        }
+        return jarPairs;
+    }
+
+    private static JarOverlapCounter countPairs(int[] groupEntryIds, int[] groupOffsets, int entryCount, int parallelism) {
+        int groups = groupOffsets.length - 1;
+        int workers = Math.max(1, Math.min(parallelism, groups / MIN_RESOURCES_PER_WORKER));
+        if (workers == 1) {
+            return new PairCount(groupEntryIds, groupOffsets, 0, groups, entryCount).call();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            List<Future<JarOverlapCounter>> counts = new ArrayList<>();
+            for (int worker = 0; worker < workers; worker++) {
+                int from = (int) ((long) groups * worker / workers);
+                int to = (int) ((long) groups * (worker + 1) / workers);
+                counts.add(pool.submit(new PairCount(groupEntryIds, groupOffsets, from, to, entryCount)));
+            }
+            JarOverlapCounter counter = null;
+            for (Future<JarOverlapCounter> count : counts) {
+                if (counter == null) {
+                    counter = count.get();
+                } else {
+                    counter.addAll(count.get());
+                }
+            }
+            return counter;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting overlapping jars.", exc);
+        } catch (ExecutionException exc) {
+            if (exc.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw new IllegalStateException(exc.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Counts the pairs of a range of groups on a counter of its own.
+     */
+    private static class PairCount implements Callable<JarOverlapCounter> {
+
+        private final int[] groupEntryIds;
+        private final int[] groupOffsets;
+        private final int fromGroup;
+        private final int toGroup;
+        private final int entryCount;
+
+        PairCount(int[] groupEntryIds, int[] groupOffsets, int fromGroup, int toGroup, int entryCount) {
+            this.groupEntryIds = groupEntryIds;
+            this.groupOffsets = groupOffsets;
+            this.fromGroup = fromGroup;
+            this.toGroup = toGroup;
+            this.entryCount = entryCount;
+        }
+
+        @Override
+        public JarOverlapCounter call() {
+            JarOverlapCounter counter = new JarOverlapCounter(entryCount);
+            for (int group = fromGroup; group < toGroup; group++) {
+                counter.addGroup(groupEntryIds, groupOffsets[group], groupOffsets[group + 1]);
+            }
+            return counter;
+        }
+    }
+}
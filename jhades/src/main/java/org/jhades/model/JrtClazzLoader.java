@@ -0,0 +1,23 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import static org.jhades.service.ClasspathScanner.BOOTSTRAP_CLASS_LOADER;
+import org.jhades.utils.JrtModuleIndex;
+
+/**
+ *
+ * The bootstrap class loader of JDK 9 and later, with one classpath entry per module of the JDK module image.
+ *
+ */
+public class JrtClazzLoader extends ClazzLoader {
+
+    public JrtClazzLoader(JrtModuleIndex index) {
+        super(BOOTSTRAP_CLASS_LOADER, "jrt:/", true);
+        List<ClasspathEntry> entries = new ArrayList<>();
+        for (JrtModuleIndex.Module module : index.getModules()) {
+            entries.add(new JrtModuleClasspathEntry(this, module));
+        }
+        addClasspathEntries(entries);
+    }
+}
@@ -0,0 +1,51 @@
+package org.jhades.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.jhades.utils.JrtModuleIndex;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * A module of the JDK module image, such as jrt:/java.base/ - its resources are taken from the module image index,
+ * the module image itself is only read for the CRCs of the duplicates.
+ *
+ */
+public class JrtModuleClasspathEntry extends ClasspathEntry {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private final JrtModuleIndex.Module module;
+
+    public JrtModuleClasspathEntry(ClazzLoader classLoader, JrtModuleIndex.Module module) {
+        super(classLoader, "jrt:/" + module.getName() + "/");
+        this.module = module;
+    }
+
+    @Override
+    protected void scan(List<ClasspathResourceVersion> versions) {
+        logger.debug("\nScanning module: " + getUrl());
+
+        for (int i = 0; i < module.getResourceCount(); i++) {
+            versions.add(new ClasspathResourceVersion(this, module.getResourceName(i), module.getSize(i)));
+        }
+    }
+
+    @Override
+    long computeResourceCrc(String resourceName) {
+        try (InputStream in = Files.newInputStream(JrtModuleIndex.getResourcePath(module.getName(), resourceName))) {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+            return crc.getValue();
+        } catch (IOException | RuntimeException exc) {
+            logger.debug("Could not compute CRC of " + getUrl() + resourceName + " - reason:" + exc.getMessage());
+            return ClasspathResourceVersion.UNKNOWN_CRC;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.jhades.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * A class with several versions on the classpath that was actually loaded, with the code source locations it was
+ * loaded from and the versions found at those locations.
+ *
+ * @see LoadedClassConflicts#findLoadedConflicts(java.util.List, java.lang.Class[])
+ *
+ */
+public final class LoadedClassConflict {
+
+    private final ClasspathResource resource;
+    private final List<String> loadedLocations;
+    private final List<ClasspathResourceVersion> loadedVersions;
+
+    LoadedClassConflict(ClasspathResource resource, List<String> loadedLocations, List<ClasspathResourceVersion> loadedVersions) {
+        this.resource = resource;
+        this.loadedLocations = Collections.unmodifiableList(new ArrayList<>(loadedLocations));
+        this.loadedVersions = Collections.unmodifiableList(new ArrayList<>(loadedVersions));
+    }
+
+    /**
+     * @return the class, with all its versions on the classpath
+     */
+    public ClasspathResource getResource() {
+        return resource;
+    }
+
+    /**
+     * @return the code source locations the class was loaded from, one per class loader that loaded it
+     */
+    public List<String> getLoadedLocations() {
+        return loadedLocations;
+    }
+
+    /**
+     * @return the versions that were loaded, in classpath order - empty if the class was loaded from a location that was
+     * not scanned
+     */
+    public List<ClasspathResourceVersion> getLoadedVersions() {
+        return loadedVersions;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadedClassConflict{" + "resource=" + resource.getName() + ", loadedLocations=" + loadedLocations + '}';
+    }
+}
@@ -0,0 +1,132 @@
+package org.jhades.model;
+
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jhades.utils.StdOutLogger;
+
+/**
+ *
+ * Utility class for joining the classes loaded by the JVM with the classes that have several versions on the classpath.
+ *
+ * @see LoadedClassConflict
+ *
+ */
+public final class LoadedClassConflicts {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+
+    private LoadedClassConflicts() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    /**
+     *
+     * Finds the duplicate classes that were actually loaded, with a hash join on the class name: the duplicates are
+     * hashed by binary class name, and each loaded class is looked up by its name without building its resource name,
+     * so the join allocates nothing per loaded class. The code sources are only looked up for the matches.
+     *
+     * @param duplicates - classes with several versions on the classpath, see ClasspathScanner.findClassFileDuplicates
+     * @param loadedClasses - the classes loaded by the JVM, such as Instrumentation.getAllLoadedClasses()
+     * @return the loaded duplicates, in the order of the duplicates list
+     */
+    public static List<LoadedClassConflict> findLoadedConflicts(List<ClasspathResource> duplicates, Class<?>[] loadedClasses) {
+        Map<String, ClasspathResource> duplicatesByClassName = new HashMap<>(duplicates.size() * 2);
+        for (ClasspathResource duplicate : duplicates) {
+            String name = duplicate.getName();
+            if (name.endsWith(".class")) {
+                int start = name.startsWith("/") ? 1 : 0;
+                duplicatesByClassName.put(name.substring(start, name.length() - ".class".length()).replace('/', '.'), duplicate);
+            }
+        }
+
+        Map<ClasspathResource, Set<String>> loadedLocations = new HashMap<>();
+        for (Class<?> loadedClass : loadedClasses) {
+            ClasspathResource duplicate = duplicatesByClassName.get(loadedClass.getName());
+            if (duplicate == null) {
+                continue;
+            }
+            Set<String> locations = loadedLocations.get(duplicate);
+            if (locations == null) {
+                locations = new HashSet<>();
+                loadedLocations.put(duplicate, locations);
+            }
+            String location = findCodeSourceLocation(loadedClass);
+            if (location != null) {
+                locations.add(location);
+            }
+        }
+
+        List<LoadedClassConflict> conflicts = new ArrayList<>();
+        for (ClasspathResource duplicate : duplicates) {
+            Set<String> locations = loadedLocations.get(duplicate);
+            if (locations != null) {
+                conflicts.add(new LoadedClassConflict(duplicate, new ArrayList<>(locations), findVersionsAtLocations(duplicate, locations)));
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     *
+     * @param resource - a classpath resource, with all its versions
+     * @param locations - code source locations, such as file:/app/lib/log4j.jar
+     * @return the versions of the resource found at the given locations, in classpath order
+     */
+    public static List<ClasspathResourceVersion> findVersionsAtLocations(ClasspathResource resource, Collection<String> locations) {
+        List<ClasspathResourceVersion> versions = new ArrayList<>();
+        if (locations.isEmpty()) {
+            return versions;
+        }
+        Set<String> normalizedLocations = new HashSet<>();
+        for (String location : locations) {
+            normalizedLocations.add(normalizeLocation(location));
+        }
+        for (ClasspathResourceVersion version : resource.getResourceFileVersions()) {
+            if (normalizedLocations.contains(normalizeLocation(version.getClasspathEntry().getUrl()))) {
+                versions.add(version);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     *
+     * The code source of a class is the jar or class folder URL, while the classpath entries of nested archives are
+     * jar: URLs - both are reduced to the same form.
+     *
+     * @return the location without the jar: prefix and the trailing separator
+     */
+    public static String normalizeLocation(String url) {
+        String location = url;
+        if (location.startsWith("jar:")) {
+            location = location.substring("jar:".length());
+        }
+        if (location.endsWith("!/")) {
+            location = location.substring(0, location.length() - 2);
+        }
+        if (location.endsWith("/")) {
+            location = location.substring(0, location.length() - 1);
+        }
+        return location;
+    }
+
+    private static String findCodeSourceLocation(Class<?> loadedClass) {
+        try {
+            ProtectionDomain protectionDomain = loadedClass.getProtectionDomain();
+            CodeSource codeSource = protectionDomain != null ? protectionDomain.getCodeSource() : null;
+            URL location = codeSource != null ? codeSource.getLocation() : null;
+            return location != null ? location.toString() : null;
+        } catch (SecurityException exc) {
+            logger.debug("Could not get the protection domain of " + loadedClass.getName() + " - reason: " + exc.getMessage());
+            return null;
+        }
+    }
+}
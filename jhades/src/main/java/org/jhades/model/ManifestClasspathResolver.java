@@ -0,0 +1,226 @@
+package org.jhades.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import org.jhades.utils.StdOutLogger;
+import org.jhades.utils.ZipCentralDirectoryReader;
+
+/**
+ *
+ * Reads the manifest Class-Path of jars: only the MANIFEST.MF entry is read, found through the jar central directory,
+ * and the relative paths of the Class-Path are resolved against the URL of the jar, as the JVM does.
+ *
+ * The Class-Path of each jar is cached until the jar changes, so a jar referenced by several jars or class loaders is
+ * only read once. Only the last jars read are kept, so that the cache stays bounded on servers that keep deploying
+ * applications.
+ *
+ */
+public final class ManifestClasspathResolver {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+    private static final int MAX_CACHED_JARS = 4096;
+    // guarded by itself, in access order
+    private static final Map<String, CachedClasspath> cache = new LinkedHashMap<String, CachedClasspath>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedClasspath> eldest) {
+            return size() > MAX_CACHED_JARS;
+        }
+    };
+
+    private static final class CachedClasspath {
+
+        private final long size;
+        private final long lastModified;
+        private final List<String> classpath;
+
+        private CachedClasspath(long size, long lastModified, List<String> classpath) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.classpath = classpath;
+        }
+    }
+
+    private ManifestClasspathResolver() {
+        throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
+    }
+
+    /**
+     *
+     * @param jarUrl - the URL of a jar, such as file:/app/lib/app.jar
+     * @return the absolute URLs of the manifest Class-Path of the jar, empty if it has none or is not a jar on the file
+     * system
+     */
+    public static List<String> readManifestClasspath(String jarUrl) {
+        if (!hasManifestClasspath(jarUrl)) {
+            return Collections.emptyList();
+        }
+        try {
+            Path jarFile = Paths.get(new URI(jarUrl));
+            BasicFileAttributes attrs = Files.readAttributes(jarFile, BasicFileAttributes.class);
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            CachedClasspath cached;
+            synchronized (cache) {
+                cached = cache.get(jarUrl);
+            }
+            if (cached == null || cached.size != attrs.size() || cached.lastModified != lastModified) {
+                cached = new CachedClasspath(attrs.size(), lastModified, readClasspath(jarUrl, jarFile));
+                synchronized (cache) {
+                    cache.put(jarUrl, cached);
+                }
+            }
+            return cached.classpath;
+        } catch (IOException | URISyntaxException | RuntimeException exc) {
+            logger.warn("Problem scanning Manifest classpath of " + jarUrl + ": " + exc.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     *
+     * Reads the manifest Class-Path of the given jars, and of the jars they reference, until no new jar is found - a
+     * jar referenced again, such as in a Class-Path cycle, is only read once. The manifests of each level of references
+     * are read in parallel, the thread pool is only created if there are several jars to read.
+     *
+     * @param urls - the URLs of classpath entries, the ones that are not jars are ignored
+     * @param parallelism - the number of threads reading manifests, 1 to read them on the calling thread
+     * @return the manifest Class-Path of each jar that has one, by jar URL
+     */
+    public static Map<String, List<String>> readManifestClasspaths(List<String> urls, int parallelism) {
+        Map<String, List<String>> classpaths = new HashMap<>();
+        Set<String> read = new HashSet<>();
+        List<String> level = new ArrayList<>(urls);
+        ForkJoinPool pool = null;
+        try {
+            while (!level.isEmpty()) {
+                List<String> toRead = new ArrayList<>();
+                for (String url : level) {
+                    if (read.add(url) && hasManifestClasspath(url)) {
+                        toRead.add(url);
+                    }
+                }
+                if (pool == null && parallelism > 1 && toRead.size() > 1) {
+                    pool = new ForkJoinPool(Math.min(parallelism, toRead.size()));
+                }
+                List<List<String>> levelClasspaths = readAll(toRead, pool);
+
+                level = new ArrayList<>();
+                for (int i = 0; i < toRead.size(); i++) {
+                    List<String> classpath = levelClasspaths.get(i);
+                    if (!classpath.isEmpty()) {
+                        classpaths.put(toRead.get(i), classpath);
+                        level.addAll(classpath);
+                    }
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return classpaths;
+    }
+
+    /**
+     * Discards the cached manifests, so that they are read again.
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Only the jars of the file system are followed: the class loaders don't follow the manifests of nested jars either.
+     */
+    private static boolean hasManifestClasspath(String url) {
+        ClasspathEntry entry = new ClasspathEntry(null, url);
+        return entry.isJar() && !entry.isNestedArchive();
+    }
+
+    private static List<List<String>> readAll(List<String> urls, ForkJoinPool pool) {
+        List<List<String>> classpaths = new ArrayList<>();
+        if (pool == null || urls.size() <= 1) {
+            for (String url : urls) {
+                classpaths.add(readManifestClasspath(url));
+            }
+            return classpaths;
+        }
+        List<Future<List<String>>> reads = new ArrayList<>();
+        for (final String url : urls) {
+            reads.add(pool.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() {
+                    return readManifestClasspath(url);
+                }
+            }));
+        }
+        for (Future<List<String>> read : reads) {
+            try {
+                classpaths.add(read.get());
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading manifests.", exc);
+            } catch (ExecutionException exc) {
+                // readManifestClasspath does not throw checked exceptions
+                throw new IllegalStateException("Could not read manifest.", exc.getCause());
+            }
+        }
+        return classpaths;
+    }
+
+    private static List<String> readClasspath(String jarUrl, Path jarFile) throws IOException {
+        Manifest manifest;
+        try (FileChannel channel = FileChannel.open(jarFile, StandardOpenOption.READ)) {
+            ZipCentralDirectoryReader reader = new ZipCentralDirectoryReader(channel, 0, channel.size());
+            ZipCentralDirectoryReader.Entry manifestEntry = reader.findEntry(MANIFEST_NAME);
+            if (manifestEntry == null) {
+                return Collections.emptyList();
+            }
+            ByteBuffer content = reader.readContent(manifestEntry);
+            byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            manifest = new Manifest(new ByteArrayInputStream(bytes));
+        }
+        String manifestClasspath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        if (manifestClasspath == null || manifestClasspath.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> classpath = new ArrayList<>();
+        URL base = new URL(jarUrl);
+        for (String path : manifestClasspath.trim().split("\\s+")) {
+            logger.debug("Manifest jar path: " + path);
+            try {
+                classpath.add(new URL(base, path).toString());
+            } catch (MalformedURLException exc) {
+                logger.warn("Invalid manifest Class-Path entry " + path + " in " + jarUrl + ": " + exc.getMessage());
+            }
+        }
+        return Collections.unmodifiableList(classpath);
+    }
+}
@@ -0,0 +1,86 @@
+package org.jhades.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.jhades.utils.ZipCentralDirectoryReader;
+
+/**
+ *
+ * Looks up the archives nested in an archive of the file system, such as the BOOT-INF/lib jars of a fat jar.
+ *
+ * The URLs of a fat jar class loader all point inside the same archive: instead of reading its central directory once
+ * per URL, it's read once and its nested archives are kept by name. Only the entries that are archives themselves are
+ * kept, and only for the last few archives - an archive is read again if its size or modification time changes.
+ *
+ */
+final class NestedArchiveDirectory {
+
+    private static final int MAX_ARCHIVES = 16;
+    // guarded by itself, in access order
+    private static final Map<Path, NestedArchiveDirectory> directories = new LinkedHashMap<Path, NestedArchiveDirectory>(MAX_ARCHIVES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, NestedArchiveDirectory> eldest) {
+            return size() > MAX_ARCHIVES;
+        }
+    };
+    private final long size;
+    private final long lastModified;
+    private final Map<String, ZipCentralDirectoryReader.Entry> nestedArchives;
+
+    private NestedArchiveDirectory(long size, long lastModified, Map<String, ZipCentralDirectoryReader.Entry> nestedArchives) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.nestedArchives = nestedArchives;
+    }
+
+    /**
+     *
+     * @param archive - an archive of the file system
+     * @param reader - the reader of the archive, only used if its directory is not cached
+     * @param name - the name of an entry of the archive, such as BOOT-INF/lib/commons-lang.jar
+     * @return the entry, or null if not found
+     */
+    static ZipCentralDirectoryReader.Entry findEntry(Path archive, ZipCentralDirectoryReader reader, String name) throws IOException {
+        if (!isArchiveName(name)) {
+            return reader.findEntry(name);
+        }
+        Path key = archive.toAbsolutePath();
+        BasicFileAttributes attrs = Files.readAttributes(archive, BasicFileAttributes.class);
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        NestedArchiveDirectory directory;
+        synchronized (directories) {
+            directory = directories.get(key);
+        }
+        if (directory == null || directory.size != attrs.size() || directory.lastModified != lastModified) {
+            // threads reading the same archive at the same time may both read it, they find the same entries
+            directory = new NestedArchiveDirectory(attrs.size(), lastModified, readNestedArchives(reader));
+            synchronized (directories) {
+                directories.put(key, directory);
+            }
+        }
+        return directory.nestedArchives.get(name);
+    }
+
+    private static Map<String, ZipCentralDirectoryReader.Entry> readNestedArchives(ZipCentralDirectoryReader reader) throws IOException {
+        final Map<String, ZipCentralDirectoryReader.Entry> nestedArchives = new HashMap<>();
+        reader.read(new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                if (!entry.isDirectory() && isArchiveName(entry.getName()) && !nestedArchives.containsKey(entry.getName())) {
+                    nestedArchives.put(entry.getName(), entry.copy());
+                }
+            }
+        });
+        return nestedArchives;
+    }
+
+    private static boolean isArchiveName(String name) {
+        return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".ear") || name.endsWith(".zip");
+    }
+}
@@ -0,0 +1,407 @@
+package org.jhades.model;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ *
+ * Table of interned resource names, shared by the whole scanned model.
+ *
+ * Resource versions and resources refer to their names by id instead of holding a String each: the same name found on
+ * several jars is stored only once. A name is split into its directory, such as /org/apache/commons/lang/, and its
+ * simple name: the directories are shared by all the names they contain, and the simple names are stored as UTF-8
+ * bytes. The String of a name is created each time it's asked for and not kept, callers that go through many names,
+ * such as a regular expression search, can append them to a reused builder instead.
+ *
+ * The shared table is only weakly referenced: the classpath entries, resources and indexes that hold name ids also hold
+ * the table, so that it is released together with the last scanned model that uses it - for example when a classpath
+ * snapshot is discarded. The next scan then starts with a new, empty table.
+ *
+ * Interning is thread-safe. The names are split in stripes by directory, each with its own lock, so that the entries
+ * scanned in parallel don't all wait on one lock: a name already on the table is found without locking, and a new name
+ * only locks the stripe of its directory. Within a stripe the names are stored in chunks that never move once written,
+ * and are published to the readers by the stripe size, so reading, looking up and comparing names doesn't need any
+ * lock.
+ *
+ */
+public final class ResourceNameTable {
+
+    /**
+     * The id of a null name.
+     */
+    public static final int NO_NAME = -1;
+    private static final Object SHARED_LOCK = new Object();
+    private static volatile WeakReference<ResourceNameTable> shared = new WeakReference<>(null);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // a name id is its index on its stripe followed by the stripe
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPE_MASK = (1 << STRIPE_BITS) - 1;
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // directories - there are few of them, they are also kept as strings, and added under the lock of the map
+    private final ConcurrentMap<String, Integer> directoryIds = new ConcurrentHashMap<>();
+    private volatile String[] directories = new String[256];
+    private volatile byte[][] directoryBytes = new byte[256][];
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    /**
+     * The names of the directories with the same low id bits.
+     */
+    private static final class Stripe {
+
+        // names, stored in chunks of directory ids and UTF-8 simple names
+        private volatile int[][] nameDirectoryChunks = new int[4][];
+        private volatile byte[][][] nameBytesChunks = new byte[4][][];
+        // open addressing table of the name indexes by hash, each slot holds the hash in its high half and the index
+        // + 1 in its low half, 0 for an empty slot - written under the stripe lock, read without it
+        private volatile long[] slots = new long[1 << 10];
+        // the number of names, written last so that the names below it are fully visible to the readers
+        private volatile int size;
+
+        /**
+         * @return the index of the name on this stripe, or NO_NAME - the indexes from the published size on are
+         * ignored, their names may not be fully visible yet
+         */
+        int find(int directoryId, byte[] simpleName, int hash) {
+            // the size is read before the slots: all the names below it are visible on the slots read afterwards
+            int published = size;
+            long[] currentSlots = slots;
+            int mask = currentSlots.length - 1;
+            int slot = hash & mask;
+            long value;
+            while ((value = currentSlots[slot]) != 0) {
+                int index = (int) value - 1;
+                if ((int) (value >>> 32) == hash && index < published && directoryOf(index) == directoryId
+                        && Arrays.equals(simpleNameOf(index), simpleName)) {
+                    return index;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return NO_NAME;
+        }
+
+        synchronized int intern(int directoryId, byte[] simpleName, int hash) {
+            int index = find(directoryId, simpleName, hash);
+            if (index != NO_NAME) {
+                return index;
+            }
+            index = size;
+            int chunk = index >>> CHUNK_BITS;
+            if (chunk == nameDirectoryChunks.length) {
+                nameDirectoryChunks = Arrays.copyOf(nameDirectoryChunks, chunk * 2);
+                nameBytesChunks = Arrays.copyOf(nameBytesChunks, chunk * 2);
+            }
+            if (nameDirectoryChunks[chunk] == null) {
+                nameDirectoryChunks[chunk] = new int[CHUNK_SIZE];
+                nameBytesChunks[chunk] = new byte[CHUNK_SIZE][];
+            }
+            nameDirectoryChunks[chunk][index & CHUNK_MASK] = directoryId;
+            nameBytesChunks[chunk][index & CHUNK_MASK] = simpleName;
+            if ((index + 1) * 2 > slots.length) {
+                resizeSlots();
+            }
+            long[] currentSlots = slots;
+            currentSlots[emptySlot(currentSlots, hash)] = ((long) hash << 32) | (index + 1);
+            size = index + 1;
+            return index;
+        }
+
+        int directoryOf(int index) {
+            return nameDirectoryChunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        byte[] simpleNameOf(int index) {
+            return nameBytesChunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        /**
+         * Rehashes into a new array, which is only published once filled.
+         */
+        private void resizeSlots() {
+            long[] oldSlots = slots;
+            long[] newSlots = new long[oldSlots.length * 2];
+            for (long value : oldSlots) {
+                if (value != 0) {
+                    newSlots[emptySlot(newSlots, (int) (value >>> 32))] = value;
+                }
+            }
+            slots = newSlots;
+        }
+
+        private static int emptySlot(long[] slots, int hash) {
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Creates an empty table - the scanned model uses the shared table.
+     */
+    public ResourceNameTable() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     *
+     * The same table is returned as long as some scanned model holds it, a new one is created otherwise.
+     *
+     * @return the table shared by all the scanned entries
+     */
+    public static ResourceNameTable getShared() {
+        ResourceNameTable table = shared.get();
+        if (table != null) {
+            return table;
+        }
+        synchronized (SHARED_LOCK) {
+            table = shared.get();
+            if (table == null) {
+                table = new ResourceNameTable();
+                shared = new WeakReference<>(table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     *
+     * @param name - the full resource name, such as /org/jhades/JHades.class
+     * @return the id of the name, added to the table if it was not there yet - NO_NAME for a null name
+     */
+    public int intern(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        int separator = name.lastIndexOf('/') + 1;
+        int directoryId = internDirectory(name.substring(0, separator));
+        byte[] simpleName = name.substring(separator).getBytes(UTF_8);
+        int hash = hash(directoryId, simpleName);
+        Stripe stripe = stripes[directoryId & STRIPE_MASK];
+        // the names found on several entries are found without locking
+        int index = stripe.find(directoryId, simpleName, hash);
+        if (index == NO_NAME) {
+            index = stripe.intern(directoryId, simpleName, hash);
+        }
+        return index << STRIPE_BITS | (directoryId & STRIPE_MASK);
+    }
+
+    /**
+     *
+     * Looks up a name without locking the table - a name being interned at the same time may not be found yet.
+     *
+     * @param name - the full resource name
+     * @return the id of the name, or NO_NAME if the name is not on the table
+     */
+    public int find(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        int separator = name.lastIndexOf('/') + 1;
+        Integer directoryId = directoryIds.get(name.substring(0, separator));
+        if (directoryId == null) {
+            return NO_NAME;
+        }
+        byte[] simpleName = name.substring(separator).getBytes(UTF_8);
+        int index = stripes[directoryId & STRIPE_MASK].find(directoryId, simpleName, hash(directoryId, simpleName));
+        return index != NO_NAME ? index << STRIPE_BITS | (directoryId & STRIPE_MASK) : NO_NAME;
+    }
+
+    /**
+     *
+     * @param id - a name id
+     * @return a new string with the name, or null for NO_NAME
+     */
+    public String getName(int id) {
+        if (id == NO_NAME) {
+            return null;
+        }
+        return directories[directoryOf(id)] + new String(simpleNameOf(id), UTF_8);
+    }
+
+    /**
+     *
+     * Appends a name to a builder, without creating a string for ASCII names.
+     *
+     * @param id - a name id, other than NO_NAME
+     * @param builder - the builder the name is appended to
+     */
+    public void appendName(int id, StringBuilder builder) {
+        builder.append(directories[directoryOf(id)]);
+        byte[] simpleName = simpleNameOf(id);
+        for (byte b : simpleName) {
+            if (b < 0) {
+                builder.append(new String(simpleName, UTF_8));
+                return;
+            }
+        }
+        for (byte b : simpleName) {
+            builder.append((char) b);
+        }
+    }
+    /**
+     *
+     * Checks the end of a name without creating the name string.
+     *
+     * @param id - a name id
+     * @param suffix - a suffix without directory separators, such as .class
+     * @return true if the name ends with the suffix
+     */
+    public boolean endsWith(int id, String suffix) {
+        if (id == NO_NAME) {
+            return false;
+        }
+        if (suffix.indexOf('/') >= 0) {
+            return getName(id).endsWith(suffix);
+        }
+        byte[] simpleName = simpleNameOf(id);
+        byte[] suffixBytes = suffix.getBytes(UTF_8);
+        if (suffixBytes.length > simpleName.length) {
+            return false;
+        }
+        int offset = simpleName.length - suffixBytes.length;
+        for (int i = 0; i < suffixBytes.length; i++) {
+            if (simpleName[offset + i] != suffixBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *
+     * Compares two names by their UTF-8 bytes, which is the order of their unicode code points, without creating the
+     * name strings.
+     *
+     * @return a negative number, zero or a positive number if the first name is smaller, equal or bigger
+     */
+    public int compare(int id1, int id2) {
+        if (id1 == id2) {
+            return 0;
+        } else if (id1 == NO_NAME) {
+            return -1;
+        } else if (id2 == NO_NAME) {
+            return 1;
+        }
+        int directory1 = directoryOf(id1);
+        int directory2 = directoryOf(id2);
+        byte[] name1 = simpleNameOf(id1);
+        byte[] name2 = simpleNameOf(id2);
+        if (directory1 == directory2) {
+            return compareBytes(name1, name2);
+        }
+        // compare the directory followed by the simple name, as if they were a single array
+        byte[] prefix1 = directoryBytes[directory1];
+        byte[] prefix2 = directoryBytes[directory2];
+        int length1 = prefix1.length + name1.length;
+        int length2 = prefix2.length + name2.length;
+        for (int i = 0; i < Math.min(length1, length2); i++) {
+            int byte1 = (i < prefix1.length ? prefix1[i] : name1[i - prefix1.length]) & 0xFF;
+            int byte2 = (i < prefix2.length ? prefix2[i] : name2[i - prefix2.length]) & 0xFF;
+            if (byte1 != byte2) {
+                return byte1 - byte2;
+            }
+        }
+        return length1 - length2;
+    }
+
+    /**
+     *
+     * Estimates the memory used by some names of the table: their UTF-8 simple names and their share of the table
+     * arrays, plus their directories, each counted once.
+     *
+     * @param ids - name ids of the table, without duplicates
+     * @return the estimated size of the names, in bytes
+     */
+    public long getMemorySize(int[] ids) {
+        // per name: directory id, reference to the simple name, and two slots at half load
+        final int nameOverhead = 4 + 4 + 2 * 8;
+        long memory = 0;
+        Set<Integer> directoriesUsed = new HashSet<>();
+        for (int id : ids) {
+            if (id != NO_NAME) {
+                memory += nameOverhead + arraySize(simpleNameOf(id).length, 1);
+                directoriesUsed.add(directoryOf(id));
+            }
+        }
+        for (int directoryId : directoriesUsed) {
+            // the string and the bytes of the directory, and its entry on the directory map
+            int length = directoryBytes[directoryId].length;
+            memory += 24 + arraySize(length, 2) + arraySize(length, 1) + 48;
+        }
+        return memory;
+    }
+
+    /**
+     * @return the number of names on the table
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    private int directoryOf(int id) {
+        return stripes[id & STRIPE_MASK].directoryOf(id >>> STRIPE_BITS);
+    }
+
+    private byte[] simpleNameOf(int id) {
+        return stripes[id & STRIPE_MASK].simpleNameOf(id >>> STRIPE_BITS);
+    }
+
+    private int internDirectory(String directory) {
+        Integer directoryId = directoryIds.get(directory);
+        if (directoryId != null) {
+            return directoryId;
+        }
+        synchronized (directoryIds) {
+            directoryId = directoryIds.get(directory);
+            if (directoryId != null) {
+                return directoryId;
+            }
+            directoryId = directoryIds.size();
+            if (directoryId == directories.length) {
+                directories = Arrays.copyOf(directories, directoryId * 2);
+                directoryBytes = Arrays.copyOf(directoryBytes, directoryId * 2);
+            }
+            directories[directoryId] = directory;
+            directoryBytes[directoryId] = directory.getBytes(UTF_8);
+            // published last, a reader that finds the directory also sees its strings
+            directoryIds.put(directory, directoryId);
+        }
+        return directoryId;
+    }
+
+    private static int hash(int directoryId, byte[] simpleName) {
+        int hash = (directoryId * 31 + Arrays.hashCode(simpleName)) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long arraySize(int length, int elementSize) {
+        // array header, and the elements rounded up to 8 bytes
+        return 16 + ((long) length * elementSize + 7) / 8 * 8;
+    }
+
+    private static int compareBytes(byte[] bytes1, byte[] bytes2) {
+        for (int i = 0; i < Math.min(bytes1.length, bytes2.length); i++) {
+            int byte1 = bytes1[i] & 0xFF;
+            int byte2 = bytes2[i] & 0xFF;
+            if (byte1 != byte2) {
+                return byte1 - byte2;
+            }
+        }
+        return bytes1.length - bytes2.length;
+    }
+}
@@ -0,0 +1,132 @@
+package org.jhades.model;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ *
+ * K-way merge of the name-sorted resource versions of each entry, producing the resources one at a time in name order.
+ *
+ * Names are compared by their ids on the shared resource name table: interned names are equal if their ids are.
+ *
+ * The entries are kept on a binary heap ordered by the name of their current resource version and then by entry
+ * position, so versions with the same name come out together and in classpath order. The versions of an entry are
+ * dropped once they were all merged, so that they can be garbage collected before the merge ends.
+ *
+ */
+final class SortedResourceMerge implements Iterator<ClasspathResource> {
+
+    private final ClasspathResourceVersion[][] versions;
+    private final boolean duplicatesOnly;
+    private final ResourceNameTable names = ResourceNameTable.getShared();
+    private final int[] positions;
+    private final int[] heap;
+    private int heapSize;
+    private ClasspathResource next;
+
+    /**
+     *
+     * @param sortedVersionsPerEntry - the resource versions of each entry sorted by name, in classpath order
+     * @param duplicatesOnly - true to return only the resources with more than one version, they are the only ones
+     * created in that case
+     */
+    SortedResourceMerge(List<ClasspathResourceVersion[]> sortedVersionsPerEntry, boolean duplicatesOnly) {
+        this.versions = sortedVersionsPerEntry.toArray(new ClasspathResourceVersion[sortedVersionsPerEntry.size()][]);
+        this.duplicatesOnly = duplicatesOnly;
+        this.positions = new int[versions.length];
+        this.heap = new int[versions.length];
+
+        for (int entry = 0; entry < versions.length; entry++) {
+            if (versions[entry].length > 0) {
+                heap[heapSize++] = entry;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && heapSize > 0) {
+            next = mergeNextName();
+        }
+        return next != null;
+    }
+
+    @Override
+    public ClasspathResource next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ClasspathResource resource = next;
+        next = null;
+        return resource;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Merged resources cannot be removed.");
+    }
+
+    /**
+     * Takes all the versions of the smallest name from the heap, returns null if it's not a duplicate and only
+     * duplicates are returned.
+     */
+    private ClasspathResource mergeNextName() {
+        ClasspathResourceVersion first = versions[heap[0]][positions[heap[0]]];
+        int nameId = first.getResourceNameId();
+        ClasspathResource resource = duplicatesOnly ? null : new ClasspathResource(nameId, first);
+        int count = 0;
+
+        while (heapSize > 0) {
+            int entry = heap[0];
+            ClasspathResourceVersion version = versions[entry][positions[entry]];
+            if (version.getResourceNameId() != nameId) {
+                break;
+            }
+            if (count == 1 && resource == null) {
+                resource = new ClasspathResource(nameId, first);
+            }
+            if (count >= 1) {
+                resource.getResourceFileVersions().add(version);
+            }
+            count++;
+
+            positions[entry]++;
+            if (positions[entry] == versions[entry].length) {
+                versions[entry] = null;
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(0);
+        }
+
+        return resource;
+    }
+
+    private void siftDown(int index) {
+        int entry = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && compareHeads(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compareHeads(heap[child], entry) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = entry;
+    }
+
+    private int compareHeads(int entry1, int entry2) {
+        int comparison = names.compare(versions[entry1][positions[entry1]].getResourceNameId(),
+                versions[entry2][positions[entry2]].getResourceNameId());
+        return comparison != 0 ? comparison : Integer.compare(entry1, entry2);
+    }
+}
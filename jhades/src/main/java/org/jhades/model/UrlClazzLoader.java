@@ -1,6 +1,8 @@
 package org.jhades.model;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -11,10 +13,12 @@ public class UrlClazzLoader extends ClazzLoader {
 
     public UrlClazzLoader(String name, String details, URL[] urls) {
         super(name, details, true);
+        List<ClasspathEntry> entries = new ArrayList<>();
         for (URL url : urls) {
             if (url != null) {
-                addClasspathEntry(new ClasspathEntry(this, url.toString()));
+                entries.add(new ClasspathEntry(this, url.toString()));
             }
         }
+        addClasspathEntries(entries);
     }
 }
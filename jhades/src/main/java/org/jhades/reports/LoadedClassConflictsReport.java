@@ -0,0 +1,61 @@
+package org.jhades.reports;
+
+import java.io.PrintStream;
+import java.util.List;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.LoadedClassConflict;
+
+/**
+ *
+ * Report for the duplicate classes that were actually loaded - prints each class with the version that was loaded and
+ * the versions that were not.
+ *
+ */
+public class LoadedClassConflictsReport {
+
+    private final List<LoadedClassConflict> conflicts;
+    private final UrlFormatter urlFormatter;
+
+    public LoadedClassConflictsReport(List<LoadedClassConflict> conflicts) {
+        this(conflicts, new DefaultUrlFormatterImpl());
+    }
+
+    public LoadedClassConflictsReport(List<LoadedClassConflict> conflicts, UrlFormatter urlFormatter) {
+        this.conflicts = conflicts;
+        this.urlFormatter = urlFormatter;
+    }
+
+    public void print() {
+        print(System.out);
+    }
+
+    /**
+     * @param out - the stream where the report is printed
+     */
+    public void print(PrintStream out) {
+        out.println("\n>> jHades loadedClassConflictsReport >> Duplicate classes that were loaded: \n");
+
+        for (LoadedClassConflict conflict : conflicts) {
+            ClasspathResource resource = conflict.getResource();
+            out.println(resource.getName() + " has " + resource.getResourceFileVersions().size() + " versions, loaded from:\n");
+            for (ClasspathResourceVersion version : resource.getResourceFileVersions()) {
+                String classLoaderName = version.getClasspathEntry().getClassLoaderName();
+                out.println("    " + (conflict.getLoadedVersions().contains(version) ? "LOADED     " : "not loaded ")
+                        + (classLoaderName != null ? classLoaderName : "") + " - "
+                        + urlFormatter.formatUrl(version.getClasspathEntry().getUrl())
+                        + " - class file size = " + version.getFileSize());
+            }
+            if (conflict.getLoadedVersions().isEmpty()) {
+                for (String location : conflict.getLoadedLocations()) {
+                    out.println("    LOADED     from a location that was not scanned - " + urlFormatter.formatUrl(location));
+                }
+            }
+            out.println();
+        }
+
+        if (conflicts.isEmpty()) {
+            out.println("No loaded duplicates were found.\n");
+        }
+    }
+}
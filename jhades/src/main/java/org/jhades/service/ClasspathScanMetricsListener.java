@@ -0,0 +1,29 @@
+package org.jhades.service;
+
+import org.jhades.model.ClasspathEntryScanMetrics;
+import org.jhades.model.ClasspathScanSummary;
+
+/**
+ *
+ * Listener that also receives the metrics of the scan: one record per scanned classpath entry, and a summary at the
+ * end of each scan.
+ *
+ * As for the other callbacks, the metrics can come from different threads - but never at the same time.
+ *
+ */
+public interface ClasspathScanMetricsListener extends ClasspathScannerListener {
+
+    /**
+     *
+     * Called after onEntryScanEnd, with the metrics of the scan of the entry
+     *
+     */
+    void onEntryScanMetrics(ClasspathEntryScanMetrics metrics);
+
+    /**
+     *
+     * Called when all the entries of a scan are scanned, with the metrics of the whole scan
+     *
+     */
+    void onScanSummary(ClasspathScanSummary summary);
+}
@@ -6,20 +6,27 @@ import org.jhades.model.ClasspathEntry;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
+import org.jhades.model.ClasspathColumnarIndex;
 import org.jhades.model.ClasspathEntries;
 import org.jhades.model.ClasspathResourceVersion;
 import org.jhades.model.ClasspathResources;
+import org.jhades.model.ClasspathSnapshot;
 import org.jhades.model.ClazzLoader;
 import org.jhades.model.ClazzLoaders;
+import org.jhades.model.DuplicatesMode;
 import org.jhades.model.JarPair;
+import org.jhades.model.JarPairs;
+import org.jhades.model.LoadedClassConflict;
+import org.jhades.model.LoadedClassConflicts;
+import org.jhades.utils.FileUtils;
 import org.jhades.utils.StdOutLogger;
 
 /**
@@ -43,6 +50,9 @@ import org.jhades.utils.StdOutLogger;
  *
  * The classpath folders and jars are scanned using JDK 7 functionality provided by the Java NIO framework.
  *
+ * The result of a scan is kept in a classpath snapshot, that is shared by all the queries of the scanner until it's
+ * refreshed or invalidated - running several queries costs only one scan.
+ *
  * jHades only depends on JDK 7 classes, in order to prevent introducing library dependencies (that could themselves
  * cause classpath problems).
  *
@@ -55,6 +65,8 @@ public class ClasspathScanner {
 
     public static final String BOOTSTRAP_CLASS_LOADER = "Bootstrap class loader";
     private StdOutLogger logger = StdOutLogger.getLogger();
+    private volatile ClasspathSnapshot snapshot;
+    private volatile ClasspathScannerListener scanListener;
 
     /**
      *
@@ -74,14 +86,20 @@ public class ClasspathScanner {
         String separator = System.getProperty("path.separator");
 
         if (classpath != null && separator != null) {
+            Set<String> locations = new HashSet<>();
+            for (ClasspathEntry classpathEntry : allClasspathEntries) {
+                locations.add(classpathEntry.getCanonicalLocation());
+            }
             String[] paths = classpath.split(separator);
             for (String pathEntry : paths) {
-                boolean found = false;
-                for (ClasspathEntry classpathEntry : allClasspathEntries) {
-                    if (classpathEntry.getUrl().contains(pathEntry)) {
-                        found = true;
-                        break;
-                    }
+                if (pathEntry.isEmpty()) {
+                    continue;
+                }
+                boolean found;
+                try {
+                    found = locations.contains(FileUtils.getCanonicalLocation(Paths.get(pathEntry)));
+                } catch (InvalidPathException exc) {
+                    found = false;
                 }
                 if (!found) {
                     if (!pathEntry.endsWith("/")) {
@@ -101,11 +119,100 @@ public class ClasspathScanner {
      *
      * Scans the classpath for all resource files.
      *
+     * The classpath is scanned only once, the following calls return the resources of the current snapshot.
+     *
      * @return - the full list of resources on the classpath, including all its known versions.
      */
     public List<ClasspathResource> findAllClasspathResources() {
-        List<ClasspathEntry> classpathEntries = findAllClasspathEntries();
-        return ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, null);
+        return new ArrayList<>(getSnapshot().getClasspathResources());
+    }
+
+    /**
+     *
+     * Iterates over all the resource versions on the classpath, in classpath order, without building any list.
+     *
+     * The entries are scanned one at a time while iterating and nothing is kept: iterating a classpath of any size
+     * needs only the memory of its biggest entry.
+     *
+     * @return - a lazy iterable over the resource versions of the classpath
+     */
+    public Iterable<ClasspathResourceVersion> iterateAllResourceVersions() {
+        return ClasspathEntries.iterateResourceVersions(findAllClasspathEntries(), logger, null);
+    }
+
+    /**
+     *
+     * Iterates over all the resources on the classpath, in resource name order, without building the list of
+     * resources.
+     *
+     * All the entries are scanned when the iteration starts, the versions of each entry are released as the iteration
+     * goes past them.
+     *
+     * @return - a lazy iterable over the resources of the classpath, each with its versions in classpath order
+     */
+    public Iterable<ClasspathResource> iterateAllClasspathResources() {
+        return ClasspathEntries.iterateClasspathResources(findAllClasspathEntries(), logger, null);
+    }
+
+    /**
+     *
+     * Returns the current classpath snapshot, scanning the classpath if no snapshot exists yet.
+     *
+     * All the queries of this scanner run against the same snapshot, until it's refreshed or invalidated.
+     *
+     * @return the current classpath snapshot
+     */
+    public ClasspathSnapshot getSnapshot() {
+        ClasspathSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = createSnapshot();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     *
+     * Scans the classpath again, replacing the current snapshot.
+     *
+     * @return the new classpath snapshot
+     */
+    public synchronized ClasspathSnapshot refreshSnapshot() {
+        ClasspathSnapshot current = createSnapshot();
+        snapshot = current;
+        return current;
+    }
+
+    /**
+     *
+     * Discards the current snapshot, releasing its memory - the classpath is scanned again on the next query.
+     *
+     */
+    public synchronized void invalidateSnapshot() {
+        snapshot = null;
+    }
+
+    /**
+     *
+     * Sets the listener notified while the classpath is scanned for the next snapshots - a
+     * ClasspathScanMetricsListener also receives the metrics of each entry, and of the whole scan.
+     *
+     * @param scanListener - the listener, or null for none
+     */
+    public void setScanListener(ClasspathScannerListener scanListener) {
+        this.scanListener = scanListener;
+    }
+
+    private ClasspathSnapshot createSnapshot() {
+        ClasspathSnapshot created = new ClasspathSnapshot(findAllClasspathEntries(), scanListener);
+        // scan now, the queries then only read the index
+        created.getColumnarIndex();
+        return created;
     }
 
     /**
@@ -163,18 +270,37 @@ public class ClasspathScanner {
      * @return - the classpath resource containing all the class versions, or null if not found
      */
     public ClasspathResource findClass(Class clazz) {
-        String classResourceName = clazz.getName().replace(".", "/") + ".class";
-        List<ClasspathResource> allResources = findAllClasspathResources();
-        ClasspathResource foundResource = null;
-
-        for (ClasspathResource resource : allResources) {
-            if (resource != null && resource.getName() != null
-                    && resource.getName().endsWith(classResourceName)) {
-                foundResource = resource;
-                break;
-            }
+        return findClassByName(clazz.getName());
+    }
+
+    /**
+     *
+     * Search for a given class on the classpath, returns the list of all class versions.
+     *
+     * @param className - the fully qualified name of the class being searched.
+     * @return - the classpath resource containing all the class versions, or null if not found
+     */
+    public ClasspathResource findClassByName(String className) {
+        return findResource(className.replace('.', '/') + ".class");
+    }
+
+    /**
+     *
+     * Search for a given resource on the classpath, returns the list of all resource versions.
+     *
+     * The resources are looked up by name on the columnar index of the current snapshot, each lookup takes constant
+     * time.
+     *
+     * @param resourceName - the full name of the resource being searched, such as java/lang/String.class
+     * @return - the classpath resource containing all the resource versions, or null if not found
+     */
+    public ClasspathResource findResource(String resourceName) {
+        if (!resourceName.startsWith("/")) {
+            resourceName = "/" + resourceName;
         }
-        return foundResource;
+        ClasspathColumnarIndex index = getSnapshot().getColumnarIndex();
+        int resource = index.findResource(resourceName);
+        return resource != -1 ? index.getResource(resource) : null;
     }
 
     /**
@@ -185,17 +311,8 @@ public class ClasspathScanner {
      * @return - the list of classpath resources that match the regular expression
      */
     public List<ClasspathResource> findByRegex(String search) {
-        List<ClasspathResource> allResources = findAllClasspathResources();
-        List<ClasspathResource> matches = new ArrayList<>();
-        Pattern pattern = Pattern.compile(search);
-
-        for (ClasspathResource resource : allResources) {
-            if (resource != null && resource.getName() != null
-                    && pattern.matcher(resource.getName()).find()) {
-                matches.add(resource);
-            }
-        }
-        return matches;
+        ClasspathColumnarIndex index = getSnapshot().getColumnarIndex();
+        return index.getResources(index.findResourcesByRegex(Pattern.compile(search)));
     }
 
     /**
@@ -209,9 +326,20 @@ public class ClasspathScanner {
      * @return classpath resources that have multiple versions on the classpath
      */
     public List<ClasspathResource> findAllResourcesWithDuplicates(boolean excludeSameSizeDups) {
-        List<ClasspathResource> resourceFiles = findAllClasspathResources();
+        return findAllResourcesWithDuplicates(DuplicatesMode.of(excludeSameSizeDups));
+    }
 
-        return ClasspathResources.findResourcesWithDuplicates(resourceFiles, excludeSameSizeDups);
+    /**
+     *
+     * Finds a list of all classpath resources that contain duplicates.
+     *
+     * @param mode - which versions are considered different, DIFFERENT_CONTENT excludes identical copies of a file
+     * @return classpath resources that have multiple versions on the classpath
+     */
+    public List<ClasspathResource> findAllResourcesWithDuplicates(DuplicatesMode mode) {
+        ClasspathColumnarIndex index = getSnapshot().getColumnarIndex();
+
+        return index.getResources(index.findResourcesWithDuplicates(mode, false));
     }
 
     /**
@@ -247,8 +375,35 @@ public class ClasspathScanner {
      * @return - the list of class files that have multiple versions
      */
     public List<ClasspathResource> findClassFileDuplicates(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
-        List<ClasspathResource> classFilesWithDuplicates = ClasspathResources.findResourcesWithDuplicates(classpathResources, excludeSameSizeDups);
-        return ClasspathResources.filterClassFilesOnly(classFilesWithDuplicates);
+        return findClassFileDuplicates(classpathResources, DuplicatesMode.of(excludeSameSizeDups));
+    }
+
+    /**
+     *
+     * Finds all class files that have more than one version on the classpath
+     *
+     * @param classpathResources - the list of classpath resources
+     * @param mode - which versions are considered different
+     * @return - the list of class files that have multiple versions
+     */
+    public List<ClasspathResource> findClassFileDuplicates(List<ClasspathResource> classpathResources, DuplicatesMode mode) {
+        // filter class files first, so that only their CRCs are ever computed
+        List<ClasspathResource> classFiles = ClasspathResources.filterClassFilesOnly(classpathResources);
+        return ClasspathResources.findResourcesWithDuplicates(classFiles, mode);
+    }
+
+    /**
+     *
+     * Finds the class files with several versions on the classpath that were actually loaded, and where they were
+     * loaded from.
+     *
+     * @param loadedClasses - the classes loaded by the JVM, such as Instrumentation.getAllLoadedClasses()
+     * @param mode - which versions are considered different
+     * @return - the loaded class files that have multiple versions
+     */
+    public List<LoadedClassConflict> findLoadedClassConflicts(Class<?>[] loadedClasses, DuplicatesMode mode) {
+        List<ClasspathResource> duplicates = findClassFileDuplicates(getSnapshot().getResourcesWithDuplicates(), mode);
+        return LoadedClassConflicts.findLoadedConflicts(duplicates, loadedClasses);
     }
 
     /**
@@ -259,7 +414,7 @@ public class ClasspathScanner {
      *
      */
     public List<JarPair> findOverlappingJars() {
-        return findOverlappingJars(findAllClasspathResources(), false);
+        return findOverlappingJars(DuplicatesMode.ALL);
     }
 
     /**
@@ -268,7 +423,17 @@ public class ClasspathScanner {
      *
      */
     public List<JarPair> findOverlappingJars(boolean excludeSameSizeDups) {
-        return findOverlappingJars(findAllClasspathResources(), excludeSameSizeDups);
+        return findOverlappingJars(DuplicatesMode.of(excludeSameSizeDups));
+    }
+
+    /**
+     *
+     * @param mode - which versions are considered different, DIFFERENT_CONTENT to ignore identical copies of a class
+     * @return - a list of jar pairs that have overlapping class files - scans the whole classpath
+     *
+     */
+    public List<JarPair> findOverlappingJars(DuplicatesMode mode) {
+        return getSnapshot().getColumnarIndex().findOverlappingJars(mode);
     }
 
     /**
@@ -278,41 +443,20 @@ public class ClasspathScanner {
      *
      */
     public List<JarPair> findOverlappingJars(List<ClasspathResource> classpathResources, boolean excludeSameSizeDups) {
-        List<ClasspathResource> classFilesWithDuplicates = findClassFileDuplicates(classpathResources, excludeSameSizeDups);
-
-        //jar overlap report
-        Map<JarPair, JarPair> overlapPairs = new HashMap<>();
-        for (ClasspathResource classFile : classFilesWithDuplicates) {
-            List<ClasspathResourceVersion> versions = classFile.getResourceFileVersions();
-            findOverlappingJarsPairs(versions, overlapPairs, 0);
-        }
-
-        List<JarPair> overlapReportLines = new ArrayList<>(overlapPairs.keySet());
-
-        Comparator<JarPair> comparator = new Comparator<JarPair>() {
-            @Override
-            public int compare(JarPair line1, JarPair line2) {
-                return -1 * line1.getDupClassesTotal().compareTo(line2.getDupClassesTotal());
-            }
-        };
-
-        Collections.sort(overlapReportLines, comparator);
-
-        return overlapReportLines;
+        return findOverlappingJars(classpathResources, DuplicatesMode.of(excludeSameSizeDups));
     }
 
-    private void findOverlappingJarsPairs(List<ClasspathResourceVersion> versions, Map<JarPair, JarPair> overlapPairs, int anchorIndex) {
-        ClasspathResourceVersion anchor = versions.get(anchorIndex);
-        for (int i = anchorIndex + 1; i < versions.size(); i++) {
-            JarPair overlapPair = new JarPair(
-                    anchor.getClasspathEntry(), versions.get(i).getClasspathEntry());
-            if (!overlapPairs.containsKey(overlapPair)) {
-                overlapPairs.put(overlapPair, overlapPair);
-            }
-            overlapPairs.get(overlapPair).incrementDupClassesTotal();
-        }
-        if (anchorIndex + 1 < versions.size()) {
-            findOverlappingJarsPairs(versions, overlapPairs, anchorIndex + 1);
-        }
+    /**
+     *
+     * @param classpathResources - the resources to consider
+     * @param mode - which versions are considered different
+     * @return - a list of jar pairs that have overlapping class files - only a limited list of classpath resources is
+     * considered.
+     *
+     */
+    public List<JarPair> findOverlappingJars(List<ClasspathResource> classpathResources, DuplicatesMode mode) {
+        List<ClasspathResource> classFilesWithDuplicates = findClassFileDuplicates(classpathResources, mode);
+
+        return JarPairs.findOverlappingJarPairs(classFilesWithDuplicates);
     }
 }
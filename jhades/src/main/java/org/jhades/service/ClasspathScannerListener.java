@@ -6,6 +6,8 @@ import org.jhades.model.ClasspathEntry;
  *
  * Listener for the classpath scanning process.
  *
+ * Entries can be scanned in parallel, so the callbacks can come from different threads - but never at the same time.
+ *
  */
 public interface ClasspathScannerListener {
 
@@ -1,6 +1,9 @@
 package org.jhades.utils;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -49,4 +52,55 @@ public final class FileUtils {
             e.printStackTrace();
         }
     }
+
+    /**
+     *
+     * Maps the different spellings of a classpath location to a single one: file:/, file:/// and file://localhost/
+     * URLs, relative segments such as .. and symbolic links all give the real path of the file. The entries of nested
+     * archives keep their path inside the archive, with the archive itself canonicalized.
+     *
+     * @param url - a classpath entry URL, such as file:/app/lib/../lib/log4j.jar
+     * @return the canonical location, such as /app/lib/log4j.jar - the URL itself if it's not a file URL
+     */
+    public static String getCanonicalLocation(String url) {
+        if (url.startsWith("jar:")) {
+            int separator = url.indexOf("!/");
+            if (separator > 0) {
+                String nestedPath = url.substring(separator);
+                // the trailing separator of the nested jar root is optional
+                while (nestedPath.endsWith("!/") || (nestedPath.endsWith("/") && nestedPath.length() > 2)) {
+                    nestedPath = nestedPath.substring(0, nestedPath.length() - (nestedPath.endsWith("!/") ? 2 : 1));
+                }
+                return "jar:" + getCanonicalLocation(url.substring("jar:".length(), separator)) + nestedPath;
+            }
+        }
+        try {
+            URI uri = new URI(url);
+            if ("file".equalsIgnoreCase(uri.getScheme())) {
+                String host = uri.getHost();
+                if (host != null && !host.isEmpty() && !host.equalsIgnoreCase("localhost")) {
+                    return uri.normalize().toString();
+                }
+                return getCanonicalLocation(Paths.get(new URI("file", null, uri.getPath(), null)));
+            }
+            return uri.normalize().toString();
+        } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException exc) {
+            logger.debug("Could not canonicalize " + url + " - reason: " + exc.getMessage());
+            return url;
+        }
+    }
+
+    /**
+     *
+     * @param path - a file or folder, absolute or relative to the working directory
+     * @return the real path of the file, or the normalized absolute path if the file does not exist
+     */
+    public static String getCanonicalLocation(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        try {
+            return absolute.toRealPath().toString();
+        } catch (IOException exc) {
+            return absolute.toString();
+        }
+    }
 }
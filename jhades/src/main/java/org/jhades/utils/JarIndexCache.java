@@ -0,0 +1,266 @@
+package org.jhades.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * A persistent cache of jar indexes - the list of entries of each jar (names, sizes and CRCs) is stored in a cache
+ * directory, so that jars that did not change are not read again on the next scan.
+ *
+ * By default an index is identified by the canonical path of the jar, and it's only used if the jar still has the same
+ * length and last modified time. Alternatively indexes can be identified by the jar content hash, which allows to
+ * share them between identical copies of a jar, at the cost of reading each jar fully to hash it.
+ *
+ * Index files are written to a temporary file and then atomically renamed, so several JVMs can share a cache directory:
+ * readers never see a partially written index, and concurrent writers of the same index write the same content.
+ *
+ * The cache is disabled by default, it's enabled with the system property jhades.index.cache.dir.
+ *
+ */
+public class JarIndexCache {
+
+    /**
+     * System property with the cache directory - if not set, the cache is disabled.
+     */
+    public static final String CACHE_DIR_PROPERTY = "jhades.index.cache.dir";
+    /**
+     * System property that, if set to true, identifies the indexes by the jar content hash.
+     */
+    public static final String CONTENT_HASH_PROPERTY = "jhades.index.cache.content.hash";
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x4A484958; // JHIX
+    private static final int FORMAT_VERSION = 1;
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+    private static JarIndexCache defaultCache;
+    private static boolean defaultCacheInitialized = false;
+    private final Path cacheDirectory;
+    private final boolean contentHashKeys;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public JarIndexCache(Path cacheDirectory, boolean contentHashKeys) {
+        this.cacheDirectory = cacheDirectory;
+        this.contentHashKeys = contentHashKeys;
+    }
+
+    /**
+     *
+     * @return the cache configured via system properties, or null if the cache is disabled
+     */
+    public static synchronized JarIndexCache getDefault() {
+        if (!defaultCacheInitialized) {
+            String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+            if (cacheDir != null && !cacheDir.trim().isEmpty()) {
+                defaultCache = new JarIndexCache(Paths.get(cacheDir.trim()), Boolean.getBoolean(CONTENT_HASH_PROPERTY));
+            }
+            defaultCacheInitialized = true;
+        }
+        return defaultCache;
+    }
+
+    /**
+     *
+     * Replaces the default cache.
+     *
+     * @param cache - the cache to use from now on, or null to disable caching
+     */
+    public static synchronized void setDefault(JarIndexCache cache) {
+        defaultCache = cache;
+        defaultCacheInitialized = true;
+    }
+
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     *
+     * Reads the entries of a jar from the cache, or from the jar central directory if the jar is not cached yet or
+     * changed since it was cached - in that case the new index is stored in the cache.
+     *
+     * @param jarFile - the jar to read
+     * @param visitor - the visitor called for each entry
+     * @return the number of entries read
+     * @throws IOException if the jar could not be read
+     */
+    public int read(Path jarFile, ZipCentralDirectoryReader.EntryVisitor visitor) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(jarFile, BasicFileAttributes.class);
+        String jarPath = jarFile.toRealPath().toString();
+        String key = contentHashKeys ? hashContent(jarFile) : hash(jarPath);
+        Path indexFile = cacheDirectory.resolve(key + INDEX_FILE_EXTENSION);
+
+        List<ZipCentralDirectoryReader.Entry> entries = load(indexFile, jarPath, attrs);
+        if (entries != null) {
+            hits.incrementAndGet();
+            ScanStatistics.setCacheHit();
+        } else {
+            misses.incrementAndGet();
+            final List<ZipCentralDirectoryReader.Entry> readEntries = new ArrayList<>();
+            ZipCentralDirectoryReader.read(jarFile, new ZipCentralDirectoryReader.EntryVisitor() {
+                @Override
+                public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                    readEntries.add(entry.copy());
+                }
+            });
+            entries = readEntries;
+            store(indexFile, jarPath, attrs, entries);
+        }
+
+        for (ZipCentralDirectoryReader.Entry entry : entries) {
+            visitor.visitEntry(entry);
+        }
+        return entries.size();
+    }
+
+    /**
+     * Loads an index file, returns null if it does not exist or does not match the jar.
+     */
+    private List<ZipCentralDirectoryReader.Entry> load(Path indexFile, String jarPath, BasicFileAttributes attrs) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            String indexedPath = in.readUTF();
+            long indexedSize = in.readLong();
+            long indexedLastModified = in.readLong();
+            // content hash keys already identify the content, the other keys need the jar to be unchanged
+            if (!contentHashKeys && (!indexedPath.equals(jarPath) || indexedSize != attrs.size()
+                    || indexedLastModified != attrs.lastModifiedTime().toMillis())) {
+                return null;
+            }
+            int totalEntries = in.readInt();
+            List<ZipCentralDirectoryReader.Entry> entries = new ArrayList<>(totalEntries);
+            byte[] nameBytes = new byte[256];
+            for (int i = 0; i < totalEntries; i++) {
+                int nameLength = in.readUnsignedShort();
+                if (nameLength > nameBytes.length) {
+                    nameBytes = new byte[nameLength];
+                }
+                in.readFully(nameBytes, 0, nameLength);
+                ZipCentralDirectoryReader.Entry entry = new ZipCentralDirectoryReader.Entry();
+                entry.name = new String(nameBytes, 0, nameLength, UTF_8);
+                entry.size = in.readLong();
+                entry.compressedSize = in.readLong();
+                entry.crc = in.readInt() & 0xFFFFFFFFL;
+                entry.method = in.readUnsignedShort();
+                entry.localHeaderOffset = in.readLong();
+                entries.add(entry);
+            }
+            return entries;
+        } catch (NoSuchFileException exc) {
+            return null;
+        } catch (EOFException exc) {
+            logger.warn("Truncated jar index ignored: " + indexFile);
+            return null;
+        } catch (IOException exc) {
+            logger.warn("Could not read jar index " + indexFile + " - reason: " + exc.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes an index to a temporary file in the cache directory, and then renames it to its final name.
+     */
+    private void store(Path indexFile, String jarPath, BasicFileAttributes attrs, List<ZipCentralDirectoryReader.Entry> entries) {
+        Path tmpFile = null;
+        try {
+            Files.createDirectories(cacheDirectory);
+            tmpFile = Files.createTempFile(cacheDirectory, indexFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(jarPath);
+                out.writeLong(attrs.size());
+                out.writeLong(attrs.lastModifiedTime().toMillis());
+                out.writeInt(entries.size());
+                for (ZipCentralDirectoryReader.Entry entry : entries) {
+                    byte[] nameBytes = entry.name.getBytes(UTF_8);
+                    out.writeShort(nameBytes.length);
+                    out.write(nameBytes);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.compressedSize);
+                    out.writeInt((int) entry.crc);
+                    out.writeShort(entry.method);
+                    out.writeLong(entry.localHeaderOffset);
+                }
+            }
+            try {
+                Files.move(tmpFile, indexFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exc) {
+                Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmpFile = null;
+        } catch (IOException exc) {
+            logger.warn("Could not write jar index " + indexFile + " - reason: " + exc.getMessage());
+        } finally {
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException exc) {
+                    logger.warn("Could not delete temporary jar index " + tmpFile);
+                }
+            }
+        }
+    }
+
+    private static String hash(String value) {
+        MessageDigest digest = newDigest();
+        return toHex(digest.digest(value.getBytes(UTF_8)));
+    }
+
+    private static String hashContent(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException("SHA-1 is not available.", exc);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
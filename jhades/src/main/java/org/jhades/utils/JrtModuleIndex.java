@@ -0,0 +1,313 @@
+package org.jhades.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Index of the classes and resources of the JDK module image, read through the jrt:/ file system of JDK 9 and later.
+ *
+ * Walking the module image takes seconds, so the index is built once per java.home and JDK version and stored in an
+ * index directory - the next JVMs memory-map the stored index instead. Within a JVM the index is only loaded once.
+ * The resource names stay in the mapped index and are only decoded when read, the heap holds one offset per resource.
+ *
+ * The index directory is set with the system property jhades.jrt.index.dir, by default it's the jhades folder of the
+ * temporary directory. The index files are written to a temporary file and then atomically renamed, as the jar indexes
+ * of JarIndexCache.
+ *
+ */
+public final class JrtModuleIndex {
+
+    /**
+     * System property with the directory of the stored indexes.
+     */
+    public static final String INDEX_DIR_PROPERTY = "jhades.jrt.index.dir";
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x4A484A52; // JHJR
+    private static final int FORMAT_VERSION = 1;
+    private static final Map<String, JrtModuleIndex> loadedIndexes = new HashMap<>();
+    private final List<Module> modules;
+
+    /**
+     * The resources of a module, such as java.base - the resource names start with a slash, as on the other classpath
+     * entries.
+     */
+    public static final class Module {
+
+        private final String name;
+        // the whole index, shared by the modules - only read with absolute gets or through duplicates
+        private final ByteBuffer data;
+        // the position of each resource in the index: its name length, its name and its size
+        private final int[] offsets;
+
+        Module(String name, ByteBuffer data, int[] offsets) {
+            this.name = name;
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getResourceCount() {
+            return offsets.length;
+        }
+
+        public String getResourceName(int resource) {
+            ByteBuffer entry = data.duplicate();
+            entry.position(offsets[resource]);
+            return readString(entry);
+        }
+
+        public long getSize(int resource) {
+            int offset = offsets[resource];
+            return data.getLong(offset + 2 + (data.getShort(offset) & 0xFFFF));
+        }
+    }
+
+    private JrtModuleIndex(List<Module> modules) {
+        this.modules = Collections.unmodifiableList(modules);
+    }
+
+    /**
+     * @return true if the running JDK has a module image, JDK 9 or later
+     */
+    public static boolean isAvailable() {
+        return Files.isRegularFile(getModulesFile());
+    }
+
+    /**
+     *
+     * @return the index of the running JDK, loaded from the index directory, or built and stored there if needed
+     * @throws IOException if the module image could not be read
+     */
+    public static JrtModuleIndex getDefault() throws IOException {
+        String indexDir = System.getProperty(INDEX_DIR_PROPERTY);
+        Path indexDirectory = indexDir != null && !indexDir.trim().isEmpty()
+                ? Paths.get(indexDir.trim()) : Paths.get(System.getProperty("java.io.tmpdir"), "jhades");
+        return getIndex(indexDirectory);
+    }
+
+    /**
+     *
+     * @param indexDirectory - the directory where the index is stored
+     * @return the index of the running JDK
+     * @throws IOException if the module image could not be read
+     */
+    public static synchronized JrtModuleIndex getIndex(Path indexDirectory) throws IOException {
+        String javaHome = System.getProperty("java.home");
+        String javaVersion = System.getProperty("java.runtime.version");
+        Path modulesFile = getModulesFile();
+        BasicFileAttributes attrs = Files.readAttributes(modulesFile, BasicFileAttributes.class);
+        Path indexFile = indexDirectory.resolve("jrt-" + Integer.toHexString((javaHome + javaVersion).hashCode()) + ".idx");
+        String key = indexFile.toAbsolutePath().toString();
+
+        JrtModuleIndex index = loadedIndexes.get(key);
+        if (index == null) {
+            String header = javaHome + "|" + javaVersion + "|" + attrs.size() + "|" + attrs.lastModifiedTime().toMillis();
+            index = load(indexFile, header);
+            if (index == null) {
+                long start = System.currentTimeMillis();
+                byte[] data = build(FileSystems.getFileSystem(URI.create("jrt:/")), header);
+                logger.debug("Indexed the JDK module image in " + (System.currentTimeMillis() - start) + " ms");
+                if (store(indexFile, data)) {
+                    index = load(indexFile, header);
+                }
+                if (index == null) {
+                    index = parse(ByteBuffer.wrap(data), header);
+                }
+            }
+            loadedIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     *
+     * @param moduleName - the module of the resource, such as java.base
+     * @param resourceName - the resource name, such as /java/lang/Object.class
+     * @return the path of the resource on the jrt:/ file system
+     */
+    public static Path getResourcePath(String moduleName, String resourceName) {
+        return FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules/" + moduleName + resourceName);
+    }
+
+    public List<Module> getModules() {
+        return modules;
+    }
+
+    /**
+     * @return the number of resources in all the modules
+     */
+    public int getResourceCount() {
+        int count = 0;
+        for (Module module : modules) {
+            count += module.getResourceCount();
+        }
+        return count;
+    }
+
+    private static Path getModulesFile() {
+        return Paths.get(System.getProperty("java.home"), "lib", "modules");
+    }
+
+    /**
+     * Walks the module image and returns the index in its stored format.
+     */
+    private static byte[] build(FileSystem jrt, String header) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            List<Path> moduleDirs = new ArrayList<>();
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(jrt.getPath("/modules"))) {
+                for (Path moduleDir : dirs) {
+                    moduleDirs.add(moduleDir);
+                }
+            }
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, header);
+            out.writeInt(moduleDirs.size());
+            for (Path moduleDir : moduleDirs) {
+                writeModule(out, moduleDir);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeModule(DataOutputStream out, final Path moduleDir) throws IOException {
+        final List<String> names = new ArrayList<>();
+        final List<Long> sizes = new ArrayList<>();
+        Files.walkFileTree(moduleDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                names.add("/" + moduleDir.relativize(file).toString());
+                sizes.add(attrs.size());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        String moduleName = moduleDir.getFileName().toString();
+        writeString(out, moduleName.endsWith("/") ? moduleName.substring(0, moduleName.length() - 1) : moduleName);
+        out.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            writeString(out, names.get(i));
+            out.writeLong(sizes.get(i));
+        }
+    }
+
+    /**
+     * Maps a stored index, returns null if it does not exist or was built for another JDK.
+     */
+    private static JrtModuleIndex load(Path indexFile, String header) {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), header);
+        } catch (NoSuchFileException exc) {
+            return null;
+        } catch (BufferUnderflowException exc) {
+            logger.warn("Truncated module image index ignored: " + indexFile);
+            return null;
+        } catch (IOException exc) {
+            logger.warn("Could not read module image index " + indexFile + " - reason: " + exc.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the module names and the resource offsets of an index, the resource names are left in the buffer.
+     */
+    private static JrtModuleIndex parse(ByteBuffer data, String header) {
+        ByteBuffer buffer = data.duplicate();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !header.equals(readString(buffer))) {
+            return null;
+        }
+        int moduleCount = buffer.getInt();
+        List<Module> modules = new ArrayList<>(moduleCount);
+        for (int m = 0; m < moduleCount; m++) {
+            String moduleName = readString(buffer);
+            int[] offsets = new int[buffer.getInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = buffer.position();
+                int length = buffer.getShort() & 0xFFFF;
+                if (buffer.remaining() < length + 8) {
+                    throw new BufferUnderflowException();
+                }
+                buffer.position(buffer.position() + length + 8);
+            }
+            modules.add(new Module(moduleName, data, offsets));
+        }
+        return new JrtModuleIndex(modules);
+    }
+
+    /**
+     * Writes an index to a temporary file in the index directory, and then renames it to its final name.
+     *
+     * @return true if the index was stored
+     */
+    private static boolean store(Path indexFile, byte[] data) {
+        Path tmpFile = null;
+        try {
+            Files.createDirectories(indexFile.getParent());
+            tmpFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+            Files.write(tmpFile, data);
+            try {
+                Files.move(tmpFile, indexFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exc) {
+                Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmpFile = null;
+            return true;
+        } catch (IOException exc) {
+            logger.warn("Could not write module image index " + indexFile + " - reason: " + exc.getMessage());
+            return false;
+        } finally {
+            if (tmpFile != null) {
+                try {
+                    Files.deleteIfExists(tmpFile);
+                } catch (IOException exc) {
+                    logger.warn("Could not delete temporary module image index " + tmpFile);
+                }
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Name too long for the module image index, " + bytes.length + " bytes: "
+                    + value.substring(0, 100) + "...");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,94 @@
+package org.jhades.utils;
+
+/**
+ *
+ * Counts the work done by the scan of one classpath entry on the current thread: the bytes read, the directories
+ * found, and whether the entry came from a cache. The readers report to the statistics of the current thread, without
+ * knowing which entry is being scanned.
+ *
+ * Reporting is a no-op when no statistics were started on the current thread.
+ *
+ */
+public final class ScanStatistics {
+
+    private static final ThreadLocal<ScanStatistics> CURRENT = new ThreadLocal<>();
+    private final ScanStatistics previous;
+    private long bytesRead;
+    private int directoryCount;
+    private boolean cacheHit;
+    private String failureReason;
+
+    private ScanStatistics(ScanStatistics previous) {
+        this.previous = previous;
+    }
+
+    /**
+     *
+     * Starts collecting statistics on the current thread, until stop() is called.
+     *
+     * @return the started statistics
+     */
+    public static ScanStatistics start() {
+        ScanStatistics statistics = new ScanStatistics(CURRENT.get());
+        CURRENT.set(statistics);
+        return statistics;
+    }
+
+    /**
+     * Stops collecting statistics on the current thread, the statistics started before these ones are restored.
+     */
+    public void stop() {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static void addBytesRead(long bytes) {
+        ScanStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.bytesRead += bytes;
+        }
+    }
+
+    public static void addDirectory() {
+        ScanStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.directoryCount++;
+        }
+    }
+
+    public static void setCacheHit() {
+        ScanStatistics statistics = CURRENT.get();
+        if (statistics != null) {
+            statistics.cacheHit = true;
+        }
+    }
+
+    /**
+     * @param reason - why the entry could not be scanned - the first failure is kept
+     */
+    public static void setFailure(String reason) {
+        ScanStatistics statistics = CURRENT.get();
+        if (statistics != null && statistics.failureReason == null) {
+            statistics.failureReason = reason;
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public int getDirectoryCount() {
+        return directoryCount;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+}
@@ -20,6 +20,10 @@ public class StdOutLogger {
         }
     }
 
+    public boolean isDebugEnabled() {
+        return debug;
+    }
+
     public void warn(String msg) {
         if (debug) {
             System.out.println("WARN - " + msg);
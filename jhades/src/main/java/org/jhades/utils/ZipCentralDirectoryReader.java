@@ -0,0 +1,500 @@
+package org.jhades.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ *
+ * Reads the entries of a zip file (jar, war, etc.) directly from its central directory.
+ *
+ * Only the end of central directory record and the central directory itself are read, using positional reads on a
+ * file channel (the central directory is memory-mapped if it's big), so no zip file system or directory tree is built -
+ * this is much faster than walking a zip file system when only the names, sizes and CRCs of the entries are needed. A
+ * reader reads the central directory only once, however many times its entries are visited.
+ *
+ * Zip64 archives and archives with data prepended to them (such as self-executing jars) are supported.
+ *
+ * Zip files stored inside another zip file, such as the jars of a WAR, can be read in place without extracting them:
+ * see openNested(Entry).
+ *
+ */
+public final class ZipCentralDirectoryReader {
+
+    /**
+     * Visits the entries of a zip file in central directory order.
+     */
+    public interface EntryVisitor {
+
+        /**
+         *
+         * Called once per zip entry, directories included. The entry object is reused between calls, it should not be
+         * kept after the call returns.
+         *
+         */
+        void visitEntry(Entry entry) throws IOException;
+    }
+
+    /**
+     * A zip entry as described by the central directory.
+     */
+    public static final class Entry {
+
+        String name;
+        long size;
+        long compressedSize;
+        long crc;
+        int method;
+        long localHeaderOffset;
+
+        Entry() {
+        }
+
+        /**
+         * @return a copy of this entry, that can be kept after the visitor call returns
+         */
+        public Entry copy() {
+            Entry copy = new Entry();
+            copy.name = name;
+            copy.size = size;
+            copy.compressedSize = compressedSize;
+            copy.crc = crc;
+            copy.method = method;
+            copy.localHeaderOffset = localHeaderOffset;
+            return copy;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * @return the uncompressed size of the entry
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        /**
+         * @return the CRC-32 of the uncompressed entry data
+         */
+        public long getCrc() {
+            return crc;
+        }
+
+        /**
+         * @return the compression method, as in ZipEntry.STORED or ZipEntry.DEFLATED
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        /**
+         * @return the offset of the entry local header, relative to the beginning of the zip file
+         */
+        public long getLocalHeaderOffset() {
+            return localHeaderOffset;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{name=" + name + ", size=" + size + ", crc=" + crc + "}";
+        }
+    }
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_END_SIZE = 56;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAP_THRESHOLD = 256 * 1024;
+    private static final int INFLATE_CHUNK_SIZE = 64 * 1024;
+    // the zip file is either a region of a file channel, or an in-memory buffer
+    private final FileChannel channel;
+    private final ByteBuffer data;
+    private final long start;
+    private final long length;
+    // the central directory once read, guarded by this
+    private ByteBuffer centralDirectory;
+    private long prependedBytes;
+
+    /**
+     *
+     * Creates a reader for a zip file stored in a region of a file channel - the region can be a whole file or a zip
+     * file stored uncompressed inside another zip file.
+     *
+     * @param channel - the channel to read from, it's not closed by the reader
+     * @param start - the position of the zip file in the channel
+     * @param length - the length of the zip file
+     */
+    public ZipCentralDirectoryReader(FileChannel channel, long start, long length) {
+        this.channel = channel;
+        this.data = null;
+        this.start = start;
+        this.length = length;
+    }
+
+    /**
+     *
+     * Creates a reader for a zip file held in memory, such as a zip file that was stored compressed inside another zip
+     * file.
+     *
+     * @param data - the zip file, from its position to its limit
+     */
+    public ZipCentralDirectoryReader(ByteBuffer data) {
+        this.channel = null;
+        this.data = data.slice();
+        this.start = 0;
+        this.length = this.data.remaining();
+    }
+
+    /**
+     *
+     * Reads all the entries of a zip file.
+     *
+     * @param zipFile - the zip file to read
+     * @param visitor - the visitor called for each entry
+     * @return the number of entries read
+     * @throws IOException if the file could not be read or is not a valid zip file
+     */
+    public static int read(Path zipFile, EntryVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipFile, StandardOpenOption.READ)) {
+            return new ZipCentralDirectoryReader(channel, 0, channel.size()).read(visitor);
+        }
+    }
+
+    /**
+     *
+     * Reads all the entries of the zip file.
+     *
+     * @param visitor - the visitor called for each entry
+     * @return the number of entries read
+     * @throws IOException if the zip file could not be read or is not a valid zip file
+     */
+    public int read(EntryVisitor visitor) throws IOException {
+        ByteBuffer directory = readCentralDirectory();
+        return readEntries(directory, prependedBytes, visitor);
+    }
+
+    /**
+     *
+     * Computes the SHA-256 digest of the central directory, which identifies everything read(EntryVisitor) reports:
+     * zip files with the same digest have the same entries, with the same sizes and CRCs.
+     *
+     * @return the SHA-256 digest of the central directory
+     * @throws IOException if the zip file could not be read or is not a valid zip file
+     */
+    public byte[] digestCentralDirectory() throws IOException {
+        ByteBuffer directory = readCentralDirectory();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(directory);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException("SHA-256 is not available.", exc);
+        }
+    }
+
+    /**
+     * The central directory is read the first time it's needed, the following reads and digests reuse it.
+     */
+    private synchronized ByteBuffer readCentralDirectory() throws IOException {
+        if (centralDirectory == null) {
+            locateCentralDirectory();
+        }
+        ByteBuffer directory = centralDirectory.duplicate();
+        directory.order(ByteOrder.LITTLE_ENDIAN);
+        return directory;
+    }
+
+    private void locateCentralDirectory() throws IOException {
+        // locate the end of central directory record, that can be followed by a comment
+        int tailSize = (int) Math.min(length, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = readAt(length - tailSize, tailSize);
+        int endPosition = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE && i + END_SIZE + (tail.getShort(i + 20) & 0xFFFF) <= tailSize) {
+                endPosition = i;
+                break;
+            }
+        }
+        if (endPosition < 0) {
+            throw new ZipException("End of central directory not found - not a zip file.");
+        }
+
+        long totalEntries = tail.getShort(endPosition + 10) & 0xFFFF;
+        long directorySize = tail.getInt(endPosition + 12) & ZIP64_MAGIC;
+        long directoryOffset = tail.getInt(endPosition + 16) & ZIP64_MAGIC;
+        long directoryEnd = length - tailSize + endPosition;
+
+        if (totalEntries == 0xFFFF || directorySize == ZIP64_MAGIC || directoryOffset == ZIP64_MAGIC) {
+            long locatorPosition = directoryEnd - ZIP64_LOCATOR_SIZE;
+            if (locatorPosition >= 0) {
+                ByteBuffer locator = readAt(locatorPosition, ZIP64_LOCATOR_SIZE);
+                if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                    long zip64EndOffset = locator.getLong(8);
+                    // the zip64 end record is right before its locator, the recorded offset may be off if data was prepended
+                    long zip64EndPosition = locatorPosition - ZIP64_END_SIZE;
+                    ByteBuffer zip64End = readAt(zip64EndPosition, ZIP64_END_SIZE);
+                    if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                        zip64EndPosition = zip64EndOffset;
+                        zip64End = readAt(zip64EndPosition, ZIP64_END_SIZE);
+                        if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                            throw new ZipException("Invalid zip64 end of central directory record.");
+                        }
+                    }
+                    directorySize = zip64End.getLong(40);
+                    directoryOffset = zip64End.getLong(48);
+                    directoryEnd = zip64EndPosition;
+                }
+            }
+        }
+
+        if (directorySize > directoryEnd || directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid central directory size: " + directorySize);
+        }
+
+        // the central directory ends where the end record starts - the difference to the recorded offset is the size
+        // of any data prepended to the zip file, which also shifts the local header offsets
+        long directoryPosition = directoryEnd - directorySize;
+        prependedBytes = directoryPosition - directoryOffset;
+        centralDirectory = readAt(directoryPosition, (int) directorySize);
+    }
+
+    /**
+     *
+     * @param name - the name of the entry, such as BOOT-INF/lib/commons-lang.jar
+     * @return a copy of the entry with that name, or null if not found
+     * @throws IOException if the zip file could not be read or is not a valid zip file
+     */
+    public Entry findEntry(final String name) throws IOException {
+        final Entry[] found = new Entry[1];
+        read(new EntryVisitor() {
+            @Override
+            public void visitEntry(Entry entry) {
+                if (found[0] == null && entry.name.equals(name)) {
+                    found[0] = entry.copy();
+                }
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     *
+     * Opens a zip file stored as an entry of this zip file, such as a jar inside a WAR, without writing it to disk.
+     *
+     * A stored (uncompressed) entry is read in place, as a region of this zip file. A compressed entry is inflated into
+     * memory, as its central directory can only be found at the end of the inflated data.
+     *
+     * @param entry - an entry of this zip file, as visited by read(EntryVisitor)
+     * @return a reader for the nested zip file
+     * @throws IOException if the entry could not be read or uses an unsupported compression method
+     */
+    public ZipCentralDirectoryReader openNested(Entry entry) throws IOException {
+        if (entry.method == ZipEntry.STORED && data == null) {
+            long dataPosition = findDataPosition(entry);
+            if (dataPosition + entry.size > length) {
+                throw new ZipException("Invalid zip file region: " + dataPosition + " - " + entry.size);
+            }
+            return new ZipCentralDirectoryReader(channel, start + dataPosition, entry.size);
+        }
+        return new ZipCentralDirectoryReader(readContent(entry));
+    }
+
+    /**
+     *
+     * Reads the content of a single entry, such as META-INF/MANIFEST.MF, without reading the rest of the zip file.
+     *
+     * @param entry - an entry of this zip file, as visited by read(EntryVisitor)
+     * @return the uncompressed content of the entry
+     * @throws IOException if the entry could not be read or uses an unsupported compression method
+     */
+    public ByteBuffer readContent(Entry entry) throws IOException {
+        long dataPosition = findDataPosition(entry);
+        if (entry.method == ZipEntry.STORED) {
+            return readAt(dataPosition, checkedSize(entry.size));
+        } else if (entry.method == ZipEntry.DEFLATED) {
+            return inflate(readAt(dataPosition, checkedSize(entry.compressedSize)), checkedSize(entry.size));
+        }
+        throw new ZipException("Unsupported compression method " + entry.method + " for entry " + entry.name);
+    }
+
+    /**
+     * The entry data starts after its local header, whose name and extra field can differ from the central directory.
+     */
+    private long findDataPosition(Entry entry) throws IOException {
+        ByteBuffer localHeader = readAt(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for entry " + entry.name);
+        }
+        int nameLength = localHeader.getShort(26) & 0xFFFF;
+        int extraLength = localHeader.getShort(28) & 0xFFFF;
+        return entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    private static ByteBuffer inflate(ByteBuffer compressed, int size) throws IOException {
+        byte[] inflated = new byte[size];
+        byte[] chunk = new byte[INFLATE_CHUNK_SIZE];
+        Inflater inflater = new Inflater(true);
+        try {
+            int total = 0;
+            while (total < size) {
+                if (inflater.needsInput()) {
+                    if (!compressed.hasRemaining()) {
+                        throw new ZipException("Unexpected end of compressed entry.");
+                    }
+                    int chunkSize = Math.min(chunk.length, compressed.remaining());
+                    compressed.get(chunk, 0, chunkSize);
+                    inflater.setInput(chunk, 0, chunkSize);
+                }
+                int read = inflater.inflate(inflated, total, size - total);
+                if (read == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    throw new ZipException("Compressed entry is shorter than its size.");
+                }
+                total += read;
+            }
+        } catch (DataFormatException exc) {
+            throw new ZipException("Invalid compressed entry: " + exc.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(inflated);
+    }
+
+    private static int checkedSize(long size) throws ZipException {
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new ZipException("Zip entry too big to be read in memory: " + size);
+        }
+        return (int) size;
+    }
+
+    private int readEntries(ByteBuffer directory, long prependedBytes, EntryVisitor visitor) throws IOException {
+        Entry entry = new Entry();
+        byte[] nameBytes = new byte[256];
+        int position = 0;
+        int limit = directory.limit();
+        int count = 0;
+
+        // the entry count of the end record is not used, it overflows on some archives with more than 65535 entries
+        while (position + CENTRAL_HEADER_SIZE <= limit) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header at position " + position);
+            }
+            int method = directory.getShort(position + 10) & 0xFFFF;
+            long crc = directory.getInt(position + 16) & ZIP64_MAGIC;
+            long compressedSize = directory.getInt(position + 20) & ZIP64_MAGIC;
+            long size = directory.getInt(position + 24) & ZIP64_MAGIC;
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = directory.getInt(position + 42) & ZIP64_MAGIC;
+
+            int namePosition = position + CENTRAL_HEADER_SIZE;
+            int extraPosition = namePosition + nameLength;
+            int nextPosition = extraPosition + extraLength + commentLength;
+            if (nextPosition > limit) {
+                throw new ZipException("Truncated central directory header at position " + position);
+            }
+
+            if (size == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+                // the real values are stored in the zip64 extra field, only for the fields that overflowed
+                int extraEnd = extraPosition + extraLength;
+                while (extraPosition + 4 <= extraEnd) {
+                    int id = directory.getShort(extraPosition) & 0xFFFF;
+                    int dataSize = directory.getShort(extraPosition + 2) & 0xFFFF;
+                    if (id == ZIP64_EXTRA_ID) {
+                        int field = extraPosition + 4;
+                        if (size == ZIP64_MAGIC && field + 8 <= extraEnd) {
+                            size = directory.getLong(field);
+                            field += 8;
+                        }
+                        if (compressedSize == ZIP64_MAGIC && field + 8 <= extraEnd) {
+                            compressedSize = directory.getLong(field);
+                            field += 8;
+                        }
+                        if (localHeaderOffset == ZIP64_MAGIC && field + 8 <= extraEnd) {
+                            localHeaderOffset = directory.getLong(field);
+                        }
+                        break;
+                    }
+                    extraPosition += 4 + dataSize;
+                }
+            }
+
+            if (directory.hasArray()) {
+                entry.name = new String(directory.array(), directory.arrayOffset() + namePosition, nameLength, UTF_8);
+            } else {
+                if (nameLength > nameBytes.length) {
+                    nameBytes = new byte[Math.max(nameLength, nameBytes.length * 2)];
+                }
+                directory.position(namePosition);
+                directory.get(nameBytes, 0, nameLength);
+                entry.name = new String(nameBytes, 0, nameLength, UTF_8);
+            }
+            entry.size = size;
+            entry.compressedSize = compressedSize;
+            entry.crc = crc;
+            entry.method = method;
+            entry.localHeaderOffset = localHeaderOffset + prependedBytes;
+            visitor.visitEntry(entry);
+
+            count++;
+            position = nextPosition;
+        }
+        return count;
+    }
+
+    private ByteBuffer readAt(long position, int size) throws IOException {
+        if (position < 0 || position + size > length) {
+            throw new ZipException("Invalid zip file region: " + position + " - " + size);
+        }
+        ByteBuffer buffer;
+        if (data != null) {
+            buffer = data.duplicate();
+            buffer.position((int) position);
+            buffer.limit((int) position + size);
+            buffer = buffer.slice();
+        } else if (size >= MAP_THRESHOLD) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start + position, size);
+            ScanStatistics.addBytesRead(size);
+        } else {
+            buffer = ByteBuffer.allocate(size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + position + buffer.position()) < 0) {
+                    throw new ZipException("Unexpected end of zip file.");
+                }
+            }
+            buffer.flip();
+            ScanStatistics.addBytesRead(size);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -28,6 +28,20 @@ public final class ZipUtils {
         void onBeginFileExtract(String fileName);
     }
 
+    /**
+     * Selects the files to extract, and is notified as soon as each file is fully extracted.
+     */
+    public interface SelectiveUnzipListener extends UnzipProgressListener {
+
+        /**
+         * @param fileName - the absolute name of the file inside the zip, such as /WEB-INF/lib/commons-lang.jar
+         * @return true if the file should be extracted
+         */
+        boolean shouldExtract(String fileName);
+
+        void onEndFileExtract(String fileName, Path extractedFile);
+    }
+
     private ZipUtils() {
         throw new UnsupportedOperationException("Utility classes cannot be instantiated.");
     }
@@ -41,7 +55,7 @@ public final class ZipUtils {
      * @throws IOException
      */
     public static void unzip(String zipFilename, String destDirname) throws IOException {
-        unzip(zipFilename, destDirname);
+        unzip(zipFilename, destDirname, null);
     }
 
     public static void unzip(String zipFilename, String destDirname, final UnzipProgressListener progressListener)
@@ -69,7 +83,8 @@ public final class ZipUtils {
                     final Path destFile = Paths.get(destDir.toString(),
                             file.toString());
                     logger.debug("Extracting file " + file + " to " + destFile + "\n");
-                    Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING);
+                    // keep the zip entry timestamps, so that the extracted jars can be found on the jar index cache
+                    Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
                     return FileVisitResult.CONTINUE;
                 }
 
@@ -88,6 +103,45 @@ public final class ZipUtils {
         }
     }
 
+    /**
+     *
+     * Unzips only the files selected by the listener, notifying the listener once each file is extracted so that it
+     * can be processed while the following files are still being extracted. Only the directories containing extracted
+     * files are created.
+     *
+     * @param zipFilename - the zip file to unzip
+     * @param destDirname - the destination directory
+     * @param listener - selects the files to extract and is notified of each extracted file
+     * @throws IOException
+     */
+    public static void unzipSelected(String zipFilename, String destDirname, final SelectiveUnzipListener listener)
+            throws IOException {
+
+        final Path destDir = Paths.get(destDirname);
+
+        try (FileSystem zipFileSystem = createZipFileSystem(zipFilename, false)) {
+            final Path root = zipFileSystem.getPath("/");
+
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file,
+                        BasicFileAttributes attrs) throws IOException {
+                    String fileName = file.toString();
+                    if (!listener.shouldExtract(fileName)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    listener.onBeginFileExtract(fileName);
+                    final Path destFile = Paths.get(destDir.toString(), fileName);
+                    Files.createDirectories(destFile.getParent());
+                    logger.debug("Extracting file " + file + " to " + destFile + "\n");
+                    Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                    listener.onEndFileExtract(fileName, destFile);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
     /**
      * Returns a zip file system
      *
@@ -0,0 +1,258 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.model.ArchiveEntries;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.model.EarModule;
+import org.jhades.model.JarContentCache;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.StdOutLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ArchiveEntriesTest {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private Path tmpDir;
+    private Path war;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-archive-test");
+        war = tmpDir.resolve("app.war");
+        byte[] storedJar = createJar("a/A.class", "A", "a/B.class", "B");
+        byte[] deflatedJar = createJar("a/B.class", "other B", "b/C.class", "C");
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(war))) {
+            zip.putNextEntry(new ZipEntry("index.html"));
+            zip.write("<html/>".getBytes("UTF-8"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("WEB-INF/classes/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("WEB-INF/classes/a/A.class"));
+            zip.write("A".getBytes("UTF-8"));
+            zip.closeEntry();
+            zip.putNextEntry(storedEntry("WEB-INF/lib/stored.jar", storedJar));
+            zip.write(storedJar);
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("WEB-INF/lib/deflated.jar"));
+            zip.write(deflatedJar);
+            zip.closeEntry();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testFindWarClasspathEntries() throws IOException {
+        List<ClasspathEntry> entries = ArchiveEntries.findWarClasspathEntries(war);
+
+        String warUrl = "jar:" + war.toUri();
+        assertEquals(3, entries.size());
+        assertEquals(warUrl + "!/WEB-INF/classes/", entries.get(0).getUrl());
+        assertTrue(entries.get(0).isClassFolder());
+        assertEquals(warUrl + "!/WEB-INF/lib/stored.jar", entries.get(1).getUrl());
+        assertEquals(warUrl + "!/WEB-INF/lib/deflated.jar", entries.get(2).getUrl());
+        assertTrue(entries.get(2).isJar());
+    }
+
+    @Test
+    public void testScanWarInPlace() throws Exception {
+        List<ClasspathEntry> entries = ArchiveEntries.findWarClasspathEntries(war);
+
+        List<String> names = new ArrayList<>();
+        for (ClasspathEntry entry : entries) {
+            for (ClasspathResourceVersion version : entry.getResourceVersions()) {
+                names.add(version.getResourceName());
+            }
+        }
+        assertEquals(Arrays.asList("/a/A.class", "/a/A.class", "/a/B.class", "/a/B.class", "/b/C.class"), names);
+
+        List<ClasspathResource> resources = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null);
+        List<ClasspathResource> duplicates = ClasspathEntries.findResourcesWithDuplicatesInEntries(entries, logger, null);
+        assertEquals(3, resources.size());
+        assertEquals(2, duplicates.size());
+        // the CRCs come from the central directories, the class folder of the WAR included
+        List<ClasspathResource> differentContent = new ArrayList<>();
+        for (ClasspathResource duplicate : duplicates) {
+            if (duplicate.hasDuplicates(DuplicatesMode.DIFFERENT_CONTENT)) {
+                differentContent.add(duplicate);
+            }
+        }
+        assertEquals(1, differentContent.size());
+        assertEquals("/a/B.class", differentContent.get(0).getName());
+    }
+
+    @Test
+    public void testIdenticalJarsAreIndexedOnce() throws Exception {
+        Path copy = Files.copy(war, tmpDir.resolve("copy.war"));
+        JarContentCache contentCache = new JarContentCache();
+
+        List<ClasspathEntry> entries = new ArrayList<>(ArchiveEntries.findArtifactClasspathEntries(war, contentCache));
+        entries.addAll(ArchiveEntries.findArtifactClasspathEntries(copy, contentCache));
+        List<ClasspathResource> resources = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null, 1);
+
+        assertEquals(2, contentCache.size());
+        assertEquals(2, contentCache.getHits());
+        assertEquals(3, resources.size());
+        // the shared index still gives each entry its own versions
+        for (ClasspathEntry entry : entries) {
+            for (ClasspathResourceVersion version : entry.getResourceVersions()) {
+                assertSame(entry, version.getClasspathEntry());
+            }
+        }
+    }
+
+    @Test
+    public void testJarsWithDifferentContentAreNotShared() throws Exception {
+        // same names and sizes, but a different content
+        Path jar1 = Files.write(tmpDir.resolve("lib1.jar"), createJar("a/A.class", "A1"));
+        Path jar2 = Files.write(tmpDir.resolve("lib2.jar"), createJar("a/A.class", "A2"));
+        Path copy = Files.copy(jar1, tmpDir.resolve("copy.jar"));
+        JarContentCache contentCache = new JarContentCache();
+
+        List<ClasspathEntry> entries = new ArrayList<>();
+        for (Path jar : Arrays.asList(jar1, jar2, copy)) {
+            entries.addAll(ArchiveEntries.findArtifactClasspathEntries(jar, contentCache));
+        }
+        List<ClasspathResource> resources = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null, 1);
+
+        assertEquals(2, contentCache.size());
+        assertEquals(1, contentCache.getHits());
+        assertEquals(1, resources.size());
+        assertTrue(resources.get(0).hasDuplicates(DuplicatesMode.DIFFERENT_CONTENT));
+    }
+
+    @Test
+    public void testScanFatJarInPlace() throws Exception {
+        Path fatJar = tmpDir.resolve("app.jar");
+        byte[] storedJar = createJar("a/A.class", "A", "a/B.class", "B");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(fatJar))) {
+            zip.putNextEntry(new ZipEntry("org/springframework/boot/loader/JarLauncher.class"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("BOOT-INF/classes/a/A.class"));
+            zip.write("A".getBytes("UTF-8"));
+            zip.closeEntry();
+            zip.putNextEntry(storedEntry("BOOT-INF/lib/stored.jar", storedJar));
+            zip.write(storedJar);
+            zip.closeEntry();
+        }
+
+        List<ClasspathEntry> entries = ArchiveEntries.findArtifactClasspathEntries(fatJar, null);
+        assertEquals(2, entries.size());
+        assertEquals(1, ClasspathEntries.findResourcesWithDuplicatesInEntries(entries, logger, null).size());
+
+        // the URLs of a fat jar class loader are scanned in place too
+        String fatJarUrl = "jar:" + fatJar.toUri();
+        ClasspathEntry nestedJar = new ClasspathEntry(null, fatJarUrl + "!/BOOT-INF/lib/stored.jar!/");
+        ClasspathEntry nestedClasses = new ClasspathEntry(null, fatJarUrl + "!/BOOT-INF/classes!/");
+        assertTrue(nestedJar.isJar());
+        assertTrue(nestedClasses.isClassFolder());
+        assertEquals(entries.get(1).getResourceVersions().size(), nestedJar.getResourceVersions().size());
+        assertEquals("/a/A.class", nestedClasses.getResourceVersions().get(0).getResourceName());
+        assertEquals(1, nestedClasses.getResourceVersions().size());
+    }
+
+    @Test
+    public void testNestedJarsOfRewrittenFatJar() throws Exception {
+        Path fatJar = tmpDir.resolve("app.jar");
+        writeFatJar(fatJar, createJar("a/A.class", "A"), createJar("b/B.class", "B"));
+        String fatJarUrl = "jar:" + fatJar.toUri();
+
+        assertEquals("/a/A.class", new ClasspathEntry(null, fatJarUrl + "!/BOOT-INF/lib/lib1.jar!/").getResourceVersions().get(0).getResourceName());
+        assertEquals("/b/B.class", new ClasspathEntry(null, fatJarUrl + "!/BOOT-INF/lib/lib2.jar!/").getResourceVersions().get(0).getResourceName());
+        assertTrue(new ClasspathEntry(null, fatJarUrl + "!/BOOT-INF/lib/unknown.jar!/").getResourceVersions().isEmpty());
+
+        // the nested jars moved when the fat jar was written again, they're looked up on its new central directory
+        writeFatJar(fatJar, createJar("c/LongerName.class", "C"), createJar("a/A.class", "A"));
+        assertEquals("/c/LongerName.class", new ClasspathEntry(null, fatJarUrl + "!/BOOT-INF/lib/lib1.jar!/").getResourceVersions().get(0).getResourceName());
+        assertEquals("/a/A.class", new ClasspathEntry(null, fatJarUrl + "!/BOOT-INF/lib/lib2.jar!/").getResourceVersions().get(0).getResourceName());
+    }
+
+    @Test
+    public void testScanEarModules() throws Exception {
+        Path ear = tmpDir.resolve("app.ear");
+        byte[] sharedJar = createJar("a/B.class", "shared B");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(ear))) {
+            zip.putNextEntry(new ZipEntry("META-INF/application.xml"));
+            zip.write("<application/>".getBytes("UTF-8"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("lib/shared.jar"));
+            zip.write(sharedJar);
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("ejb.jar"));
+            zip.write(createJar("e/E.class", "E"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("web.war"));
+            zip.write(Files.readAllBytes(war));
+            zip.closeEntry();
+        }
+        JarContentCache contentCache = new JarContentCache();
+
+        List<EarModule> modules = ArchiveEntries.findEarModules(ear, contentCache, 2);
+
+        assertEquals(2, modules.size());
+        EarModule ejbModule = modules.get(0);
+        EarModule webModule = modules.get(1);
+        assertEquals("ejb.jar", ejbModule.getName());
+        assertEquals("web.war", webModule.getName());
+        assertEquals(2, ejbModule.getClasspathEntries().size());
+        assertEquals(4, webModule.getClasspathEntries().size());
+        String webUrl = "jar:" + ear.toUri() + "!/web.war";
+        assertEquals(webUrl + "!/WEB-INF/classes/", webModule.getClasspathEntries().get(0).getUrl());
+        assertEquals(webUrl + "!/WEB-INF/lib/deflated.jar", webModule.getClasspathEntries().get(2).getUrl());
+        // the shared jar is on both module classpaths, but it's indexed once
+        assertSame(ejbModule.getSharedEntries().get(0), webModule.getSharedEntries().get(0));
+        assertEquals(4, contentCache.getMisses());
+        assertEquals(0, contentCache.getHits());
+
+        List<ClasspathResource> webDuplicates = ClasspathEntries.findResourcesWithDuplicatesInEntries(webModule.getClasspathEntries(), logger, null);
+        assertEquals(2, webDuplicates.size());
+        for (ClasspathResource duplicate : webDuplicates) {
+            if (duplicate.getName().equals("/a/B.class")) {
+                assertEquals(3, duplicate.getResourceFileVersions().size());
+            }
+        }
+        assertTrue(ClasspathEntries.findResourcesWithDuplicatesInEntries(ejbModule.getClasspathEntries(), logger, null).isEmpty());
+        assertEquals(5, ArchiveEntries.findEarClasspathEntries(ear, null).size());
+    }
+
+    private static void writeFatJar(Path fatJar, byte[]... jars) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(fatJar))) {
+            for (int i = 0; i < jars.length; i++) {
+                zip.putNextEntry(storedEntry("BOOT-INF/lib/lib" + (i + 1) + ".jar", jars[i]));
+                zip.write(jars[i]);
+                zip.closeEntry();
+            }
+        }
+    }
+
+    private static ZipEntry storedEntry(String name, byte[] content) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+}
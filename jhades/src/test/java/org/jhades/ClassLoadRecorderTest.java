@@ -0,0 +1,76 @@
+package org.jhades;
+
+import java.net.URL;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.List;
+import org.jhades.agent.ClassLoadRecorder;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClassLoadRecorderTest {
+
+    private ClassLoadRecorder recorder;
+
+    @Before
+    public void setUp() {
+        recorder = new ClassLoadRecorder(4);
+    }
+
+    @After
+    public void tearDown() {
+        recorder.stop();
+    }
+
+    @Test
+    public void testFindLoadedVersions() throws Exception {
+        ClasspathEntry first = new ClasspathEntry(null, "file:/app/lib/first.jar");
+        ClasspathEntry second = new ClasspathEntry(null, "jar:file:/app.jar!/BOOT-INF/lib/second.jar!/");
+        ClasspathResource resource = new ClasspathResource("/a/B.class", new ClasspathResourceVersion(first, "/a/B.class", 10));
+        resource.getResourceFileVersions().add(new ClasspathResourceVersion(second, "/a/B.class", 10));
+
+        assertNull(recorder.transform(null, "a/B", null, domain("file:/app.jar!/BOOT-INF/lib/second.jar"), new byte[0]));
+        recorder.transform(null, "a/C", null, null, new byte[0]);
+
+        List<ClasspathResourceVersion> loaded = recorder.findLoadedVersions(resource);
+        assertEquals(1, loaded.size());
+        assertSame(second, loaded.get(0).getClasspathEntry());
+        assertEquals(2, recorder.getRecordedCount());
+        assertTrue(recorder.findLoadedLocations("/a/C.class").isEmpty());
+    }
+
+    @Test
+    public void testBackgroundAggregation() throws Exception {
+        recorder.start(null);
+        for (int i = 0; i < 1000; i++) {
+            recorder.transform(null, "a/C" + i, null, domain("file:/app/lib/first.jar"), new byte[0]);
+            Thread.yield();
+        }
+        recorder.stop();
+
+        // the buffer is tiny, so some records may be dropped, but none is lost
+        assertEquals(1000, recorder.getRecordedCount() + recorder.getDroppedCount());
+        assertEquals(recorder.getRecordedCount(), recorder.getLoadedClasses().size());
+    }
+
+    @Test
+    public void testAlreadyLoadedClasses() {
+        recorder.addLoadedClasses(new Class<?>[]{ClassLoadRecorderTest.class, int[].class, int.class});
+
+        List<String> locations = recorder.findLoadedLocations("/org/jhades/ClassLoadRecorderTest.class");
+        assertEquals(1, locations.size());
+        assertEquals(1, recorder.getRecordedCount());
+        assertEquals(Arrays.asList(ClassLoadRecorderTest.class.getProtectionDomain().getCodeSource().getLocation().toString()), locations);
+    }
+
+    private static ProtectionDomain domain(String location) throws Exception {
+        return new ProtectionDomain(new CodeSource(new URL(location), (Certificate[]) null), null);
+    }
+}
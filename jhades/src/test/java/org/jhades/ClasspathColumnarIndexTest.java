@@ -0,0 +1,108 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.jhades.model.ClasspathColumnarIndex;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResources;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.model.JarPairs;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.StdOutLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ClasspathColumnarIndexTest {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private Path tmpDir;
+    private List<ClasspathEntry> entries;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-columnar-test");
+        Path jar1 = createJar(tmpDir.resolve("lib1.jar"), "a/A.class", "A", "a/B.class", "B", "log4j.xml", "<xml/>");
+        Path jar2 = createJar(tmpDir.resolve("lib2.jar"), "a/B.class", "X", "b/C.class", "C", "log4j.xml", "<xml/>");
+        Path classes = Files.createDirectories(tmpDir.resolve("classes/a"));
+        Files.write(classes.resolve("A.class"), "A".getBytes("UTF-8"));
+        entries = Arrays.asList(new ClasspathEntry(null, jar1.toUri().toString()),
+                new ClasspathEntry(null, jar2.toUri().toString()),
+                new ClasspathEntry(null, tmpDir.resolve("classes").toUri().toString()));
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testResourcesMatchResourceList() {
+        List<ClasspathResource> expected = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null, 1);
+
+        ClasspathColumnarIndex index = ClasspathColumnarIndex.build(entries, logger, null);
+
+        assertEquals(new HashSet<>(expected), new HashSet<>(index.getResources()));
+        assertEquals(4, index.getResourceCount());
+        assertEquals(7, index.getVersionCount());
+        int resource = index.findResource("/a/A.class");
+        assertEquals("/a/A.class", index.getResourceName(resource));
+        assertEquals(2, index.getNumberOfVersions(resource));
+        assertEquals(-1, index.findResource("/a/Unknown.class"));
+        assertSame(index.getResource(resource), index.getResource(resource));
+        assertSame(index.getResource(resource), index.getResources().get(resource));
+        // a name known to the name table but not found on these entries
+        new ClasspathResource("/a/Other.class", null);
+        assertEquals(-1, index.findResource("/a/Other.class"));
+    }
+
+    @Test
+    public void testFindResourcesByRegex() {
+        ClasspathColumnarIndex index = ClasspathColumnarIndex.build(entries, logger, null);
+
+        List<ClasspathResource> found = index.getResources(index.findResourcesByRegex(Pattern.compile("^/a/.*\\.class$")));
+
+        assertEquals(2, found.size());
+        assertEquals("/a/A.class", found.get(0).getName());
+        assertEquals("/a/B.class", found.get(1).getName());
+        assertEquals(0, index.findResourcesByRegex(Pattern.compile("Unknown")).length);
+    }
+
+    @Test
+    public void testDuplicatesMatchResourceList() {
+        List<ClasspathResource> resources = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null, 1);
+        ClasspathColumnarIndex index = ClasspathColumnarIndex.build(entries, logger, null);
+
+        for (DuplicatesMode mode : DuplicatesMode.values()) {
+            List<ClasspathResource> expected = ClasspathResources.findResourcesWithDuplicates(resources, mode);
+            List<ClasspathResource> found = index.getResources(index.findResourcesWithDuplicates(mode, false));
+            assertEquals(mode.toString(), new HashSet<>(expected), new HashSet<>(found));
+        }
+        // the same class on a jar and a class folder, and the same log4j.xml on both jars
+        List<ClasspathResource> differentContent = index.getResources(index.findResourcesWithDuplicates(DuplicatesMode.DIFFERENT_CONTENT, false));
+        assertEquals(1, differentContent.size());
+        assertEquals("/a/B.class", differentContent.get(0).getName());
+        assertEquals(2, index.findResourcesWithDuplicates(DuplicatesMode.ALL, true).length);
+    }
+
+    @Test
+    public void testOverlappingJarsMatchResourceList() {
+        List<ClasspathResource> resources = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null, 1);
+        ClasspathColumnarIndex index = ClasspathColumnarIndex.build(entries, logger, null);
+
+        List<ClasspathResource> classFiles = ClasspathResources.filterClassFilesOnly(resources);
+        // both pairs have one class in common, so only the content of the lists is compared
+        assertEquals(new HashSet<>(JarPairs.findOverlappingJarPairs(ClasspathResources.findResourcesWithDuplicates(classFiles, DuplicatesMode.ALL))),
+                new HashSet<>(index.findOverlappingJars(DuplicatesMode.ALL)));
+        assertEquals(1, index.findOverlappingJars(DuplicatesMode.DIFFERENT_CONTENT).size());
+    }
+}
@@ -0,0 +1,224 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathEntryScanMetrics;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClasspathScanSummary;
+import org.jhades.service.ClasspathScanMetricsListener;
+import org.jhades.service.ClasspathScannerListener;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.StdOutLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ClasspathEntriesTest {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private Path tmpDir;
+    private List<ClasspathEntry> entries;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-entries-test");
+        Path jar1 = createJar(tmpDir.resolve("lib1.jar"), "a/A.class", "A", "a/B.class", "B", "log4j.xml", "<xml/>");
+        Path jar2 = createJar(tmpDir.resolve("lib2.jar"), "a/B.class", "B", "b/C.class", "C");
+        Path classes = Files.createDirectories(tmpDir.resolve("classes/a"));
+        Files.write(classes.resolve("A.class"), new byte[10]);
+        entries = Arrays.asList(new ClasspathEntry(null, jar1.toUri().toString()),
+                new ClasspathEntry(null, jar2.toUri().toString()),
+                new ClasspathEntry(null, tmpDir.resolve("classes").toUri().toString()));
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testIterateResourceVersionsInClasspathOrder() {
+        String tmpDirUrl = tmpDir.toUri().toString();
+        List<String> versions = new ArrayList<>();
+        for (ClasspathResourceVersion version : ClasspathEntries.iterateResourceVersions(entries, logger, null)) {
+            versions.add(version.getClasspathEntry().getUrl().substring(tmpDirUrl.length()) + version.getResourceName());
+        }
+
+        assertEquals(Arrays.asList("lib1.jar/a/A.class", "lib1.jar/a/B.class", "lib1.jar/log4j.xml",
+                "lib2.jar/a/B.class", "lib2.jar/b/C.class", "classes//a/A.class"), versions);
+    }
+
+    @Test
+    public void testIteratedResourcesMatchResourceList() {
+        List<ClasspathResource> expected = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null, 1);
+        Collections.sort(expected, new Comparator<ClasspathResource>() {
+            @Override
+            public int compare(ClasspathResource resource1, ClasspathResource resource2) {
+                return resource1.getName().compareTo(resource2.getName());
+            }
+        });
+
+        List<ClasspathResource> iterated = new ArrayList<>();
+        for (ClasspathResource resource : ClasspathEntries.iterateClasspathResources(entries, logger, null)) {
+            iterated.add(resource);
+        }
+
+        assertEquals(expected, iterated);
+        assertEquals(4, iterated.size());
+    }
+
+    @Test
+    public void testParallelScanKeepsClasspathOrder() throws IOException {
+        List<ClasspathEntry> scanned = new ArrayList<>();
+        List<String> expectedNames = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            List<String> entryNames = new ArrayList<>();
+            // the first jar is the slowest to scan, so that the later ones are done before it
+            for (int j = 0; j < (i == 0 ? 2000 : 1); j++) {
+                entryNames.add("lib" + i + "/R" + j + ".class");
+            }
+            expectedNames.addAll(entryNames);
+            if (i == 0) {
+                expectedNames.add("shared/S.class");
+            }
+            entryNames.add("shared/S.class");
+            List<String> namesAndContents = new ArrayList<>();
+            for (String entryName : entryNames) {
+                namesAndContents.add(entryName);
+                namesAndContents.add(entryName);
+            }
+            Path jar = createJar(tmpDir.resolve("parallel" + i + ".jar"), namesAndContents.toArray(new String[namesAndContents.size()]));
+            scanned.add(new ClasspathEntry(null, jar.toUri().toString()));
+        }
+        final List<ClasspathEntry> started = Collections.synchronizedList(new ArrayList<ClasspathEntry>());
+        final List<ClasspathEntry> ended = Collections.synchronizedList(new ArrayList<ClasspathEntry>());
+        ClasspathScannerListener listener = new ClasspathScannerListener() {
+            @Override
+            public void onEntryScanStart(ClasspathEntry classpathEntry) {
+                started.add(classpathEntry);
+            }
+
+            @Override
+            public void onEntryScanEnd(ClasspathEntry classpathEntry) {
+                ended.add(classpathEntry);
+            }
+        };
+
+        List<ClasspathResource> resources = ClasspathEntries.findClasspathResourcesInEntries(scanned, logger, listener, 4);
+
+        assertEquals(scanned.size(), started.size());
+        assertEquals(scanned.size(), ended.size());
+        for (ClasspathEntry entry : scanned) {
+            assertEquals(1, Collections.frequency(started, entry));
+            assertEquals(1, Collections.frequency(ended, entry));
+        }
+        List<String> names = new ArrayList<>();
+        ClasspathResource shared = null;
+        for (ClasspathResource resource : resources) {
+            names.add(resource.getName());
+            if (resource.getName().equals("/shared/S.class")) {
+                shared = resource;
+            }
+        }
+        List<String> expected = new ArrayList<>();
+        for (String name : expectedNames) {
+            expected.add("/" + name);
+        }
+        assertEquals(expected, names);
+        assertNotNull(shared);
+        assertEquals(scanned.size(), shared.getResourceFileVersions().size());
+        for (int i = 0; i < scanned.size(); i++) {
+            assertSame(scanned.get(i), shared.getResourceFileVersions().get(i).getClasspathEntry());
+        }
+    }
+
+    @Test
+    public void testScanMetrics() throws Exception {
+        List<ClasspathEntry> scanned = new ArrayList<>(entries);
+        scanned.add(new ClasspathEntry(null, tmpDir.resolve("missing.jar").toUri().toString()));
+        scanned.get(1).getResourceVersions();
+        final List<ClasspathEntryScanMetrics> metrics = new ArrayList<>();
+        final List<ClasspathScanSummary> summaries = new ArrayList<>();
+        ClasspathScanMetricsListener listener = new ClasspathScanMetricsListener() {
+            @Override
+            public void onEntryScanStart(ClasspathEntry classpathEntry) {
+            }
+
+            @Override
+            public void onEntryScanEnd(ClasspathEntry classpathEntry) {
+            }
+
+            @Override
+            public void onEntryScanMetrics(ClasspathEntryScanMetrics entryMetrics) {
+                metrics.add(entryMetrics);
+            }
+
+            @Override
+            public void onScanSummary(ClasspathScanSummary summary) {
+                summaries.add(summary);
+            }
+        };
+
+        ClasspathEntries.findClasspathResourcesInEntries(scanned, logger, listener);
+
+        assertEquals(4, metrics.size());
+        ClasspathEntryScanMetrics jar1 = findMetrics(metrics, scanned.get(0));
+        assertEquals(3, jar1.getResourceCount());
+        assertTrue(jar1.getBytesRead() > 0);
+        assertFalse(jar1.isCacheHit());
+        assertNull(jar1.getFailureReason());
+        // the second jar was already scanned
+        assertTrue(findMetrics(metrics, scanned.get(1)).isCacheHit());
+        assertEquals(2, findMetrics(metrics, scanned.get(2)).getDirectoryCount());
+        assertNotNull(findMetrics(metrics, scanned.get(3)).getFailureReason());
+
+        assertEquals(1, summaries.size());
+        ClasspathScanSummary summary = summaries.get(0);
+        assertEquals(4, summary.getEntryCount());
+        assertEquals(1, summary.getFailedEntryCount());
+        assertEquals(1, summary.getCacheHitCount());
+        assertEquals(6, summary.getResourceCount());
+        assertEquals(6, summary.getPeakIndexSize());
+
+        summaries.clear();
+        for (ClasspathResourceVersion version : ClasspathEntries.iterateResourceVersions(scanned, logger, listener)) {
+            assertNotNull(version);
+        }
+        // only the versions of the biggest entry are held when iterating
+        assertEquals(3, summaries.get(0).getPeakIndexSize());
+        assertEquals(1, summaries.size());
+
+        // the summary is sent once when the iteration ends, also without entries, and not for an abandoned iteration
+        summaries.clear();
+        Iterator<ClasspathResourceVersion> iterator = ClasspathEntries.iterateResourceVersions(scanned, logger, listener).iterator();
+        assertTrue(iterator.hasNext());
+        iterator.next();
+        assertTrue(summaries.isEmpty());
+        iterator = ClasspathEntries.iterateResourceVersions(Collections.<ClasspathEntry>emptyList(), logger, listener).iterator();
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.hasNext());
+        assertEquals(1, summaries.size());
+        assertEquals(0, summaries.get(0).getEntryCount());
+    }
+
+    private static ClasspathEntryScanMetrics findMetrics(List<ClasspathEntryScanMetrics> metrics, ClasspathEntry entry) {
+        for (ClasspathEntryScanMetrics entryMetrics : metrics) {
+            if (entryMetrics.getClasspathEntry() == entry) {
+                return entryMetrics;
+            }
+        }
+        throw new AssertionError("No metrics for " + entry.getUrl());
+    }
+}
@@ -2,14 +2,21 @@ package org.jhades;
 
 import static org.jhades.TestUtils.*;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
 import java.util.List;
+import org.jhades.model.ClasspathEntries;
 import org.jhades.model.ClasspathEntry;
+import org.junit.Assume;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResources;
+import org.jhades.model.ClasspathSnapshot;
 import org.jhades.model.ClazzLoader;
 import org.jhades.model.UrlClazzLoader;
 import org.jhades.service.ClasspathScanner;
+import org.jhades.utils.StdOutLogger;
 
 public class ClasspathScannerTest {
 
@@ -65,6 +72,18 @@ public class ClasspathScannerTest {
         assertTrue("String class not found.", found.getName().contains("String"));
     }
 
+    @Test
+    public void testFindClassByName() {
+        // the classes of the application class loader are only scanned if it's a URLClassLoader, up to JDK 8
+        Assume.assumeTrue(ClassLoader.getSystemClassLoader() instanceof URLClassLoader);
+        ClasspathResource found = scanner.findClassByName(JHades.class.getName());
+
+        assertNotNull("JHades class must exist on the classpath.", found);
+        assertEquals("class folder resources must be named relative to the folder.", "/org/jhades/JHades.class", found.getName());
+        assertSame(found, scanner.findResource("org/jhades/JHades.class"));
+        assertNull(scanner.findClassByName("org.jhades.DoesNotExist"));
+    }
+
     @Test
     public void testFindWithRegularExpression() {
         List<ClasspathResource> matches = scanner.findByRegex("java/lang/String.class");
@@ -74,6 +93,35 @@ public class ClasspathScannerTest {
         assertTrue("java.lang.String class not found.", matches.get(0).getName().contains("String"));
     }
 
+    @Test
+    public void testSnapshotIsSharedUntilRefreshed() {
+        ClasspathSnapshot snapshot = scanner.getSnapshot();
+
+        assertSame("the snapshot must be reused by the following queries.", snapshot, scanner.getSnapshot());
+
+        ClasspathSnapshot refreshed = scanner.refreshSnapshot();
+        assertNotSame("refresh must create a new snapshot.", snapshot, refreshed);
+        assertSame(refreshed, scanner.getSnapshot());
+        assertEquals(snapshot.getClasspathResources().size(), refreshed.getClasspathResources().size());
+
+        scanner.invalidateSnapshot();
+        assertNotSame("an invalidated snapshot cannot be reused.", refreshed, scanner.getSnapshot());
+    }
+
+    @Test
+    public void testMergedDuplicatesMatchGroupedDuplicates() {
+        List<ClasspathEntry> classpathEntries = scanner.findAllClasspathEntries();
+        StdOutLogger logger = StdOutLogger.getLogger();
+
+        List<ClasspathResource> merged = ClasspathEntries.findResourcesWithDuplicatesInEntries(classpathEntries, logger, null);
+        List<ClasspathResource> grouped = ClasspathResources.findResourcesWithDuplicates(
+                ClasspathEntries.findClasspathResourcesInEntries(classpathEntries, logger, null), false);
+
+        assertFalse("there must be duplicates on the test classpath.", merged.isEmpty());
+        // resources are equal only if they have the same versions in the same order
+        assertEquals(new HashSet<>(grouped), new HashSet<>(merged));
+    }
+
     @Test
     public void testFindAllResourcesWithDuplicates() {
 
@@ -0,0 +1,85 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResources;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.StdOutLogger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class DuplicatesModeTest {
+
+    private Path tmpDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-dups-test");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testIdenticalJarCopiesAreExcluded() throws IOException {
+        Path jar1 = createTestJar(tmpDir.resolve("lib1.jar"), "same content", "content AAA");
+        Path jar2 = createTestJar(tmpDir.resolve("lib2.jar"), "same content", "content BBB");
+
+        checkDuplicates(jar1.toUri().toString(), jar2.toUri().toString());
+    }
+
+    @Test
+    public void testIdenticalClassFolderCopiesAreExcluded() throws IOException {
+        Path folder1 = createClassFolder(tmpDir.resolve("classes1"), "same content", "content AAA");
+        Path folder2 = createClassFolder(tmpDir.resolve("classes2"), "same content", "content BBB");
+
+        checkDuplicates(folder1.toUri().toString(), folder2.toUri().toString());
+    }
+
+    @Test
+    public void testIdenticalJarAndClassFolderCopiesAreExcluded() throws IOException {
+        Path jar = createTestJar(tmpDir.resolve("lib.jar"), "same content", "content AAA");
+        Path folder = createClassFolder(tmpDir.resolve("classes"), "same content", "content BBB");
+
+        checkDuplicates(jar.toUri().toString(), folder.toUri().toString());
+    }
+
+    /**
+     * Same.class is identical on both entries, Different.class has the same size but a different content.
+     */
+    private static void checkDuplicates(String url1, String url2) {
+        List<ClasspathEntry> entries = Arrays.asList(new ClasspathEntry(null, url1), new ClasspathEntry(null, url2));
+        List<ClasspathResource> resources = ClasspathEntries.findClasspathResourcesInEntries(entries, StdOutLogger.getLogger(), null, 1);
+
+        assertEquals(2, ClasspathResources.findResourcesWithDuplicates(resources, DuplicatesMode.ALL).size());
+        assertTrue(ClasspathResources.findResourcesWithDuplicates(resources, DuplicatesMode.DIFFERENT_SIZE).isEmpty());
+
+        List<ClasspathResource> differentContent = ClasspathResources.findResourcesWithDuplicates(resources, DuplicatesMode.DIFFERENT_CONTENT);
+        assertEquals(1, differentContent.size());
+        assertEquals("/org/test/Different.class", differentContent.get(0).getName());
+    }
+
+    private static Path createTestJar(Path jar, String sameContent, String differentContent) throws IOException {
+        return createJar(jar, "org/test/Same.class", sameContent, "org/test/Different.class", differentContent);
+    }
+
+    private static Path createClassFolder(Path folder, String sameContent, String differentContent) throws IOException {
+        Path packageFolder = Files.createDirectories(folder.resolve("org/test"));
+        Files.write(packageFolder.resolve("Same.class"), sameContent.getBytes("UTF-8"));
+        Files.write(packageFolder.resolve("Different.class"), differentContent.getBytes("UTF-8"));
+        return folder;
+    }
+}
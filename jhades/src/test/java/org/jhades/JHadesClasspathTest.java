@@ -0,0 +1,59 @@
+package org.jhades;
+
+import java.lang.management.ManagementFactory;
+import java.net.URLClassLoader;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.jhades.jmx.JHadesClasspath;
+import org.jhades.service.ClasspathScanner;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JHadesClasspathTest {
+
+    private JHadesClasspath classpath;
+    private ObjectName objectName;
+
+    @Before
+    public void setUp() throws Exception {
+        classpath = new JHadesClasspath(new ClasspathScanner());
+        objectName = classpath.register("/test");
+    }
+
+    @After
+    public void tearDown() {
+        classpath.unregister();
+    }
+
+    @Test
+    public void testQueriesThroughMBeanServer() throws Exception {
+        // the test classpath is only found through the application class loader up to Java 8
+        Assume.assumeTrue(ClassLoader.getSystemClassLoader() instanceof URLClassLoader);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals("org.jhades:type=Classpath,name=\"/test\"", objectName.toString());
+
+        String[] versions = (String[]) server.invoke(objectName, "findClass",
+                new Object[]{"org.junit.Test"}, new String[]{String.class.getName()});
+        assertEquals(1, versions.length);
+        assertTrue(versions[0].endsWith("/org/junit/Test.class"));
+        String[] found = (String[]) server.invoke(objectName, "findByRegex",
+                new Object[]{"org/junit/Assert\\.class"}, new String[]{String.class.getName()});
+        assertEquals(1, found.length);
+
+        assertTrue((Integer) server.getAttribute(objectName, "ClasspathEntryCount") > 0);
+        assertTrue((Integer) server.getAttribute(objectName, "ResourceVersionCount")
+                >= (Integer) server.getAttribute(objectName, "ResourceCount"));
+        assertTrue((Long) server.getAttribute(objectName, "IndexMemoryBytes") > 0);
+        assertTrue((Long) server.getAttribute(objectName, "LastScanBytesRead") > 0);
+    }
+
+    @Test
+    public void testUnregister() {
+        classpath.unregister();
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+    }
+}
@@ -0,0 +1,92 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.JarIndexCache;
+import org.jhades.utils.ZipCentralDirectoryReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class JarIndexCacheTest {
+
+    private Path tmpDir;
+    private Path cacheDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-cache-test");
+        cacheDir = tmpDir.resolve("cache");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testUnchangedJarIsReadFromCache() throws IOException {
+        Path jar = createJar(tmpDir.resolve("lib.jar"), "a/A.class", "A", "a/B.class", "B");
+        JarIndexCache cache = new JarIndexCache(cacheDir, false);
+
+        List<String> firstRead = readNames(cache, jar);
+        List<String> secondRead = readNames(cache, jar);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(firstRead, secondRead);
+        assertEquals(2, firstRead.size());
+
+        // a new cache instance on the same directory, as another JVM would do
+        JarIndexCache otherCache = new JarIndexCache(cacheDir, false);
+        assertEquals(firstRead, readNames(otherCache, jar));
+        assertEquals(1, otherCache.getHits());
+    }
+
+    @Test
+    public void testChangedJarIsRescanned() throws IOException {
+        Path jar = createJar(tmpDir.resolve("lib.jar"), "a/A.class", "A");
+        JarIndexCache cache = new JarIndexCache(cacheDir, false);
+        readNames(cache, jar);
+
+        createJar(jar, "a/A.class", "A", "a/C.class", "C");
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() + 2000));
+
+        List<String> names = readNames(cache, jar);
+
+        assertEquals(2, cache.getMisses());
+        assertTrue("the changed jar was not rescanned: " + names, names.contains("a/C.class"));
+    }
+
+    @Test
+    public void testContentHashKeysAreSharedBetweenCopies() throws IOException {
+        Path jar = createJar(tmpDir.resolve("lib.jar"), "a/A.class", "A");
+        Path copy = Files.copy(jar, tmpDir.resolve("copy-of-lib.jar"));
+        JarIndexCache cache = new JarIndexCache(cacheDir, true);
+
+        readNames(cache, jar);
+        List<String> names = readNames(cache, copy);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals("a/A.class", names.get(0));
+    }
+
+    private static List<String> readNames(JarIndexCache cache, Path jar) throws IOException {
+        final List<String> names = new ArrayList<>();
+        cache.read(jar, new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                names.add(entry.getName());
+            }
+        });
+        return names;
+    }
+}
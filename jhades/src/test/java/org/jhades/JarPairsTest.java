@@ -0,0 +1,108 @@
+package org.jhades;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.JarPair;
+import org.jhades.model.JarPairs;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class JarPairsTest {
+
+    @Test
+    public void testFewJarsMatchPairwiseCount() {
+        checkAgainstPairwiseCount(createResources(50, 5000, 1), 1);
+    }
+
+    @Test
+    public void testManyJarsMatchPairwiseCount() {
+        checkAgainstPairwiseCount(createResources(1500, 5000, 2), 1);
+    }
+
+    @Test
+    public void testParallelCountMatchesSequentialCount() {
+        List<ClasspathResource> resources = createResources(200, 40000, 3);
+
+        List<JarPair> sequential = JarPairs.findOverlappingJarPairs(resources, 1, Integer.MAX_VALUE);
+        List<JarPair> parallel = JarPairs.findOverlappingJarPairs(resources, 4, Integer.MAX_VALUE);
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getJar1(), parallel.get(i).getJar1());
+            assertEquals(sequential.get(i).getJar2(), parallel.get(i).getJar2());
+            assertEquals(sequential.get(i).getDupClassesTotal(), parallel.get(i).getDupClassesTotal());
+        }
+        checkAgainstPairwiseCount(resources, 4);
+    }
+
+    @Test
+    public void testLimitKeepsTopPairs() {
+        List<ClasspathResource> resources = createResources(30, 2000, 4);
+
+        List<JarPair> all = JarPairs.findOverlappingJarPairs(resources, 1, Integer.MAX_VALUE);
+        List<JarPair> top = JarPairs.findOverlappingJarPairs(resources, 1, 5);
+
+        assertEquals(5, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(all.get(i), top.get(i));
+            assertEquals(all.get(i).getDupClassesTotal(), top.get(i).getDupClassesTotal());
+        }
+    }
+
+    private static void checkAgainstPairwiseCount(List<ClasspathResource> resources, int parallelism) {
+        Map<JarPair, Long> expected = new HashMap<>();
+        for (ClasspathResource resource : resources) {
+            List<ClasspathResourceVersion> versions = resource.getResourceFileVersions();
+            for (int i = 0; i < versions.size(); i++) {
+                for (int j = i + 1; j < versions.size(); j++) {
+                    JarPair pair = new JarPair(versions.get(i).getClasspathEntry(), versions.get(j).getClasspathEntry());
+                    Long total = expected.get(pair);
+                    expected.put(pair, total == null ? 1 : total + 1);
+                }
+            }
+        }
+
+        List<JarPair> jarPairs = JarPairs.findOverlappingJarPairs(resources, parallelism, Integer.MAX_VALUE);
+
+        assertEquals(expected.size(), jarPairs.size());
+        long previousTotal = Long.MAX_VALUE;
+        for (JarPair jarPair : jarPairs) {
+            assertEquals("wrong total for " + jarPair.getJar1() + " / " + jarPair.getJar2(),
+                    expected.get(jarPair), jarPair.getDupClassesTotal());
+            assertTrue("pairs are not sorted by total", jarPair.getDupClassesTotal() <= previousTotal);
+            previousTotal = jarPair.getDupClassesTotal();
+        }
+    }
+
+    /**
+     * Creates resources with 2 to 4 versions on random jars - sometimes the same jar twice, as when a jar is listed
+     * twice on the classpath.
+     */
+    private static List<ClasspathResource> createResources(int totalJars, int totalResources, long seed) {
+        Random random = new Random(seed);
+        List<ClasspathEntry> jars = new ArrayList<>();
+        for (int i = 0; i < totalJars; i++) {
+            jars.add(new ClasspathEntry(null, "file:/lib/jar" + i + ".jar"));
+        }
+        List<ClasspathResource> resources = new ArrayList<>();
+        for (int i = 0; i < totalResources; i++) {
+            String name = "/org/test/Class" + i + ".class";
+            // skew the jar choice, so that some pairs overlap much more than others
+            int firstJar = (int) (Math.abs(random.nextGaussian()) * totalJars / 4) % totalJars;
+            ClasspathResource resource = new ClasspathResource(name, new ClasspathResourceVersion(jars.get(firstJar), name, 100));
+            int versions = 1 + random.nextInt(3);
+            for (int v = 0; v < versions; v++) {
+                ClasspathEntry jar = jars.get(random.nextInt(100) == 0 ? firstJar : random.nextInt(totalJars));
+                resource.getResourceFileVersions().add(new ClasspathResourceVersion(jar, name, 100));
+            }
+            resources.add(resource);
+        }
+        return resources;
+    }
+}
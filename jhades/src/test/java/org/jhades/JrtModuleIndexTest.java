@@ -0,0 +1,88 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.ClazzLoader;
+import org.jhades.model.JrtClazzLoader;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.JrtModuleIndex;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Needs JDK 9 or later, the tests are skipped on older JDKs - unless run with the jrt-tests profile, see the pom.
+ */
+public class JrtModuleIndexTest {
+
+    private Path tmpDir;
+
+    @Before
+    public void setUp() throws IOException {
+        if (Boolean.getBoolean("jhades.test.jrt.required")) {
+            assertTrue("the jrt-tests profile needs JDK 9 or later", JrtModuleIndex.isAvailable());
+        }
+        Assume.assumeTrue(JrtModuleIndex.isAvailable());
+        tmpDir = Files.createTempDirectory("jhades-jrt-test");
+    }
+
+    @After
+    public void tearDown() {
+        if (tmpDir != null) {
+            FileUtils.deleteDirectory(tmpDir.toString());
+        }
+    }
+
+    @Test
+    public void testStoredIndexIsReused() throws IOException {
+        JrtModuleIndex index = JrtModuleIndex.getIndex(tmpDir.resolve("first"));
+        assertSame(index, JrtModuleIndex.getIndex(tmpDir.resolve("first")));
+
+        Path copy = Files.createDirectories(tmpDir.resolve("copy"));
+        try (DirectoryStream<Path> indexFiles = Files.newDirectoryStream(tmpDir.resolve("first"), "*.idx")) {
+            for (Path indexFile : indexFiles) {
+                Files.copy(indexFile, copy.resolve(indexFile.getFileName()));
+            }
+        }
+        JrtModuleIndex loaded = JrtModuleIndex.getIndex(copy);
+
+        assertNotSame(index, loaded);
+        assertEquals(index.getModules().size(), loaded.getModules().size());
+        assertEquals(index.getResourceCount(), loaded.getResourceCount());
+        assertTrue(loaded.getResourceCount() > 10000);
+        for (int m = 0; m < index.getModules().size(); m++) {
+            JrtModuleIndex.Module built = index.getModules().get(m);
+            JrtModuleIndex.Module mapped = loaded.getModules().get(m);
+            assertEquals(built.getName(), mapped.getName());
+            for (int i = 0; i < built.getResourceCount(); i += 97) {
+                assertEquals(built.getResourceName(i), mapped.getResourceName(i));
+                assertEquals(built.getSize(i), mapped.getSize(i));
+            }
+        }
+    }
+
+    @Test
+    public void testBootstrapClassesAreScanned() throws Exception {
+        ClazzLoader bootstrap = new JrtClazzLoader(JrtModuleIndex.getIndex(tmpDir));
+
+        ClasspathResourceVersion objectClass = null;
+        for (ClasspathEntry entry : bootstrap.getClasspathEntries()) {
+            if (entry.getUrl().equals("jrt:/java.base/")) {
+                for (ClasspathResourceVersion version : entry.getResourceVersions()) {
+                    if (version.getResourceName().equals("/java/lang/Object.class")) {
+                        objectClass = version;
+                    }
+                }
+            }
+        }
+        assertNotNull(objectClass);
+        assertTrue(objectClass.getFileSize() > 0);
+        assertTrue(objectClass.getCrc() != ClasspathResourceVersion.UNKNOWN_CRC);
+    }
+}
@@ -0,0 +1,70 @@
+package org.jhades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ClasspathResource;
+import org.jhades.model.ClasspathResourceVersion;
+import org.jhades.model.LoadedClassConflict;
+import org.jhades.model.LoadedClassConflicts;
+import org.jhades.utils.StdOutLogger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LoadedClassConflictsTest {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+
+    @Test
+    public void testOnlyLoadedDuplicatesAreReported() {
+        String junitLocation = Test.class.getProtectionDomain().getCodeSource().getLocation().toString();
+        ClasspathEntry otherJar = new ClasspathEntry(null, "file:/app/lib/other-junit.jar");
+        ClasspathEntry junitJar = new ClasspathEntry(null, junitLocation);
+        List<ClasspathResource> duplicates = new ArrayList<>();
+        duplicates.add(duplicate("/org/junit/Test.class", otherJar, junitJar));
+        duplicates.add(duplicate("/org/junit/NotLoaded.class", otherJar, junitJar));
+        duplicates.add(duplicate("/log4j.xml", otherJar, junitJar));
+
+        List<LoadedClassConflict> conflicts = LoadedClassConflicts.findLoadedConflicts(duplicates,
+                new Class<?>[]{String.class, Test.class, LoadedClassConflictsTest.class});
+
+        assertEquals(1, conflicts.size());
+        assertEquals("/org/junit/Test.class", conflicts.get(0).getResource().getName());
+        assertEquals(Arrays.asList(junitLocation), conflicts.get(0).getLoadedLocations());
+        assertEquals(1, conflicts.get(0).getLoadedVersions().size());
+        assertSame(junitJar, conflicts.get(0).getLoadedVersions().get(0).getClasspathEntry());
+    }
+
+    @Test
+    public void testJoinWithManyLoadedClasses() {
+        List<ClasspathResource> duplicates = new ArrayList<>();
+        ClasspathEntry jar1 = new ClasspathEntry(null, "file:/app/lib/1.jar");
+        ClasspathEntry jar2 = new ClasspathEntry(null, "file:/app/lib/2.jar");
+        for (int i = 0; i < 5000; i++) {
+            duplicates.add(duplicate("/org/jhades/synthetic/Class" + i + ".class", jar1, jar2));
+        }
+        duplicates.add(duplicate("/org/jhades/LoadedClassConflictsTest.class", jar1, jar2));
+        Class<?>[] loadedClasses = new Class<?>[60000];
+        Arrays.fill(loadedClasses, String.class);
+        loadedClasses[30000] = LoadedClassConflictsTest.class;
+
+        long start = System.nanoTime();
+        List<LoadedClassConflict> conflicts = LoadedClassConflicts.findLoadedConflicts(duplicates, loadedClasses);
+        logger.info("Joined " + loadedClasses.length + " loaded classes with " + duplicates.size() + " duplicates in "
+                + (System.nanoTime() - start) / 1000 + " us");
+
+        assertEquals(1, conflicts.size());
+        // loaded from the test classes folder, which was not scanned
+        assertTrue(conflicts.get(0).getLoadedVersions().isEmpty());
+        assertEquals(1, conflicts.get(0).getLoadedLocations().size());
+    }
+
+    private static ClasspathResource duplicate(String name, ClasspathEntry... entries) {
+        ClasspathResource resource = new ClasspathResource(name, new ClasspathResourceVersion(entries[0], name, 10));
+        for (int i = 1; i < entries.length; i++) {
+            resource.getResourceFileVersions().add(new ClasspathResourceVersion(entries[i], name, 20));
+        }
+        return resource;
+    }
+}
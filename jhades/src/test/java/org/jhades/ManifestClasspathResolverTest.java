@@ -0,0 +1,107 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.ManifestClasspathResolver;
+import org.jhades.model.UrlClazzLoader;
+import org.jhades.utils.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.jhades.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ManifestClasspathResolverTest {
+
+    private Path tmpDir;
+    private Path appJar;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-manifest-test");
+        Files.createDirectories(tmpDir.resolve("lib"));
+        appJar = createManifestJar(tmpDir.resolve("app.jar"), "lib/b.jar");
+        // b.jar references app.jar back
+        createManifestJar(tmpDir.resolve("lib/b.jar"), "../app.jar c.jar");
+        createManifestJar(tmpDir.resolve("lib/c.jar"), null);
+    }
+
+    @After
+    public void tearDown() {
+        ManifestClasspathResolver.clearCache();
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testRelativePathsAreResolved() throws Exception {
+        List<String> classpath = ManifestClasspathResolver.readManifestClasspath(url(appJar));
+
+        assertEquals(Arrays.asList(url(tmpDir.resolve("lib/b.jar"))), classpath);
+        assertTrue(ManifestClasspathResolver.readManifestClasspath(url(tmpDir.resolve("lib/c.jar"))).isEmpty());
+    }
+
+    @Test
+    public void testClasspathCycleStops() throws Exception {
+        Map<String, List<String>> classpaths = ManifestClasspathResolver.readManifestClasspaths(Arrays.asList(url(appJar)), 4);
+        assertEquals(2, classpaths.size());
+
+        UrlClazzLoader classLoader = new UrlClazzLoader("test", "test", new URL[]{appJar.toUri().toURL()});
+        List<String> urls = new ArrayList<>();
+        for (ClasspathEntry entry : classLoader.getClasspathEntries()) {
+            urls.add(entry.getUrl());
+        }
+        assertEquals(Arrays.asList(url(appJar), url(tmpDir.resolve("lib/b.jar")),
+                url(tmpDir.resolve("lib/c.jar"))), urls);
+    }
+
+    @Test
+    public void testEntriesWithoutManifestAreSkipped() throws Exception {
+        Map<String, List<String>> classpaths = ManifestClasspathResolver.readManifestClasspaths(Arrays.asList(
+                "jrt:/java.base/", "jrt:/java.sql/", tmpDir.toUri().toString(),
+                "jar:" + url(appJar) + "!/BOOT-INF/lib/b.jar!/"), 4);
+
+        assertTrue(classpaths.isEmpty());
+    }
+
+    @Test
+    public void testSameJarThroughDifferentUrlsIsAddedOnce() throws Exception {
+        Path link = Files.createSymbolicLink(tmpDir.resolve("link.jar"), appJar);
+        String appJarUrl = url(appJar);
+
+        UrlClazzLoader classLoader = new UrlClazzLoader("test", "test", new URL[]{
+            appJar.toUri().toURL(),
+            new URL("file://" + tmpDir.resolve("lib").toUri().getPath() + "../app.jar"),
+            link.toUri().toURL(),
+            tmpDir.resolve("lib/c.jar").toUri().toURL()});
+
+        List<ClasspathEntry> entries = classLoader.getClasspathEntries();
+        assertEquals(3, entries.size());
+        assertEquals(appJarUrl, entries.get(0).getUrl());
+        assertEquals(FileUtils.getCanonicalLocation(appJar), FileUtils.getCanonicalLocation(link.toUri().toString()));
+        assertEquals("jar:" + FileUtils.getCanonicalLocation(appJar) + "!/BOOT-INF/lib/x.jar",
+                FileUtils.getCanonicalLocation("jar:" + appJarUrl + "!/BOOT-INF/lib/x.jar!/"));
+    }
+
+    private static String url(Path path) throws MalformedURLException {
+        return path.toUri().toURL().toString();
+    }
+
+    private static Path createManifestJar(Path jar, String classPath) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (classPath != null) {
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+        }
+        return Files.write(jar, createJar(manifest, "a/A.class", "A"));
+    }
+}
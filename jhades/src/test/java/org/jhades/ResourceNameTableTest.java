@@ -0,0 +1,167 @@
+package org.jhades;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jhades.model.ResourceNameTable;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResourceNameTableTest {
+
+    @Test
+    public void testSameNameHasSameId() {
+        ResourceNameTable names = new ResourceNameTable();
+        int id = names.intern("/org/jhades/JHades.class");
+
+        assertEquals(id, names.intern(new String("/org/jhades/JHades.class")));
+        assertEquals(id, names.find("/org/jhades/JHades.class"));
+        assertEquals("/org/jhades/JHades.class", names.getName(id));
+        assertEquals(ResourceNameTable.NO_NAME, names.find("/org/jhades/Unknown.class"));
+        assertEquals(ResourceNameTable.NO_NAME, names.find("/unknown/JHades.class"));
+        assertNull(names.getName(names.intern(null)));
+    }
+
+    @Test
+    public void testCompareMatchesStringOrder() {
+        final ResourceNameTable names = new ResourceNameTable();
+        List<String> sorted = new ArrayList<>(Arrays.asList("/a/b/x.class", "/a/b0", "/a/b", "/log4j.xml",
+                "/a/b/c/D.class", "/a/b/C.class", "/META-INF/MANIFEST.MF", "/a/bb/A.class", "/"));
+        final List<Integer> ids = new ArrayList<>();
+        for (String name : sorted) {
+            ids.add(names.intern(name));
+        }
+        Collections.sort(sorted);
+
+        Collections.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer id1, Integer id2) {
+                return names.compare(id1, id2);
+            }
+        });
+
+        List<String> sortedByIds = new ArrayList<>();
+        for (Integer id : ids) {
+            sortedByIds.add(names.getName(id));
+        }
+        assertEquals(sorted, sortedByIds);
+    }
+
+    @Test
+    public void testEndsWith() {
+        ResourceNameTable names = new ResourceNameTable();
+
+        assertTrue(names.endsWith(names.intern("/org/jhades/JHades.class"), ".class"));
+        assertFalse(names.endsWith(names.intern("/org/jhades/class"), ".class"));
+        assertFalse(names.endsWith(names.intern("/class"), ".class"));
+        assertFalse(names.endsWith(ResourceNameTable.NO_NAME, ".class"));
+    }
+
+    @Test
+    public void testManyNames() {
+        ResourceNameTable names = new ResourceNameTable();
+        int[] ids = new int[100000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = names.intern("/org/test/p" + (i % 100) + "/Class" + i + ".class");
+        }
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], names.find("/org/test/p" + (i % 100) + "/Class" + i + ".class"));
+        }
+        assertEquals(ids.length, names.size());
+    }
+
+    @Test
+    public void testNameIsAppendedWithoutKeepingIt() {
+        ResourceNameTable names = new ResourceNameTable();
+        int id = names.intern("/org/jhades/JHades.class");
+        int unicode = names.intern("/org/jhades/Caf\u00e9.class");
+
+        assertNotSame(names.getName(id), names.getName(id));
+        StringBuilder builder = new StringBuilder("name: ");
+        names.appendName(id, builder);
+        assertEquals("name: /org/jhades/JHades.class", builder.toString());
+        builder.setLength(0);
+        names.appendName(unicode, builder);
+        assertEquals("/org/jhades/Caf\u00e9.class", builder.toString());
+    }
+
+    @Test
+    public void testConcurrentInterningGivesOneIdPerName() throws Exception {
+        final ResourceNameTable names = new ResourceNameTable();
+        final int count = 20000;
+        final int[][] ids = new int[4][count];
+        Thread[] threads = new Thread[ids.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int[] threadIds = ids[t];
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < count; i++) {
+                        threadIds[i] = names.intern("/org/test/p" + (i % 50) + "/Class" + i + ".class");
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < count; i++) {
+            for (int t = 1; t < ids.length; t++) {
+                assertEquals(ids[0][i], ids[t][i]);
+            }
+            assertEquals("/org/test/p" + (i % 50) + "/Class" + i + ".class", names.getName(ids[0][i]));
+        }
+        assertEquals(count, names.size());
+    }
+
+    @Test
+    public void testFindWhileInterning() throws Exception {
+        final ResourceNameTable names = new ResourceNameTable();
+        final int count = 50000;
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                started.countDown();
+                for (int i = 0; i < count; i++) {
+                    String name = "/org/test/Class" + i + ".class";
+                    int id = names.find(name);
+                    if (id != ResourceNameTable.NO_NAME && !name.equals(names.getName(id))) {
+                        failure.set(name + " found as " + names.getName(id));
+                    }
+                }
+            }
+        };
+        reader.start();
+        started.await();
+        for (int i = 0; i < count; i++) {
+            names.intern("/org/test/Class" + i + ".class");
+        }
+        reader.join();
+
+        assertNull(failure.get());
+        String last = "/org/test/Class" + (count - 1) + ".class";
+        assertEquals(last, names.getName(names.find(last)));
+    }
+
+    @Test
+    public void testMemorySizeCountsDirectoriesOnce() {
+        ResourceNameTable names = new ResourceNameTable();
+        int id1 = names.intern("/org/jhades/A.class");
+        int id2 = names.intern("/org/jhades/B.class");
+        int longer = names.intern("/org/jhades/LongerName.class");
+
+        long size1 = names.getMemorySize(new int[]{id1});
+        assertTrue(size1 > "/org/jhades/A.class".length());
+        assertTrue(names.getMemorySize(new int[]{id1, id2}) < 2 * size1);
+        assertTrue(names.getMemorySize(new int[]{longer}) > size1);
+        assertEquals(0, names.getMemorySize(new int[0]));
+    }
+}
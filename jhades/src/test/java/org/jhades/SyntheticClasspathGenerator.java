@@ -0,0 +1,277 @@
+package org.jhades;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.model.ClasspathEntry;
+
+/**
+ *
+ * Writes synthetic classpaths for testing jHades at scale: jars, class folders, WARs and fat jars with a given number
+ * of class files and a given overlap between jars.
+ *
+ * The class files of each jar are split in three groups:
+ *
+ * - duplicates: the same class files in every jar, with the same content
+ *
+ * - collisions: the same class names in every jar, with the same size but a different content in each jar
+ *
+ * - the remaining class files, only found in that jar
+ *
+ * The output is deterministic: the same settings always write the same bytes, so the sizes and CRCs of the generated
+ * files can be relied upon between runs.
+ *
+ * The generator is part of the test jar of jHades, that the benchmarks also use. Usage, to generate a WAR for the
+ * standalone report:
+ *
+ * java -cp jhades.jar:jhades-tests.jar org.jhades.SyntheticClasspathGenerator outputDir [jarCount] [entriesPerJar]
+ *
+ */
+public class SyntheticClasspathGenerator {
+
+    public static final String JAR_PREFIX = "synthetic-";
+    private static final long ENTRY_TIME = 1262304000000L;
+    private static final int DEFAULT_CLASS_SIZE = 1024;
+    private final Path dir;
+    private final int jarCount;
+    private final int entriesPerJar;
+    private int classSize = DEFAULT_CLASS_SIZE;
+    private double duplicateRatio;
+    private double collisionRatio;
+    private int classPathChainLength;
+
+    /**
+     *
+     * @param dir - the directory where the files are written
+     * @param jarCount - the number of jars of the classpath
+     * @param entriesPerJar - the number of class files of each jar
+     */
+    public SyntheticClasspathGenerator(Path dir, int jarCount, int entriesPerJar) {
+        this.dir = dir;
+        this.jarCount = jarCount;
+        this.entriesPerJar = entriesPerJar;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length > 3) {
+            System.out.println("\njHades synthetic WAR generator - the following arguments are needed:\n");
+            System.out.println("    outputDir - the directory where the synthetic.war file is written");
+            System.out.println("    jarCount (optional) - the number of jars in WEB-INF/lib, 1000 by default");
+            System.out.println("    entriesPerJar (optional) - the number of class files in each jar, 800 by default");
+            System.out.println();
+            System.exit(-1);
+        }
+        int jarCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int entriesPerJar = args.length > 2 ? Integer.parseInt(args[2]) : 800;
+
+        SyntheticClasspathGenerator generator = new SyntheticClasspathGenerator(Paths.get(args[0]), jarCount, entriesPerJar);
+        generator.setDuplicateRatio(0.05);
+        generator.setCollisionRatio(0.01);
+        System.out.println("Generated " + generator.writeWar("synthetic.war"));
+    }
+
+    /**
+     * @param classSize - the average size of the class files, in bytes - 1024 by default
+     */
+    public void setClassSize(int classSize) {
+        this.classSize = classSize;
+    }
+
+    /**
+     * @param duplicateRatio - the share of the class files of each jar that are identical in all the jars, from 0 to 1
+     */
+    public void setDuplicateRatio(double duplicateRatio) {
+        this.duplicateRatio = duplicateRatio;
+    }
+
+    /**
+     * @param collisionRatio - the share of the class files of each jar that are in all the jars with the same size,
+     * but with a different content, from 0 to 1
+     */
+    public void setCollisionRatio(double collisionRatio) {
+        this.collisionRatio = collisionRatio;
+    }
+
+    /**
+     * @param classPathChainLength - the number of jars, starting with the first one, that reference the next jar in
+     * their manifest Class-Path - 0 by default
+     */
+    public void setClassPathChainLength(int classPathChainLength) {
+        this.classPathChainLength = classPathChainLength;
+    }
+
+    /**
+     *
+     * Writes the jars of the classpath to the directory, named synthetic-0.jar, synthetic-1.jar, etc.
+     *
+     * @return the written jars, in classpath order
+     */
+    public List<Path> writeJars() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> jars = new ArrayList<>();
+        for (int jarIndex = 0; jarIndex < jarCount; jarIndex++) {
+            Path jar = dir.resolve(getJarName(jarIndex));
+            try (OutputStream out = Files.newOutputStream(jar)) {
+                out.write(createJar(jarIndex));
+            }
+            jars.add(jar);
+        }
+        return jars;
+    }
+
+    /**
+     *
+     * Writes a class folder with the same class file groups as a jar of the classpath.
+     *
+     * @param name - the name of the folder in the directory
+     * @return the written class folder
+     */
+    public Path writeClassFolder(String name) throws IOException {
+        Path classFolder = dir.resolve(name);
+        for (int i = 0; i < entriesPerJar; i++) {
+            String className = getClassName(jarCount, i);
+            Path classFile = classFolder.resolve(className);
+            Files.createDirectories(classFile.getParent());
+            Files.write(classFile, createClass(jarCount, i, className));
+        }
+        return classFolder;
+    }
+
+    /**
+     *
+     * Writes a WAR with a WEB-INF/classes folder and the jars of the classpath in WEB-INF/lib.
+     *
+     * @param name - the name of the WAR in the directory
+     * @return the written WAR
+     */
+    public Path writeWar(String name) throws IOException {
+        return writeArchive(name, "WEB-INF/classes/", "WEB-INF/lib/", false);
+    }
+
+    /**
+     *
+     * Writes an executable fat jar with the Spring Boot layout, with the jars of the classpath stored uncompressed in
+     * BOOT-INF/lib, as the Spring Boot launcher needs them.
+     *
+     * @param name - the name of the fat jar in the directory
+     * @return the written fat jar
+     */
+    public Path writeFatJar(String name) throws IOException {
+        return writeArchive(name, "BOOT-INF/classes/", "BOOT-INF/lib/", true);
+    }
+
+    /**
+     * @return new classpath entries for the given jars or class folders, not scanned yet
+     */
+    public static List<ClasspathEntry> createClasspathEntries(List<Path> paths) {
+        List<ClasspathEntry> entries = new ArrayList<>();
+        for (Path path : paths) {
+            entries.add(new ClasspathEntry(null, path.toUri().toString()));
+        }
+        return entries;
+    }
+
+    public static String getJarName(int jarIndex) {
+        return JAR_PREFIX + jarIndex + ".jar";
+    }
+
+    private Path writeArchive(String name, String classesFolder, String libFolder, boolean storeJars) throws IOException {
+        Files.createDirectories(dir);
+        Path archive = dir.resolve(name);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            putEntry(zip, classesFolder, new byte[0], false);
+            for (int i = 0; i < entriesPerJar; i++) {
+                String className = getClassName(jarCount, i);
+                putEntry(zip, classesFolder + className, createClass(jarCount, i, className), false);
+            }
+            for (int jarIndex = 0; jarIndex < jarCount; jarIndex++) {
+                putEntry(zip, libFolder + getJarName(jarIndex), createJar(jarIndex), storeJars);
+            }
+        }
+        return archive;
+    }
+
+    private byte[] createJar(int jarIndex) throws IOException {
+        if (duplicateRatio + collisionRatio > 1) {
+            throw new IllegalArgumentException("The duplicate and collision ratios add up to more than 1.");
+        }
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(jar)) {
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            if (jarIndex < classPathChainLength && jarIndex + 1 < jarCount) {
+                manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, getJarName(jarIndex + 1));
+            }
+            ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+            manifest.write(manifestBytes);
+            putEntry(zip, "META-INF/MANIFEST.MF", manifestBytes.toByteArray(), false);
+
+            for (int i = 0; i < entriesPerJar; i++) {
+                String className = getClassName(jarIndex, i);
+                putEntry(zip, className, createClass(jarIndex, i, className), false);
+            }
+        }
+        return jar.toByteArray();
+    }
+
+    private String getClassName(int jarIndex, int i) {
+        int duplicates = (int) (entriesPerJar * duplicateRatio);
+        int collisions = (int) (entriesPerJar * collisionRatio);
+        String group;
+        if (i < duplicates) {
+            group = "duplicate";
+        } else if (i < duplicates + collisions) {
+            group = "collision";
+        } else {
+            group = "jar" + jarIndex;
+        }
+        return "org/jhades/synthetic/" + group + "/p" + (i / 100) + "/Class" + i + ".class";
+    }
+
+    /**
+     * The size of a class only depends on its name, its content also depends on the jar for collisions.
+     */
+    private byte[] createClass(int jarIndex, int i, String className) {
+        long seed = className.hashCode();
+        byte[] content = new byte[classSize / 2 + (int) ((seed & 0x7fffffff) % Math.max(1, classSize))];
+        if (className.contains("/collision/")) {
+            seed = seed * 31 + jarIndex;
+        }
+        // xorshift, so that the content does not compress to nothing
+        for (int pos = 0; pos < content.length; pos++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            content[pos] = (byte) seed;
+        }
+        content[0] = (byte) 0xCA;
+        content[1] = (byte) 0xFE;
+        return content;
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, byte[] content, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTime(ENTRY_TIME);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+}
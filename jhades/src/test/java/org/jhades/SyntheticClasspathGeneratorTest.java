@@ -0,0 +1,115 @@
+package org.jhades;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import org.jhades.model.ArchiveEntries;
+import org.jhades.model.ClasspathColumnarIndex;
+import org.jhades.model.ClasspathEntries;
+import org.jhades.model.ClasspathEntry;
+import org.jhades.model.DuplicatesMode;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.StdOutLogger;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SyntheticClasspathGeneratorTest {
+
+    private static final StdOutLogger logger = StdOutLogger.getLogger();
+    private Path tmpDir;
+    private SyntheticClasspathGenerator generator;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-synthetic-test");
+        generator = new SyntheticClasspathGenerator(tmpDir, 5, 100);
+        generator.setDuplicateRatio(0.1);
+        generator.setCollisionRatio(0.05);
+        generator.setClassPathChainLength(2);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testDuplicatesAndCollisions() throws IOException {
+        List<ClasspathEntry> entries = SyntheticClasspathGenerator.createClasspathEntries(generator.writeJars());
+        ClasspathColumnarIndex index = ClasspathColumnarIndex.build(entries, logger, null);
+
+        // the manifests are on every jar too
+        assertEquals(5 * 85 + 10 + 5 + 1, index.getResourceCount());
+        assertEquals(16, index.findResourcesWithDuplicates(DuplicatesMode.ALL, false).length);
+        assertEquals(15, index.findResourcesWithDuplicates(DuplicatesMode.ALL, true).length);
+        // the collisions have the same size, but a different content
+        assertEquals(1, index.findResourcesWithDuplicates(DuplicatesMode.DIFFERENT_SIZE, false).length);
+        assertEquals(5, index.findResourcesWithDuplicates(DuplicatesMode.DIFFERENT_CONTENT, true).length);
+        assertEquals(10, index.findOverlappingJars(DuplicatesMode.ALL).size());
+    }
+
+    @Test
+    public void testOutputIsDeterministic() throws IOException {
+        List<Path> jars = generator.writeJars();
+        byte[] firstJar = Files.readAllBytes(jars.get(0));
+        generator.writeJars();
+
+        assertArrayEquals(firstJar, Files.readAllBytes(jars.get(0)));
+    }
+
+    @Test
+    public void testManifestClassPathChain() throws IOException {
+        List<Path> jars = generator.writeJars();
+
+        assertEquals("synthetic-1.jar", getManifestClassPath(jars.get(0)));
+        assertEquals("synthetic-2.jar", getManifestClassPath(jars.get(1)));
+        assertNull(getManifestClassPath(jars.get(2)));
+    }
+
+    @Test
+    public void testArchivesAndClassFolder() throws Exception {
+        Path classFolder = generator.writeClassFolder("classes");
+        List<ClasspathEntry> warEntries = ArchiveEntries.findWarClasspathEntries(generator.writeWar("app.war"));
+        List<ClasspathEntry> fatJarEntries = ArchiveEntries.findJarClasspathEntries(generator.writeFatJar("app.jar"), null);
+
+        assertEquals(6, warEntries.size());
+        assertEquals(6, fatJarEntries.size());
+        List<Path> classFolders = new ArrayList<>();
+        classFolders.add(classFolder);
+        ClasspathEntry classFolderEntry = SyntheticClasspathGenerator.createClasspathEntries(classFolders).get(0);
+        assertEquals(100, classFolderEntry.getResourceVersions().size());
+        assertEquals(100, warEntries.get(0).getResourceVersions().size());
+        assertEquals(101, fatJarEntries.get(5).getResourceVersions().size());
+    }
+
+    /**
+     * Scans a classpath of production size - run with -Djhades.scale.test=true
+     */
+    @Test
+    public void testScanAtScale() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("jhades.scale.test"));
+        SyntheticClasspathGenerator scaleGenerator = new SyntheticClasspathGenerator(tmpDir, 1000, 800);
+        scaleGenerator.setDuplicateRatio(0.05);
+        scaleGenerator.setCollisionRatio(0.01);
+
+        List<ClasspathEntry> entries = SyntheticClasspathGenerator.createClasspathEntries(scaleGenerator.writeJars());
+        long start = System.currentTimeMillis();
+        int resources = ClasspathEntries.findClasspathResourcesInEntries(entries, logger, null).size();
+        logger.info("Scanned " + entries.size() + " jars, " + resources + " resources in " + (System.currentTimeMillis() - start) + " ms");
+
+        assertEquals(1000 * 752 + 40 + 8 + 1, resources);
+    }
+
+    private static String getManifestClassPath(Path jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            return jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+        }
+    }
+}
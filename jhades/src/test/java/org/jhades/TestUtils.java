@@ -1,6 +1,14 @@
 package org.jhades;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  *
@@ -14,4 +22,45 @@ public class TestUtils {
             throw new AssertionError(error);
         }
     }
+
+    /**
+     *
+     * @param jar - the jar file to write, replaced if it exists
+     * @param namesAndContents - the name of each entry followed by its content
+     * @return - the jar file
+     */
+    public static Path createJar(Path jar, String... namesAndContents) throws IOException {
+        return Files.write(jar, createJar(namesAndContents));
+    }
+
+    /**
+     *
+     * The entries have a fixed time, so that jars with the same entries have the same bytes.
+     *
+     * @param namesAndContents - the name of each entry followed by its content
+     * @return - the bytes of the jar
+     */
+    public static byte[] createJar(String... namesAndContents) throws IOException {
+        return createJar((Manifest) null, namesAndContents);
+    }
+
+    /**
+     *
+     * @param manifest - the manifest of the jar, or null for a jar without manifest
+     * @param namesAndContents - the name of each entry followed by its content
+     * @return - the bytes of the jar
+     */
+    public static byte[] createJar(Manifest manifest, String... namesAndContents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = manifest != null ? new JarOutputStream(bytes, manifest) : new ZipOutputStream(bytes)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                ZipEntry entry = new ZipEntry(namesAndContents[i]);
+                entry.setTime(0);
+                zip.putNextEntry(entry);
+                zip.write(namesAndContents[i + 1].getBytes("UTF-8"));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
 }
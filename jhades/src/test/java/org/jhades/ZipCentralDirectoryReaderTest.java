@@ -0,0 +1,142 @@
+package org.jhades;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.jhades.utils.FileUtils;
+import org.jhades.utils.ZipCentralDirectoryReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ZipCentralDirectoryReaderTest {
+
+    private Path tmpDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tmpDir = Files.createTempDirectory("jhades-zip-test");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectory(tmpDir.toString());
+    }
+
+    @Test
+    public void testReadEntries() throws IOException {
+        Path jar = tmpDir.resolve("test.jar");
+        byte[] content = "some class file content".getBytes("UTF-8");
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zip.putNextEntry(new ZipEntry("org/"));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("org/Deflated.class"));
+            zip.write(content);
+            zip.closeEntry();
+            zip.putNextEntry(storedEntry("org/Stored.class", content));
+            zip.write(content);
+            zip.closeEntry();
+        }
+
+        Map<String, ZipCentralDirectoryReader.Entry> entries = readEntries(jar);
+
+        assertEquals("unexpected entries: " + entries.keySet(), 3, entries.size());
+        assertTrue("directory entry not flagged as a directory", entries.get("org/").isDirectory());
+
+        long crc = crc(content);
+        for (String name : new String[]{"org/Deflated.class", "org/Stored.class"}) {
+            ZipCentralDirectoryReader.Entry entry = entries.get(name);
+            assertNotNull(name + " not found", entry);
+            assertFalse(entry.isDirectory());
+            assertEquals("wrong size for " + name, content.length, entry.getSize());
+            assertEquals("wrong crc for " + name, crc, entry.getCrc());
+        }
+        assertEquals(ZipEntry.DEFLATED, entries.get("org/Deflated.class").getMethod());
+        assertEquals(ZipEntry.STORED, entries.get("org/Stored.class").getMethod());
+    }
+
+    @Test
+    public void testReadEntriesWithPrependedData() throws IOException {
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+            zip.putNextEntry(new ZipEntry("a.txt"));
+            zip.write(1);
+            zip.closeEntry();
+        }
+
+        Path jar = tmpDir.resolve("executable.jar");
+        try (OutputStream out = Files.newOutputStream(jar)) {
+            out.write("#!/bin/sh\nexec java -jar $0\n".getBytes("UTF-8"));
+            out.write(zipBytes.toByteArray());
+        }
+
+        Map<String, ZipCentralDirectoryReader.Entry> entries = readEntries(jar);
+
+        assertEquals(1, entries.size());
+        assertEquals(1, entries.get("a.txt").getSize());
+    }
+
+    @Test
+    public void testReadZip64Entries() throws IOException {
+        Path jar = tmpDir.resolve("zip64.jar");
+        final int totalEntries = 70000;
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            zip.setLevel(0);
+            for (int i = 0; i < totalEntries; i++) {
+                zip.putNextEntry(new ZipEntry("r" + i));
+                zip.closeEntry();
+            }
+        }
+
+        assertEquals(totalEntries, ZipCentralDirectoryReader.read(jar, new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+            }
+        }));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadInvalidZip() throws IOException {
+        Path notAJar = tmpDir.resolve("not-a.jar");
+        Files.write(notAJar, "not a zip file".getBytes("UTF-8"));
+
+        readEntries(notAJar);
+    }
+
+    private static Map<String, ZipCentralDirectoryReader.Entry> readEntries(Path zipFile) throws IOException {
+        final Map<String, ZipCentralDirectoryReader.Entry> entries = new LinkedHashMap<>();
+        ZipCentralDirectoryReader.read(zipFile, new ZipCentralDirectoryReader.EntryVisitor() {
+            @Override
+            public void visitEntry(ZipCentralDirectoryReader.Entry entry) {
+                // the visited entry is reused between calls, keep a copy
+                entries.put(entry.getName(), entry.copy());
+            }
+        });
+        return entries;
+    }
+
+    private static ZipEntry storedEntry(String name, byte[] content) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc(content));
+        return entry;
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+}